@@ -0,0 +1,51 @@
+package com.fiunam.databases;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Dónde y cómo se guardan los registros de una base de datos (alumnos o materias). Las
+ * bases de datos tienen los registros en memoria y usan el almacén solo para leerlos al
+ * iniciar y para guardarlos; el formato se elige con "fiunam.db.formato.alumnos" y
+ * "fiunam.db.formato.materias" ({@link Database.Formato}):
+ * <ul>
+ *     <li>{@link AlmacenJson}: el archivo json de siempre, se escribe completo</li>
+ *     <li>{@link AlmacenBinario}: {@link InstantaneaBinaria}, también se escribe completo</li>
+ *     <li>{@link AlmacenRegistros}: archivo de clave-valor al que se agregan solo los
+ *     registros que cambiaron</li>
+ * </ul>
+ * Los almacenes que se escriben completos usan la bitácora de {@link Database} para no
+ * reescribir el archivo después de cada alta o baja; los que aceptan cambios por registro
+ * ({@link AlmacenPorRegistro}) no la necesitan.
+ *
+ * @param <T> Tipo de los registros
+ */
+public interface Almacen<T> {
+    /**
+     * @return Ruta del archivo
+     */
+    String ruta();
+
+    /**
+     * @return true si el archivo ya existe
+     */
+    boolean existe();
+
+    /**
+     * Lee todos los registros en el orden en que se guardaron.
+     *
+     * @param alLeer Se ejecuta con cada registro en cuanto se lee (por ejemplo, para indexarlo)
+     * @return Los registros, null si el archivo está vacío
+     * @throws FileNotFoundException Si el archivo no existe
+     */
+    ArrayList<T> leer(Consumer<? super T> alLeer) throws IOException;
+
+    /**
+     * Reemplaza el contenido del archivo con los registros, sin riesgo de dejarlo a medias
+     * (ver {@link Database#guardarJson}).
+     */
+    void escribirTodo(List<T> registros) throws IOException;
+}
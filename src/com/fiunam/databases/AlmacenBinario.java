@@ -0,0 +1,62 @@
+package com.fiunam.databases;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Almacén en el formato binario de {@link InstantaneaBinaria}
+ *
+ * @param <T> Tipo de los registros
+ */
+final class AlmacenBinario<T> implements Almacen<T> {
+    private final String ruta;
+    private final Lector<T> lector;
+    private final Escritor<T> escritor;
+
+    AlmacenBinario(String ruta, Lector<T> lector, Escritor<T> escritor) {
+        this.ruta = ruta;
+        this.lector = lector;
+        this.escritor = escritor;
+    }
+
+    @Override
+    public String ruta() {
+        return this.ruta;
+    }
+
+    @Override
+    public boolean existe() {
+        return new File(this.ruta).exists();
+    }
+
+    @Override
+    public ArrayList<T> leer(Consumer<? super T> alLeer) throws IOException {
+        ArrayList<T> leidos = this.lector.leer(Path.of(this.ruta));
+        leidos.forEach(alLeer);
+        return leidos;
+    }
+
+    @Override
+    public void escribirTodo(List<T> registros) throws IOException {
+        Database.guardarBinario(this.ruta, canal -> this.escritor.escribir(canal, registros));
+    }
+
+    /**
+     * {@link InstantaneaBinaria#leerAlumnos} o {@link InstantaneaBinaria#leerMaterias}
+     */
+    interface Lector<T> {
+        ArrayList<T> leer(Path archivo) throws IOException;
+    }
+
+    /**
+     * {@link InstantaneaBinaria#escribirAlumnos} o {@link InstantaneaBinaria#escribirMaterias}
+     */
+    interface Escritor<T> {
+        void escribir(FileChannel canal, List<T> registros) throws IOException;
+    }
+}
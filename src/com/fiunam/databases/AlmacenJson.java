@@ -0,0 +1,78 @@
+package com.fiunam.databases;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Almacén en un archivo json con un arreglo de registros, leído con {@link LectorJson} y
+ * escrito con {@link EscritorJson}.
+ *
+ * @param <T> Tipo de los registros
+ */
+final class AlmacenJson<T> implements Almacen<T> {
+    private final String ruta;
+    private final LectorRegistro<T> lector;
+    private final EscritorRegistro<T> escritor;
+
+    AlmacenJson(String ruta, LectorRegistro<T> lector, EscritorRegistro<T> escritor) {
+        this.ruta = ruta;
+        this.lector = lector;
+        this.escritor = escritor;
+    }
+
+    @Override
+    public String ruta() {
+        return this.ruta;
+    }
+
+    @Override
+    public boolean existe() {
+        return new File(this.ruta).exists();
+    }
+
+    @Override
+    public ArrayList<T> leer(Consumer<? super T> alLeer) throws IOException {
+        try (LectorJson json = new LectorJson(new FileReader(this.ruta, StandardCharsets.UTF_8))) {
+            if (json.fin()) return null;
+
+            ArrayList<T> leidos = new ArrayList<>();
+            json.inicioArreglo();
+            while (json.hayElemento()) {
+                T registro = this.lector.leer(json);
+                leidos.add(registro);
+                alLeer.accept(registro);
+            }
+            return leidos;
+        }
+    }
+
+    @Override
+    public void escribirTodo(List<T> registros) throws IOException {
+        Database.guardarJson(this.ruta, json -> {
+            json.inicioArreglo();
+            for (T registro : registros) {
+                this.escritor.escribir(json, registro);
+            }
+            json.finArreglo();
+        });
+    }
+
+    /**
+     * Lee un registro (un objeto del arreglo)
+     */
+    interface LectorRegistro<T> {
+        T leer(LectorJson json) throws IOException;
+    }
+
+    /**
+     * Escribe un registro como un objeto json
+     */
+    interface EscritorRegistro<T> {
+        void escribir(EscritorJson json, T registro) throws IOException;
+    }
+}
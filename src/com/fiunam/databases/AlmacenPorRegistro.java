@@ -0,0 +1,26 @@
+package com.fiunam.databases;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Almacén que, además de escribirse completo, puede guardar solo los registros que cambiaron
+ * ({@link AlmacenRegistros}). {@link Database} lo usa en lugar de la bitácora.
+ *
+ * @param <T> Tipo de los registros
+ */
+public interface AlmacenPorRegistro<T> extends Almacen<T> {
+    /**
+     * Guarda solo los registros que cambiaron y espera a que estén en el disco.
+     *
+     * @param actualizados Registros nuevos o modificados, con su estado actual
+     * @param eliminados   Claves de los registros eliminados
+     */
+    void escribirCambios(List<T> actualizados, int[] eliminados) throws IOException;
+
+    /**
+     * @return true si conviene escribir el archivo completo en el siguiente guardado, aunque
+     * se puedan guardar solo los cambios (por ejemplo, para descartar entradas viejas)
+     */
+    boolean compactar();
+}
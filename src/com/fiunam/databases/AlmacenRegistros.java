@@ -0,0 +1,237 @@
+package com.fiunam.databases;
+
+import com.fiunam.util.IntMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Almacén de clave-valor en un solo archivo (por ejemplo, alumnos.kv), pensado para que una
+ * alta o baja escriba solo los registros que cambiaron y no el archivo completo.
+ * <p>
+ * El archivo solo crece: cada guardado agrega al final una entrada por registro con su estado
+ * actual, y al leerlo gana la última entrada de cada clave. Todos los números son big-endian:
+ * <pre>
+ * encabezado  MAGICO
+ * entrada     largo del valor, clave, tipo ('+' registro, '-' eliminado),
+ *             valor (el registro en json en una línea, UTF-8), CRC32 de clave, tipo y valor
+ * </pre>
+ * Una entrada incompleta o con el CRC incorrecto al final del archivo es de una escritura
+ * interrumpida y se recorta. Cuando las entradas viejas superan a los registros vigentes,
+ * {@link #compactar()} avisa que conviene reescribir el archivo completo.
+ *
+ * @param <T> Tipo de los registros
+ */
+final class AlmacenRegistros<T> implements AlmacenPorRegistro<T>, Closeable {
+    /** "FIK1" */
+    private static final int MAGICO = 0x46494B31;
+    /** largo, clave y tipo */
+    private static final int ENCABEZADO_ENTRADA = 2 * Integer.BYTES + 1;
+    /** Entradas mínimas antes de pedir que se compacte el archivo */
+    private static final int MIN_COMPACTAR = 1024;
+
+    private final String ruta;
+    private final ToIntFunction<T> clave;
+    private final AlmacenJson.LectorRegistro<T> lector;
+    private final AlmacenJson.EscritorRegistro<T> escritor;
+    /** Claves vigentes en el archivo */
+    private final IntMap<Boolean> vigentes = new IntMap<>();
+    /** Entradas en el archivo, incluidas las reemplazadas y las de registros eliminados */
+    private int entradas;
+    private FileChannel canal;
+
+    AlmacenRegistros(String ruta, ToIntFunction<T> clave, AlmacenJson.LectorRegistro<T> lector,
+                     AlmacenJson.EscritorRegistro<T> escritor) {
+        this.ruta = ruta;
+        this.clave = clave;
+        this.lector = lector;
+        this.escritor = escritor;
+    }
+
+    @Override
+    public String ruta() {
+        return this.ruta;
+    }
+
+    @Override
+    public boolean existe() {
+        return new File(this.ruta).exists();
+    }
+
+    /**
+     * @return true si el archivo tiene más entradas viejas que vigentes y conviene
+     * reescribirlo con {@link #escribirTodo(List)}
+     */
+    @Override
+    public boolean compactar() {
+        return this.entradas > MIN_COMPACTAR && this.entradas > 2 * this.vigentes.size();
+    }
+
+    @Override
+    public ArrayList<T> leer(Consumer<? super T> alLeer) throws IOException {
+        this.close();
+        this.vigentes.clear();
+        this.entradas = 0;
+
+        MappedByteBuffer datos;
+        try (FileChannel lectura = FileChannel.open(Path.of(this.ruta), StandardOpenOption.READ)) {
+            datos = lectura.map(FileChannel.MapMode.READ_ONLY, 0, lectura.size());
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(this.ruta);
+        }
+        if (datos.limit() == 0) return null;
+        if (datos.limit() < Integer.BYTES || datos.getInt(0) != MAGICO) {
+            throw new IOException("No es un archivo de registros de la base de datos: " + this.ruta);
+        }
+
+        // Gana la última entrada de cada clave; un registro que se reemplaza conserva su lugar
+        LinkedHashMap<Integer, T> registros = new LinkedHashMap<>();
+        CRC32 crc = new CRC32();
+        int posicion = Integer.BYTES;
+        while (posicion < datos.limit()) {
+            int fin = posicion + ENCABEZADO_ENTRADA;
+            int largo = fin <= datos.limit() ? datos.getInt(posicion) : -1;
+            if (largo < 0 || (long) fin + largo + Integer.BYTES > datos.limit()) break;
+            fin += largo + Integer.BYTES;
+
+            crc.reset();
+            crc.update(datos.slice(posicion + Integer.BYTES, ENCABEZADO_ENTRADA - Integer.BYTES + largo));
+            if ((int) crc.getValue() != datos.getInt(fin - Integer.BYTES)) {
+                if (fin < datos.limit()) throw new IOException("Entrada dañada en " + this.ruta + ", posición " + posicion);
+                break;
+            }
+
+            int clave = datos.getInt(posicion + Integer.BYTES);
+            byte tipo = datos.get(posicion + 2 * Integer.BYTES);
+            if (tipo == '+') {
+                byte[] valor = new byte[largo];
+                datos.get(posicion + ENCABEZADO_ENTRADA, valor);
+                T registro = this.lector.leer(new LectorJson(new String(valor, StandardCharsets.UTF_8)));
+                registros.put(clave, registro);
+            } else {
+                registros.remove(clave);
+            }
+            this.entradas++;
+            posicion = fin;
+        }
+        if (posicion < datos.limit()) {
+            this.canal().truncate(posicion);
+        }
+
+        ArrayList<T> leidos = new ArrayList<>(registros.values());
+        for (T registro : leidos) {
+            this.vigentes.put(this.clave.applyAsInt(registro), Boolean.TRUE);
+            alLeer.accept(registro);
+        }
+        return leidos;
+    }
+
+    @Override
+    public void escribirTodo(List<T> registros) throws IOException {
+        this.close();
+        Database.guardarBinario(this.ruta, canal -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+            DataOutputStream salida = new DataOutputStream(bytes);
+            salida.writeInt(MAGICO);
+            for (T registro : registros) {
+                this.entrada(salida, this.clave.applyAsInt(registro), registro);
+                if (bytes.size() >= 64 * 1024) {
+                    AlmacenRegistros.escribir(canal, bytes);
+                }
+            }
+            AlmacenRegistros.escribir(canal, bytes);
+        });
+
+        this.vigentes.clear();
+        for (T registro : registros) {
+            this.vigentes.put(this.clave.applyAsInt(registro), Boolean.TRUE);
+        }
+        this.entradas = registros.size();
+    }
+
+    @Override
+    public void escribirCambios(List<T> actualizados, int[] eliminados) throws IOException {
+        if (actualizados.isEmpty() && eliminados.length == 0) return;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream salida = new DataOutputStream(bytes);
+        if (this.canal().size() == 0) salida.writeInt(MAGICO);
+        for (T registro : actualizados) {
+            this.entrada(salida, this.clave.applyAsInt(registro), registro);
+        }
+        for (int clave : eliminados) {
+            this.entrada(salida, clave, null);
+        }
+        FileChannel canal = this.canal();
+        AlmacenRegistros.escribir(canal, bytes);
+        canal.force(false);
+
+        for (T registro : actualizados) {
+            this.vigentes.put(this.clave.applyAsInt(registro), Boolean.TRUE);
+        }
+        for (int clave : eliminados) {
+            this.vigentes.remove(clave);
+        }
+        this.entradas += actualizados.size() + eliminados.length;
+    }
+
+    /**
+     * Escribe una entrada, con registro null es la de un registro eliminado
+     */
+    private void entrada(DataOutputStream salida, int clave, T registro) throws IOException {
+        byte[] valor = registro == null ? new byte[0]
+                : Database.jsonEnLinea(json -> this.escritor.escribir(json, registro)).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer cuerpo = ByteBuffer.allocate(Integer.BYTES + 1 + valor.length);
+        cuerpo.putInt(clave).put((byte) (registro == null ? '-' : '+')).put(valor).flip();
+        CRC32 crc = new CRC32();
+        crc.update(cuerpo.duplicate());
+
+        salida.writeInt(valor.length);
+        salida.write(cuerpo.array());
+        salida.writeInt((int) crc.getValue());
+    }
+
+    private static void escribir(FileChannel canal, ByteArrayOutputStream bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        bytes.reset();
+    }
+
+    private FileChannel canal() throws IOException {
+        if (this.canal == null) {
+            this.canal = FileChannel.open(Path.of(this.ruta), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return this.canal;
+    }
+
+    /**
+     * Cierra el archivo, se vuelve a abrir al escribir
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.canal != null) {
+            this.canal.close();
+            this.canal = null;
+        }
+    }
+}
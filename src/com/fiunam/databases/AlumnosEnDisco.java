@@ -0,0 +1,333 @@
+package com.fiunam.databases;
+
+import com.fiunam.users.Alumno;
+import com.fiunam.util.IntMap;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Alumnos leídos bajo demanda del archivo binario ({@link InstantaneaBinaria}), para el modo
+ * perezoso de {@link DatabaseAlumnos}. En memoria solo quedan:
+ * <ul>
+ *     <li>Un índice de claves: número de cuenta, hash del username y hash del nombre de cada
+ *     registro, junto con su posición en el archivo (un long por registro en cada índice).</li>
+ *     <li>Una caché LRU con los últimos alumnos leídos, de tamaño fijo.</li>
+ *     <li>Los alumnos modificados, agregados o eliminados desde el último archivo; no salen de
+ *     la memoria hasta el siguiente guardado completo, para no perder sus cambios.</li>
+ * </ul>
+ * Los métodos están sincronizados; la lectura de un registro del archivo mapeado no cambia
+ * nada compartido.
+ */
+final class AlumnosEnDisco {
+    private final int capacidadCache;
+    private InstantaneaBinaria.Lectura archivo;
+    /** (cuenta << 32 | registro), ordenado */
+    private long[] porCuenta;
+    /** (hash del username << 32 | registro), ordenado */
+    private long[] porUsername;
+    /** (hash del nombre << 32 | registro), ordenado */
+    private long[] porNombre;
+
+    private final LinkedHashMap<Integer, Alumno> cache;
+    /** Alumnos del archivo con cambios que aún no están en el archivo */
+    private IntMap<Alumno> cambiados = new IntMap<>();
+    /** Cambiados que se están escribiendo en el archivo nuevo */
+    private IntMap<Alumno> escribiendo = new IntMap<>();
+    /** Cuentas del archivo que se eliminaron */
+    private final IntMap<Boolean> eliminados = new IntMap<>();
+    /** Alumnos agregados después de leer el archivo, en orden de registro */
+    private final ArrayList<Alumno> nuevos = new ArrayList<>();
+    private final IndiceUsuarios<Alumno> credencialesNuevos = new IndiceUsuarios<>();
+
+    private long consultas;
+    private long lecturas;
+
+    /**
+     * @param capacidadCache Alumnos sin cambios que se conservan en memoria
+     */
+    AlumnosEnDisco(int capacidadCache) {
+        this.capacidadCache = capacidadCache;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Alumno> eldest) {
+                return this.size() > AlumnosEnDisco.this.capacidadCache;
+            }
+        };
+    }
+
+    /**
+     * Lee el índice de claves de un archivo de alumnos y descarta todo lo anterior
+     *
+     * @param asignador Recibe los números de cuenta del archivo
+     */
+    synchronized void abrir(Path ruta, AsignadorNumeros asignador) throws IOException {
+        InstantaneaBinaria.Lectura lectura = InstantaneaBinaria.abrirAlumnos(ruta);
+        int registros = lectura.registros();
+        long[] cuentas = new long[registros];
+        long[] usernames = new long[registros];
+        long[] nombres = new long[registros];
+        for (int i = 0; i < registros; i++) {
+            int cuenta = lectura.entero(i, 0);
+            cuentas[i] = clave(cuenta, i);
+            nombres[i] = clave(Objects.hashCode(lectura.texto(i, 2)), i);
+            usernames[i] = clave(Objects.hashCode(lectura.texto(i, 3)), i);
+            asignador.registrar(cuenta);
+        }
+        Arrays.sort(cuentas);
+        Arrays.sort(usernames);
+        Arrays.sort(nombres);
+
+        this.archivo = lectura;
+        this.porCuenta = cuentas;
+        this.porUsername = usernames;
+        this.porNombre = nombres;
+        this.cache.clear();
+        this.cambiados = new IntMap<>();
+        this.escribiendo = new IntMap<>();
+        this.eliminados.clear();
+        this.nuevos.clear();
+        this.credencialesNuevos.limpiar();
+    }
+
+    private static long clave(int valor, int registro) {
+        return (long) valor << 32 | registro;
+    }
+
+    /**
+     * @return Número de alumnos
+     */
+    synchronized int total() {
+        return this.archivo.registros() - this.eliminados.size() + this.nuevos.size();
+    }
+
+    /**
+     * @return El alumno, o null si no existe
+     */
+    synchronized Alumno obtener(int cuenta) {
+        this.consultas++;
+        Alumno alumno = this.residente(cuenta);
+        if (alumno != null || this.eliminados.containsKey(cuenta)) return alumno;
+
+        int registro = registroDe(this.porCuenta, cuenta);
+        if (registro < 0) return null;
+        return this.leer(cuenta, registro);
+    }
+
+    /**
+     * Alumno en memoria: modificado, agregado o en la caché
+     */
+    private Alumno residente(int cuenta) {
+        Alumno alumno = this.cambiados.get(cuenta);
+        if (alumno == null) alumno = this.escribiendo.get(cuenta);
+        if (alumno == null) alumno = this.cache.get(cuenta);
+        return alumno;
+    }
+
+    private Alumno leer(int cuenta, int registro) {
+        this.lecturas++;
+        Alumno alumno = this.archivo.alumno(registro);
+        this.cache.put(cuenta, alumno);
+        return alumno;
+    }
+
+    /**
+     * Misma búsqueda que {@link IndiceUsuarios#buscar(String, String)}: primero por username,
+     * después los alumnos con ese nombre en orden de registro.
+     *
+     * @return El alumno si las credenciales son correctas; null en caso contrario
+     */
+    synchronized Alumno buscar(String nombre, String password) {
+        Alumno alumno = this.primeroConUsername(nombre);
+        if (alumno != null && Objects.equals(alumno.getPassword(), password)) return alumno;
+
+        int hash = Objects.hashCode(nombre);
+        for (int i = inicio(this.porNombre, hash); i < this.porNombre.length && (int) (this.porNombre[i] >> 32) == hash; i++) {
+            Alumno homonimo = this.vigente((int) this.porNombre[i]);
+            if (homonimo != null && Objects.equals(homonimo.getNombre(), nombre)
+                    && Objects.equals(homonimo.getPassword(), password)) {
+                return homonimo;
+            }
+        }
+        return this.credencialesNuevos.buscar(nombre, password);
+    }
+
+    synchronized boolean existeUsername(String username) {
+        return this.primeroConUsername(username) != null;
+    }
+
+    private Alumno primeroConUsername(String username) {
+        int hash = Objects.hashCode(username);
+        for (int i = inicio(this.porUsername, hash); i < this.porUsername.length && (int) (this.porUsername[i] >> 32) == hash; i++) {
+            Alumno alumno = this.vigente((int) this.porUsername[i]);
+            if (alumno != null && Objects.equals(alumno.getUsername(), username)) return alumno;
+        }
+        return this.credencialesNuevos.conUsername(username);
+    }
+
+    /**
+     * @return El alumno de un registro del archivo, o null si se eliminó
+     */
+    private Alumno vigente(int registro) {
+        int cuenta = this.archivo.entero(registro, 0);
+        if (this.eliminados.containsKey(cuenta)) return null;
+        this.consultas++;
+        Alumno alumno = this.residente(cuenta);
+        return alumno != null ? alumno : this.leer(cuenta, registro);
+    }
+
+    /**
+     * Conserva en memoria a un alumno modificado hasta el siguiente guardado completo
+     */
+    synchronized void fijar(Alumno alumno) {
+        int cuenta = alumno.claveCuenta();
+        if (this.eliminados.containsKey(cuenta) || registroDe(this.porCuenta, cuenta) < 0) return;
+        this.cache.remove(cuenta);
+        this.cambiados.put(cuenta, alumno);
+    }
+
+    synchronized void agregar(Alumno alumno) {
+        int cuenta = alumno.claveCuenta();
+        if (registroDe(this.porCuenta, cuenta) >= 0) {
+            // Vuelve un alumno que estaba en el archivo (al reproducir la bitácora)
+            this.eliminados.remove(cuenta);
+            this.cache.remove(cuenta);
+            this.cambiados.put(cuenta, alumno);
+            return;
+        }
+        this.nuevos.add(alumno);
+        this.credencialesNuevos.agregar(alumno);
+    }
+
+    synchronized void quitar(Alumno alumno) {
+        int cuenta = alumno.claveCuenta();
+        if (this.nuevos.remove(alumno)) {
+            this.credencialesNuevos.eliminar(alumno);
+            return;
+        }
+        this.cache.remove(cuenta);
+        this.cambiados.remove(cuenta);
+        if (registroDe(this.porCuenta, cuenta) >= 0) this.eliminados.put(cuenta, Boolean.TRUE);
+    }
+
+    /**
+     * Lista de todos los alumnos en orden: los del archivo y después los nuevos. Los que no
+     * están en memoria se leen del archivo en cada get() sin pasar por la caché, así recorrer
+     * la lista (para guardarla o mostrarla) no ocupa más memoria. Se debe usar mientras nadie
+     * agrega o elimina alumnos.
+     */
+    synchronized List<Alumno> vista() {
+        InstantaneaBinaria.Lectura lectura = this.archivo;
+        int[] registros = new int[lectura.registros() - this.eliminados.size()];
+        int n = 0;
+        for (int i = 0; i < lectura.registros() && n < registros.length; i++) {
+            if (!this.eliminados.containsKey(lectura.entero(i, 0))) registros[n++] = i;
+        }
+        Alumno[] agregados = this.nuevos.toArray(new Alumno[0]);
+
+        return new AbstractList<>() {
+            @Override
+            public Alumno get(int indice) {
+                if (indice >= registros.length) return agregados[indice - registros.length];
+                int registro = registros[indice];
+                synchronized (AlumnosEnDisco.this) {
+                    Alumno alumno = AlumnosEnDisco.this.residente(lectura.entero(registro, 0));
+                    if (alumno != null) return alumno;
+                }
+                return lectura.alumno(registro);
+            }
+
+            @Override
+            public int size() {
+                return registros.length + agregados.length;
+            }
+        };
+    }
+
+    /**
+     * Se llama antes de escribir el archivo completo: los cambios que lleguen a partir de
+     * aquí se conservan aunque se abra el archivo nuevo
+     */
+    synchronized void iniciarEscritura() {
+        this.escribiendo = this.cambiados;
+        this.cambiados = new IntMap<>();
+    }
+
+    /**
+     * Se llama si no se pudo escribir el archivo, los cambios siguen pendientes
+     */
+    synchronized void cancelarEscritura() {
+        IntMap<Alumno> posteriores = this.cambiados;
+        this.cambiados = this.escribiendo;
+        this.escribiendo = new IntMap<>();
+        for (Alumno alumno : this.cambiadosEn(posteriores)) {
+            this.cambiados.put(alumno.claveCuenta(), alumno);
+        }
+    }
+
+    /**
+     * Abre el archivo recién escrito, conservando los cambios hechos durante la escritura
+     */
+    synchronized void terminarEscritura(Path ruta, AsignadorNumeros asignador) throws IOException {
+        List<Alumno> posteriores = this.cambiadosEn(this.cambiados);
+        this.abrir(ruta, asignador);
+        for (Alumno alumno : posteriores) {
+            this.fijar(alumno);
+        }
+    }
+
+    private List<Alumno> cambiadosEn(IntMap<Alumno> mapa) {
+        // IntMap no se puede recorrer, se buscan las cuentas del archivo
+        ArrayList<Alumno> alumnos = new ArrayList<>(mapa.size());
+        if (mapa.size() == 0) return alumnos;
+        for (long clave : this.porCuenta) {
+            Alumno alumno = mapa.get((int) (clave >> 32));
+            if (alumno != null) alumnos.add(alumno);
+        }
+        return alumnos;
+    }
+
+    /**
+     * @return Alumnos que están en memoria (caché, modificados y nuevos)
+     */
+    synchronized int residentes() {
+        return this.cache.size() + this.cambiados.size() + this.escribiendo.size() + this.nuevos.size();
+    }
+
+    /**
+     * @return Veces que se pidió un alumno (por cuenta o al revisar credenciales)
+     */
+    synchronized long getConsultas() {
+        return this.consultas;
+    }
+
+    /**
+     * @return Alumnos leídos del archivo
+     */
+    synchronized long getLecturas() {
+        return this.lecturas;
+    }
+
+    /**
+     * @return Registro con esa cuenta en el índice, o -1
+     */
+    private static int registroDe(long[] indice, int cuenta) {
+        int i = inicio(indice, cuenta);
+        return i < indice.length && (int) (indice[i] >> 32) == cuenta ? (int) indice[i] : -1;
+    }
+
+    /**
+     * @return Posición de la primera clave con ese valor (o donde iría)
+     */
+    private static int inicio(long[] indice, int valor) {
+        int i = Arrays.binarySearch(indice, (long) valor << 32);
+        return i >= 0 ? i : -i - 1;
+    }
+}
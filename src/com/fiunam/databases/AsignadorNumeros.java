@@ -0,0 +1,68 @@
+package com.fiunam.databases;
+
+import com.fiunam.util.IntMap;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Asigna números de cuenta y de trabajador sin repetir. Los números se eligen al azar
+ * dentro de un rango (con ThreadLocalRandom, sin crear un Random por llamada) y se
+ * comprueban contra el conjunto de números ya asignados, por lo que cada asignación
+ * cuesta O(1) mientras el rango esté poco ocupado.
+ * <p>
+ * Los métodos están sincronizados, así que varios registros simultáneos nunca reciben
+ * el mismo número.
+ */
+public class AsignadorNumeros {
+    private final int minimo;
+    private final int maximo;
+    private final IntMap<Boolean> asignados = new IntMap<>();
+
+    /**
+     * @param minimo Número más pequeño que se puede asignar
+     * @param maximo Número más grande que se puede asignar
+     */
+    public AsignadorNumeros(int minimo, int maximo) {
+        if (minimo < 0 || maximo < minimo) throw new IllegalArgumentException("Rango inválido");
+        this.minimo = minimo;
+        this.maximo = maximo;
+    }
+
+    /**
+     * Marca un número como ocupado, por ejemplo los que se cargan de la base de datos.
+     *
+     * @param numero Número ya asignado
+     */
+    public synchronized void registrar(int numero) {
+        if (numero >= this.minimo && numero <= this.maximo) this.asignados.put(numero, Boolean.TRUE);
+    }
+
+    /**
+     * Olvida todos los números registrados, se usa antes de recargar la base de datos.
+     */
+    public synchronized void limpiar() {
+        this.asignados.clear();
+    }
+
+    /**
+     * Genera un número que no ha sido asignado y lo registra.
+     *
+     * @return Número nuevo
+     * @throws IllegalStateException Si ya no hay números disponibles en el rango
+     */
+    public synchronized int siguiente() {
+        long disponibles = (long) this.maximo - this.minimo + 1;
+        if (this.asignados.size() >= disponibles) {
+            throw new IllegalStateException("No hay números disponibles entre " + this.minimo + " y " + this.maximo);
+        }
+
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        while (true) {
+            int numero = this.minimo + (int) rand.nextLong(disponibles);
+            if (!this.asignados.containsKey(numero)) {
+                this.asignados.put(numero, Boolean.TRUE);
+                return numero;
+            }
+        }
+    }
+}
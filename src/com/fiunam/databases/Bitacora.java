@@ -0,0 +1,118 @@
+package com.fiunam.databases;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Bitácora (write-ahead journal) de una base de datos: un archivo de texto al que solo se
+ * agregan registros, uno por línea, con los cambios hechos desde el último archivo json
+ * completo. Al iniciar, la base de datos lee el json y después aplica la bitácora encima;
+ * al escribir un json nuevo, la bitácora se vacía.
+ * <p>
+ * Una línea sin salto de línea al final es de una escritura interrumpida y se ignora.
+ */
+final class Bitacora implements Closeable {
+    private final Path ruta;
+    private FileChannel canal;
+    private int registros;
+
+    Bitacora(Path ruta) {
+        this.ruta = ruta;
+    }
+
+    /**
+     * Lee los registros completos de la bitácora. Si la última línea quedó incompleta se
+     * recorta del archivo, para que los registros nuevos no se escriban pegados a ella.
+     *
+     * @param accion Se ejecuta con cada registro, en el orden en que se escribieron
+     */
+    void leer(Consumer<String> accion) throws IOException {
+        this.registros = 0;
+        byte[] contenido;
+        try {
+            contenido = Files.readAllBytes(this.ruta);
+        } catch (NoSuchFileException e) {
+            // Sin bitácora: no hay cambios después del último json
+            return;
+        }
+
+        int inicio = 0;
+        for (int i = 0; i < contenido.length; i++) {
+            if (contenido[i] != '\n') continue;
+            if (i > inicio) {
+                accion.accept(new String(contenido, inicio, i - inicio, StandardCharsets.UTF_8));
+                this.registros++;
+            }
+            inicio = i + 1;
+        }
+        if (inicio < contenido.length) {
+            this.canal().truncate(inicio);
+        }
+    }
+
+    /**
+     * Agrega registros al final y espera a que estén en el disco
+     */
+    void agregar(List<String> nuevos) throws IOException {
+        StringBuilder texto = new StringBuilder();
+        for (String registro : nuevos) {
+            texto.append(registro).append('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(texto.toString().getBytes(StandardCharsets.UTF_8));
+
+        FileChannel canal = this.canal();
+        while (bytes.hasRemaining()) {
+            canal.write(bytes);
+        }
+        canal.force(false);
+        this.registros += nuevos.size();
+    }
+
+    /**
+     * Borra todos los registros, se usa después de escribir un json completo
+     */
+    void vaciar() throws IOException {
+        this.canal().truncate(0);
+        this.canal.force(true);
+        this.registros = 0;
+    }
+
+    /**
+     * @return Ruta del archivo
+     */
+    Path ruta() {
+        return this.ruta;
+    }
+
+    /**
+     * @return Registros en la bitácora
+     */
+    int registros() {
+        return this.registros;
+    }
+
+    private FileChannel canal() throws IOException {
+        if (this.canal == null) {
+            this.canal = FileChannel.open(this.ruta, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return this.canal;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.canal != null) {
+            this.canal.close();
+            this.canal = null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.fiunam.databases;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Convierte los archivos de alumnos y materias entre json, el formato binario
+ * ({@link InstantaneaBinaria}) y el de registros ({@link AlmacenRegistros}), para cambiar el
+ * formato con "fiunam.db.formato.alumnos" o "fiunam.db.formato.materias" sin perder los
+ * datos. La bitácora no cambia, es la misma para todos los formatos. Desde la consola:
+ * <pre>
+ * java -cp ".:../lib/*" com.fiunam.databases.ConvertidorArchivos binario json
+ * java -cp ".:../lib/*" com.fiunam.databases.ConvertidorArchivos registros json
+ * java -cp ".:../lib/*" com.fiunam.databases.ConvertidorArchivos json json
+ * </pre>
+ * El primer argumento es el formato de destino y el segundo la carpeta de los archivos. Los
+ * formatos binario y de registros se generan a partir del json; el json, a partir del
+ * archivo binario o, si no existe, del de registros.
+ */
+public final class ConvertidorArchivos {
+    private ConvertidorArchivos() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || !List.of("binario", "registros", "json").contains(args[0].toLowerCase())) {
+            System.out.println("Uso: ConvertidorArchivos binario|registros|json [carpeta]");
+            return;
+        }
+        Path carpeta = Path.of(args.length > 1 ? args[1] : "json");
+        switch (args[0].toLowerCase()) {
+            case "binario" -> ConvertidorArchivos.aBinario(carpeta);
+            case "registros" -> ConvertidorArchivos.aRegistros(carpeta);
+            default -> ConvertidorArchivos.aJson(carpeta);
+        }
+    }
+
+    /**
+     * Escribe alumnos.bin y materias.bin a partir de alumnos.json y materias.json
+     *
+     * @param carpeta Carpeta de los archivos
+     */
+    public static void aBinario(Path carpeta) throws IOException {
+        ConvertidorArchivos.convertir(carpeta.toString(), Database.Formato.JSON, Database.Formato.BINARIO);
+    }
+
+    /**
+     * Escribe alumnos.kv y materias.kv a partir de alumnos.json y materias.json
+     *
+     * @param carpeta Carpeta de los archivos
+     */
+    public static void aRegistros(Path carpeta) throws IOException {
+        ConvertidorArchivos.convertir(carpeta.toString(), Database.Formato.JSON, Database.Formato.REGISTROS);
+    }
+
+    /**
+     * Escribe alumnos.json y materias.json a partir de alumnos.bin y materias.bin, o de
+     * alumnos.kv y materias.kv si no hay archivos binarios
+     *
+     * @param carpeta Carpeta de los archivos
+     */
+    public static void aJson(Path carpeta) throws IOException {
+        boolean binario = DatabaseAlumnos.almacenDe(Database.Formato.BINARIO, carpeta.toString()).existe();
+        ConvertidorArchivos.convertir(carpeta.toString(),
+                binario ? Database.Formato.BINARIO : Database.Formato.REGISTROS, Database.Formato.JSON);
+    }
+
+    private static void convertir(String carpeta, Database.Formato origen, Database.Formato destino) throws IOException {
+        ConvertidorArchivos.copiar(DatabaseAlumnos.almacenDe(origen, carpeta), DatabaseAlumnos.almacenDe(destino, carpeta), "alumnos");
+        ConvertidorArchivos.copiar(DatabaseMaterias.almacenDe(origen, carpeta), DatabaseMaterias.almacenDe(destino, carpeta), "materias");
+    }
+
+    private static <T> void copiar(Almacen<T> origen, Almacen<T> destino, String nombre) throws IOException {
+        ArrayList<T> registros = origen.leer(registro -> {
+        });
+        if (registros == null) registros = new ArrayList<>();
+        destino.escribirTodo(registros);
+        System.out.printf("%s -> %s: %d %s%n", Path.of(origen.ruta()).getFileName(),
+                Path.of(destino.ruta()).getFileName(), registros.size(), nombre);
+    }
+}
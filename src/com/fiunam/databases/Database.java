@@ -1,15 +1,118 @@
 package com.fiunam.databases;
 
+import com.fiunam.logger.Cronometro;
+import com.fiunam.logger.Logger;
+import com.fiunam.util.IntSet;
+
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Métodos base para las bases de datos de Alumnos y Materias
  */
 public abstract class Database {
-    protected static final String staticPathFiles = Path.of(".", "json").toString();
+    private static final Logger log = new Logger(Database.class);
+
+    /**
+     * Carpeta de los archivos json, se puede cambiar con la propiedad
+     * del sistema "fiunam.db.dir" (por ejemplo, para las pruebas de rendimiento).
+     */
+    protected static final String staticPathFiles = System.getProperty("fiunam.db.dir", Path.of(".", "json").toString());
     protected final String pathFiles = Database.staticPathFiles;
+    /**
+     * Con la propiedad "fiunam.db.compacto" los archivos se guardan sin espacios ni saltos
+     * de línea; se leen igual en ambos casos.
+     */
+    protected static final boolean jsonCompacto = Boolean.parseBoolean(System.getProperty("fiunam.db.compacto", "false"));
+
+    /**
+     * Formato de los archivos de alumnos y materias ({@link Almacen}), se elige para cada uno
+     * con las propiedades "fiunam.db.formato.alumnos" y "fiunam.db.formato.materias" (JSON por
+     * omisión). Para cambiar el formato de archivos existentes se usa {@link ConvertidorArchivos}.
+     */
+    protected enum Formato {
+        JSON,
+        /** {@link InstantaneaBinaria}, archivo .bin en la misma carpeta */
+        BINARIO,
+        /** {@link AlmacenRegistros}, archivo .kv en la misma carpeta, se guarda por registro */
+        REGISTROS;
+
+        /**
+         * Formato de la propiedad "fiunam.db.formato.(nombre)". Con un valor que no existe se
+         * avisa y se usa JSON, que siempre se puede leer.
+         */
+        static Formato de(String nombre) {
+            String propiedad = "fiunam.db.formato." + nombre;
+            String valor = System.getProperty(propiedad, "JSON");
+            try {
+                return Formato.valueOf(valor.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.sendWarning("%s=%s no es un formato válido, se usa JSON", propiedad, valor);
+                return JSON;
+            }
+        }
+    }
+
+    /**
+     * Registros de bitácora que se aceptan antes de escribir de nuevo el json completo,
+     * propiedad "fiunam.db.bitacora.max"; con 0 no se usa la bitácora.
+     */
+    private static final int maxBitacora = Integer.getInteger("fiunam.db.bitacora.max", 500);
+
+    /** Se incrementa con cada cambio a los datos */
+    private final AtomicLong modificaciones = new AtomicLong();
+    /** Valor de modificaciones cuando se leyó o guardó por última vez (-1: nunca) */
+    private volatile long versionGuardada = -1;
+    /**
+     * Hubo cambios que no se pueden describir en la bitácora (o el json aún no se ha leído
+     * bien), el siguiente guardado escribe el json completo
+     */
+    private volatile boolean cambiosFueraDeBitacora = true;
+    /** Registros de los cambios hechos desde la última solicitud de guardado */
+    private final ArrayList<String> pendientes = new ArrayList<>();
+    /** Registros que ya se pidió guardar y aún no están en el disco */
+    private final ArrayList<String> porEscribir = new ArrayList<>();
+    /** Valor de modificaciones en la última solicitud de guardado */
+    private long versionSolicitada = -1;
+    private Bitacora bitacora;
+    /**
+     * Agregar o quitar registros y escribir el archivo toman el bloqueo de escritura, así se
+     * puede guardar desde otro hilo ({@link Persistencia}) sin que las listas cambien mientras
+     * se recorren. Las altas y bajas, que solo cambian registros existentes, toman el de
+     * lectura y se coordinan entre ellas con el bloqueo de cada registro
+     */
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    /** Solo un hilo a la vez escribe los archivos de esta base de datos */
+    private final Object escritura = new Object();
+    private final AtomicLong guardadosRealizados = new AtomicLong();
+    private final AtomicLong guardadosOmitidos = new AtomicLong();
+    private final AtomicLong guardadosEnBitacora = new AtomicLong();
+    private final AtomicLong recargasOmitidas = new AtomicLong();
+    /**
+     * Firmas de los archivos como se leyeron o escribieron por última vez, para que reloadDB
+     * no vuelva a leerlos si no cambiaron. Se usa con el monitor de escritura (o en initDB
+     * desde el constructor)
+     */
+    private final HashMap<Path, FirmaArchivo> firmas = new HashMap<>();
 
     /**
      * Inicializa la base de datos, en cada subclase se especifica
@@ -24,11 +127,545 @@ public abstract class Database {
     protected abstract void createDB();
 
     /**
-     * Guarda los cambios de la base de datos, siempre debe
-     * ejecutarse al finalizar el programa
+     * Guarda los cambios de la base de datos y espera a que estén en el disco. Si todos los
+     * cambios desde el último guardado están descritos por registros (altas, bajas, agregar y
+     * eliminar), solo se agregan a la bitácora; el json completo se escribe cuando la bitácora
+     * llega a "fiunam.db.bitacora.max" registros, cuando hubo otros cambios (por ejemplo, una
+     * contraseña) o con {@link #guardarInstantanea()}. Con un almacén que guarda por registro
+     * ({@link Formato#REGISTROS}) no se usa la bitácora, se escriben solo los registros que
+     * cambiaron. Si no hubo cambios no se escribe nada.
+     * Se registra cuánto tarda cada guardado (evento "saveDB").
+     * <p>
+     * Para no esperar la escritura se puede usar {@link Persistencia#guardar(Database...)}.
+     */
+    public void saveDB() {
+        this.solicitarGuardado();
+        try {
+            this.escribirSolicitado(false);
+        } catch (Exception e) {
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escribe el json completo con el estado actual y vacía la bitácora, se debe
+     * ejecutar al finalizar el programa. Si no hay nada pendiente no se escribe nada.
+     */
+    public void guardarInstantanea() {
+        this.solicitarGuardado();
+        try {
+            this.escribirSolicitado(true);
+        } catch (Exception e) {
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marca los cambios hechos hasta ahora como parte del siguiente guardado. Se hace en el
+     * hilo que hizo los cambios, así un cambio posterior (que se puede cancelar con
+     * reloadDB) no se escribe en la bitácora aunque el guardado termine después.
+     */
+    synchronized void solicitarGuardado() {
+        this.porEscribir.addAll(this.pendientes);
+        this.pendientes.clear();
+        this.versionSolicitada = this.modificaciones.get();
+    }
+
+    /**
+     * Escribe lo marcado por {@link #solicitarGuardado()}, puede ejecutarse en otro hilo.
+     *
+     * @param instantanea Escribir el json completo aunque se pueda usar la bitácora
+     */
+    void escribirSolicitado(boolean instantanea) throws IOException {
+        synchronized (this.escritura) {
+            List<String> registros;
+            long version;
+            boolean completo;
+            AlmacenPorRegistro<?> porRegistro = this.almacenPorRegistro();
+            synchronized (this) {
+                registros = List.copyOf(this.porEscribir);
+                version = this.versionSolicitada;
+                completo = porRegistro != null
+                        ? this.cambiosFueraDeBitacora || porRegistro.compactar()
+                        : instantanea || this.cambiosFueraDeBitacora || this.bitacora == null
+                        || this.bitacora.registros() + registros.size() > Database.maxBitacora;
+            }
+            boolean bitacoraVacia = this.bitacora == null || this.bitacora.registros() == 0;
+            if (version <= this.versionGuardada && (!instantanea || bitacoraVacia)) {
+                this.guardadosOmitidos.incrementAndGet();
+                return;
+            }
+
+            if (completo) {
+                Cronometro medicion = log.medir("saveDB", this.getClass().getSimpleName());
+                try {
+                    Lock exclusivo = this.candado.writeLock();
+                    exclusivo.lock();
+                    try {
+                        synchronized (this) {
+                            // El json tendrá todo lo hecho hasta aquí; un cambio que llegue
+                            // durante la escritura vuelve a marcar la bandera
+                            version = this.modificaciones.get();
+                            this.cambiosFueraDeBitacora = false;
+                        }
+                        this.guardarDB();
+                    } catch (IOException | RuntimeException e) {
+                        this.cambiosFueraDeBitacora = true;
+                        throw e;
+                    } finally {
+                        exclusivo.unlock();
+                    }
+                    // Si el programa se detiene antes de esto, la bitácora se vuelve a aplicar sobre
+                    // el json nuevo, cada registro deja un estado absoluto así que el resultado es el mismo
+                    if (this.bitacora != null) this.bitacora.vaciar();
+                    this.guardadosRealizados.incrementAndGet();
+                } finally {
+                    medicion.close();
+                }
+            } else if (porRegistro != null) {
+                Cronometro medicion = log.medir("saveDB", this.getClass().getSimpleName() + " (registros)");
+                try {
+                    Lock exclusivo = this.candado.writeLock();
+                    exclusivo.lock();
+                    try {
+                        this.guardarRegistros(porRegistro, registros);
+                    } finally {
+                        exclusivo.unlock();
+                    }
+                    this.guardadosEnBitacora.incrementAndGet();
+                } finally {
+                    medicion.close();
+                }
+            } else {
+                Cronometro medicion = log.medir("saveDB", this.getClass().getSimpleName() + " (bitácora)");
+                try {
+                    this.bitacora.agregar(registros);
+                    this.guardadosEnBitacora.incrementAndGet();
+                } finally {
+                    medicion.close();
+                }
+            }
+
+            synchronized (this) {
+                // Solo se quitan los registros que se escribieron, pudieron llegar más
+                this.porEscribir.subList(0, registros.size()).clear();
+            }
+            this.versionGuardada = version;
+            this.actualizarFirmas();
+        }
+    }
+
+    /**
+     * Escribe el archivo de la base de datos, en cada subclase se especifica
+     * el archivo y el formato.
+     */
+    protected abstract void guardarDB() throws IOException;
+
+    /**
+     * @return Almacén de los registros, null si la base de datos escribe su archivo directamente
+     */
+    protected Almacen<?> almacen() {
+        return null;
+    }
+
+    /**
+     * Con un almacén que guarda por registro ({@link AlmacenPorRegistro}), las altas, bajas
+     * y demás cambios de la bitácora no se agregan a la bitácora sino que se escriben los
+     * registros afectados
+     *
+     * @return El almacén, o null si se escribe completo
+     */
+    private AlmacenPorRegistro<?> almacenPorRegistro() {
+        return this.almacen() instanceof AlmacenPorRegistro<?> almacen ? almacen : null;
+    }
+
+    /**
+     * Agrega las claves de los registros (alumnos, materias, administradores) que cambia un
+     * registro de la bitácora, para guardarlos uno por uno con un almacén por registro.
+     *
+     * @param registro Un registro en el formato de {@link #aplicarRegistro(String)}
+     * @param claves   Claves afectadas
+     */
+    protected abstract void clavesAfectadas(String registro, IntSet claves) throws IOException;
+
+    /**
+     * @param clave Clave de un registro (número de cuenta, ID de materia...)
+     * @return El registro con su estado actual, o null si ya no existe
+     */
+    protected abstract Object conClave(int clave);
+
+    /**
+     * Escribe en el almacén los registros afectados por los cambios. Se ejecuta con el bloqueo
+     * de escritura, así los registros no cambian mientras se escriben.
+     *
+     * @param registros Cambios desde el último guardado, en el formato de {@link #aplicarRegistro(String)}
+     */
+    private void guardarRegistros(AlmacenPorRegistro<?> almacen, List<String> registros) throws IOException {
+        IntSet claves = new IntSet();
+        for (String registro : registros) {
+            this.clavesAfectadas(registro, claves);
+        }
+        this.escribirCambios(almacen, claves);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void escribirCambios(AlmacenPorRegistro<T> almacen, IntSet claves) throws IOException {
+        ArrayList<T> actualizados = new ArrayList<>();
+        IntSet eliminados = new IntSet();
+        for (int i = 0; i < claves.size(); i++) {
+            // El almacén de cada base de datos es del tipo de sus registros
+            T registro = (T) this.conClave(claves.get(i));
+            if (registro != null) actualizados.add(registro); else eliminados.add(claves.get(i));
+        }
+        almacen.escribirCambios(actualizados, eliminados.toArray());
+    }
+
+    /**
+     * Indica que los datos cambiaron y se deben escribir completos en el siguiente
+     * {@link #saveDB()}. Los métodos agregar/eliminar de cada base de datos y las altas y
+     * bajas de {@link com.fiunam.materias.AdminMateria} agregan su registro a la bitácora; se
+     * debe llamar al modificar directamente un registro (por ejemplo, al cambiar una contraseña).
+     */
+    public void marcarModificada() {
+        this.cambiosFueraDeBitacora = true;
+        this.modificaciones.incrementAndGet();
+    }
+
+    /**
+     * Bloqueo que se debe tener al agregar o quitar elementos de las listas de la base de
+     * datos, para que no cambien mientras otro hilo las guarda. Es reentrante y excluye
+     * también a las altas y bajas ({@link #bloqueoRegistros()}).
+     *
+     * @return Bloqueo de escritura de la base de datos
+     */
+    public Lock bloqueoCambios() {
+        return this.candado.writeLock();
+    }
+
+    /**
+     * Bloqueo compartido para cambiar registros que ya existen (las listas de inscripción de
+     * un alumno o una materia) desde varios hilos a la vez: evita que se guarde el archivo o
+     * se agreguen o quiten registros mientras tanto, pero no protege a cada registro; eso lo
+     * hace el bloqueo por registro de cada base de datos (ver
+     * {@link com.fiunam.materias.ServicioInscripciones}). No se debe pedir
+     * {@link #bloqueoCambios()} mientras se tiene.
+     *
+     * @return Bloqueo de lectura de la base de datos
+     */
+    public Lock bloqueoRegistros() {
+        return this.candado.readLock();
+    }
+
+    /**
+     * Agrega un cambio a la bitácora, se escribe en el siguiente {@link #saveDB()}
+     * (reloadDB lo descarta).
+     *
+     * @param registro Una línea que {@link #aplicarRegistro(String)} sabe aplicar
+     */
+    protected synchronized void registrar(String registro) {
+        this.pendientes.add(registro);
+        this.modificaciones.incrementAndGet();
+    }
+
+    /**
+     * Registro de varias altas o bajas de un alumno: "tipo numCuenta idMateria idMateria ...".
+     *
+     * @param tipo        'A' para altas, 'D' para bajas
+     * @param numCuenta   Número de cuenta del alumno
+     * @param idsMaterias IDs de las materias
+     * @return Línea para {@link #registrar(String)}
+     */
+    protected static String registroLote(char tipo, int numCuenta, int[] idsMaterias) {
+        StringBuilder registro = new StringBuilder().append(tipo).append(' ').append(numCuenta);
+        for (int idMateria : idsMaterias) {
+            registro.append(' ').append(idMateria);
+        }
+        return registro.toString();
+    }
+
+    /**
+     * Aplica un registro de la bitácora sobre los datos leídos del json, no debe
+     * llamar a {@link #registrar(String)}.
+     *
+     * @param registro Línea de la bitácora
+     */
+    protected abstract void aplicarRegistro(String registro) throws IOException;
+
+    /**
+     * Aplica la bitácora del archivo sobre los datos recién leídos, se llama al final de initDB.
+     * Los cambios que no se habían guardado se descartan. Al final se guarda la firma de los
+     * archivos leídos ({@link #archivos()}).
+     *
+     * @param path Ruta del json, la bitácora es el mismo archivo con ".bitacora" al final
+     */
+    protected void reproducirBitacora(String path) {
+        synchronized (this) {
+            this.pendientes.clear();
+            this.porEscribir.clear();
+        }
+        if (Database.maxBitacora > 0) {
+            this.leerBitacora(path);
+        }
+        this.registrarFirmas();
+    }
+
+    private void leerBitacora(String path) {
+        if (this.bitacora == null) {
+            this.bitacora = new Bitacora(Path.of(path + ".bitacora"));
+        }
+        try {
+            this.bitacora.leer(registro -> {
+                try {
+                    this.aplicarRegistro(registro);
+                } catch (Exception e) {
+                    log.sendWarning("Registro de bitácora inválido, se omite: %s (%s)", registro, e);
+                }
+            });
+            if (this.almacenPorRegistro() != null && this.bitacora.registros() > 0) {
+                // Bitácora de antes de cambiar al formato por registro: el siguiente guardado
+                // escribe el archivo completo y la vacía
+                this.marcarModificada();
+            }
+        } catch (IOException e) {
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Archivos de los que se leen los datos (aunque aún no existan), sin la bitácora.
+     * Si alguno cambia, reloadDB los vuelve a leer
+     */
+    protected abstract List<String> archivos();
+
+    /**
+     * Guarda la firma de los archivos recién leídos, con el hash de su contenido
+     */
+    private void registrarFirmas() {
+        this.firmas.clear();
+        try {
+            for (Path archivo : this.rutasArchivos()) {
+                this.firmas.put(archivo, FirmaArchivo.de(archivo, true));
+            }
+        } catch (IOException e) {
+            // Sin firmas, el siguiente reloadDB lee los archivos
+            this.firmas.clear();
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+        }
+    }
+
+    /**
+     * Después de un guardado, actualiza la firma de los archivos que cambiaron
+     */
+    private void actualizarFirmas() {
+        try {
+            for (Map.Entry<Path, FirmaArchivo> firma : this.firmas.entrySet()) {
+                firma.setValue(firma.getValue().actualizar(firma.getKey()));
+            }
+        } catch (IOException e) {
+            this.firmas.clear();
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true si ningún archivo (ni la bitácora) cambió desde que se leyó o se escribió
+     */
+    private boolean archivosSinCambios() {
+        if (this.firmas.isEmpty()) return false;
+        try {
+            for (Map.Entry<Path, FirmaArchivo> firma : this.firmas.entrySet()) {
+                FirmaArchivo actual = firma.getValue().comprobar(firma.getKey());
+                if (actual == null) return false;
+                firma.setValue(actual);
+            }
+            return true;
+        } catch (IOException e) {
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+            return false;
+        }
+    }
+
+    private List<Path> rutasArchivos() {
+        ArrayList<Path> rutas = new ArrayList<>();
+        for (String archivo : this.archivos()) {
+            Path ruta = Path.of(archivo);
+            if (!rutas.contains(ruta)) rutas.add(ruta);
+        }
+        if (this.bitacora != null) rutas.add(this.bitacora.ruta());
+        return rutas;
+    }
+
+    /**
+     * @return true si hay cambios que no se han guardado
+     */
+    public boolean tieneCambios() {
+        return this.modificaciones.get() != this.versionGuardada;
+    }
+
+    /**
+     * Indica que los datos en memoria son iguales al archivo, se usa al leerlo en initDB.
+     */
+    protected void marcarSinCambios() {
+        this.cambiosFueraDeBitacora = false;
+        this.versionGuardada = this.modificaciones.get();
+    }
+
+    /**
+     * @return Número de veces que se escribió el json completo
+     */
+    public long getGuardadosRealizados() {
+        return this.guardadosRealizados.get();
+    }
+
+    /**
+     * @return Número de veces que saveDB solo agregó registros a la bitácora (o escribió
+     * los registros que cambiaron, con un almacén que guarda por registro)
      */
-    public abstract void saveDB();
+    public long getGuardadosEnBitacora() {
+        return this.guardadosEnBitacora.get();
+    }
 
+    /**
+     * @return Número de veces que reloadDB no leyó los archivos porque no cambiaron
+     */
+    public long getRecargasOmitidas() {
+        return this.recargasOmitidas.get();
+    }
+
+    /**
+     * @return Número de veces que saveDB no escribió nada porque no había cambios
+     */
+    public long getGuardadosOmitidos() {
+        return this.guardadosOmitidos.get();
+    }
+
+    /**
+     * Escribe un registro como json en una sola línea, para los registros de la bitácora
+     */
+    protected static String jsonEnLinea(ContenidoJson contenido) {
+        StringWriter texto = new StringWriter();
+        try {
+            EscritorJson json = new EscritorJson(texto, true);
+            contenido.escribir(json);
+            json.vaciar();
+        } catch (IOException e) {
+            // Un StringWriter no produce errores de escritura
+            throw new UncheckedIOException(e);
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Contenido de un archivo de la base de datos
+     */
+    protected interface ContenidoJson {
+        void escribir(EscritorJson json) throws IOException;
+    }
+
+    /**
+     * Guarda un archivo de la base de datos sin riesgo de dejarlo a medias: el contenido se
+     * escribe en un archivo temporal (.tmp) en la misma carpeta, se sincroniza con el disco y
+     * después reemplaza al original con un movimiento atómico. Si el programa se detiene a la
+     * mitad, el archivo original queda intacto.
+     *
+     * @param path      Ruta del archivo
+     * @param contenido Escribe los datos en el {@link EscritorJson}
+     */
+    protected static void guardarJson(String path, ContenidoJson contenido) throws IOException {
+        Database.guardarArchivo(path, canal -> {
+            EscritorJson json = new EscritorJson(Channels.newWriter(canal, StandardCharsets.UTF_8), Database.jsonCompacto);
+            contenido.escribir(json);
+            json.vaciar();
+        });
+    }
+
+    /**
+     * Igual que {@link #guardarJson(String, ContenidoJson)}, para los archivos en formato
+     * binario ({@link InstantaneaBinaria}).
+     *
+     * @param path      Ruta del archivo
+     * @param contenido Escribe los datos en el canal del archivo temporal
+     */
+    protected static void guardarBinario(String path, ContenidoBinario contenido) throws IOException {
+        Database.guardarArchivo(path, contenido);
+    }
+
+    /**
+     * Contenido de un archivo binario de la base de datos
+     */
+    protected interface ContenidoBinario {
+        void escribir(FileChannel canal) throws IOException;
+    }
+
+    private static void guardarArchivo(String path, ContenidoBinario contenido) throws IOException {
+        Path destino = Path.of(path);
+        Path temporal = Database.temporal(destino);
+
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            contenido.escribir(canal);
+            canal.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+
+        try {
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Database.sincronizarCarpeta(destino.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Revisión al iniciar: un archivo .tmp que sigue ahí es de un guardado que no terminó,
+     * el archivo original no se llegó a reemplazar así que el temporal se descarta.
+     *
+     * @param path Ruta del archivo de la base de datos
+     */
+    protected static void recuperarGuardado(String path) {
+        Path temporal = Database.temporal(Path.of(path));
+        try {
+            if (Files.deleteIfExists(temporal)) {
+                log.sendWarning("Se descartó %s de un guardado interrumpido, se conserva el último archivo completo.", temporal);
+            }
+        } catch (IOException e) {
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+        }
+    }
+
+    /**
+     * Conserva una copia de un archivo que no se pudo leer (por ejemplo, truncado por una
+     * versión anterior), para que el siguiente guardado no borre los datos que se puedan rescatar.
+     *
+     * @param path Ruta del archivo de la base de datos
+     */
+    protected static void resguardarDanado(String path) {
+        Path original = Path.of(path);
+        Path copia = original.resolveSibling(original.getFileName() + ".danado-" + System.currentTimeMillis());
+        try {
+            Files.copy(original, copia);
+            log.sendError("No se pudo leer %s, se guardó una copia en %s.", original, copia);
+        } catch (IOException e) {
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+        }
+    }
+
+    private static Path temporal(Path destino) {
+        return destino.resolveSibling(destino.getFileName() + ".tmp");
+    }
+
+    /**
+     * Sincroniza la carpeta para que el cambio de nombre también quede en el disco
+     * (no todos los sistemas permiten abrir una carpeta, en ese caso se omite)
+     */
+    private static void sincronizarCarpeta(Path carpeta) {
+        try (FileChannel canal = FileChannel.open(carpeta, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+        }
+    }
 
     /**
      * Retorna una impresión más detallada de cada elemento
@@ -39,9 +676,40 @@ public abstract class Database {
     public abstract String printDB();
 
     /**
-     * Restaura la base de datos.
+     * Restaura la base de datos con lo guardado en el disco, descartando los cambios
+     * de los que no se ha pedido guardar. Si no hay cambios sin guardar y los archivos (y la
+     * bitácora) son los mismos que se leyeron o escribieron, no se lee nada; si no, se
+     * vuelven a leer con {@link #recargar()}. Se registra cuánto tarda (evento "reloadDB").
      */
     public void reloadDB() {
+        // Lo que ya se pidió guardar se conserva, solo se descarta lo que no
+        Persistencia.vaciar();
+        synchronized (this.escritura) {
+            Lock cambios = this.bloqueoCambios();
+            cambios.lock();
+            try {
+                if (!this.tieneCambios() && this.archivosSinCambios()) {
+                    this.recargasOmitidas.incrementAndGet();
+                    return;
+                }
+                Cronometro medicion = log.medir("reloadDB", this.getClass().getSimpleName());
+                try {
+                    this.recargar();
+                } finally {
+                    medicion.close();
+                }
+            } finally {
+                cambios.unlock();
+            }
+        }
+    }
+
+    /**
+     * Vuelve a leer los archivos para reloadDB, por omisión con initDB. Las subclases
+     * actualizan en su lugar los registros que ya estaban en memoria, para que las referencias
+     * que se tengan a ellos (como el usuario con sesión iniciada) sigan siendo válidas.
+     */
+    protected void recargar() {
         this.initDB();
     }
 
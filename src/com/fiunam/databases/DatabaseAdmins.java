@@ -2,19 +2,21 @@ package com.fiunam.databases;
 
 import com.fiunam.logger.Logger;
 import com.fiunam.users.Administrador;
-import flexjson.JSONDeserializer;
-import flexjson.JSONSerializer;
+import com.fiunam.util.Claves;
+import com.fiunam.util.IntMap;
+import com.fiunam.util.IntSet;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
-import java.util.Random;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Crea y administra la información de los administradores.
@@ -23,6 +25,9 @@ import java.util.Random;
  */
 public class DatabaseAdmins extends Database{
     private ArrayList<Administrador> admins;
+    private final IndiceUsuarios<Administrador> indiceCredenciales = new IndiceUsuarios<>();
+    private final IntMap<Administrador> indiceTrabajadores = new IntMap<>();
+    private final AsignadorNumeros numerosTrabajador = new AsignadorNumeros(10_000_000, 99_999_999);
     private final String pathAdminsDB = Path.of(super.pathFiles, "administradores.json").toString();
     private final Logger log = new Logger(DatabaseAdmins.class);
 
@@ -41,20 +46,92 @@ public class DatabaseAdmins extends Database{
         return admins;
     }
 
+    /**
+     * Lee el archivo de administradores registro por registro ({@link LectorJson}). Si el
+     * archivo no existe o tiene un error se conservan los datos anteriores (en el primer
+     * inicio, el administrador por defecto). Al final se aplica la bitácora con los cambios
+     * posteriores al json.
+     */
     @Override
     protected void initDB() {
-        JSONDeserializer<ArrayList<Administrador>> jsonDeserializer = new JSONDeserializer<>();
+        ArrayList<Administrador> leidos = new ArrayList<>();
+        this.limpiarIndices();
 
-        try (FileReader file = new FileReader(this.pathAdminsDB, StandardCharsets.UTF_8)) {
-            this.admins = jsonDeserializer.deserialize(file);
+        Database.recuperarGuardado(this.pathAdminsDB);
+
+        try (LectorJson json = new LectorJson(new FileReader(this.pathAdminsDB, StandardCharsets.UTF_8))) {
+            if (json.fin()) {
+                // Archivo vacío (recién creado): se conservan los datos actuales
+                this.indexarAdmins();
+            } else {
+                json.inicioArreglo();
+                while (json.hayElemento()) {
+                    Administrador admin = leerAdmin(json);
+                    leidos.add(admin);
+                    this.indexar(admin);
+                }
+                this.admins = leidos;
+                this.marcarSinCambios();
+            }
         } catch (FileNotFoundException fe) {
             log.sendWarning("La base de datos \"ADMINISTRADORES\" no existe, esperando datos para crear una nueva.");
             this.createDB();
+            this.indexarAdmins();
         } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()));
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+            Database.resguardarDanado(this.pathAdminsDB);
+            this.indexarAdmins();
+        }
+        this.reproducirBitacora(this.pathAdminsDB);
+    }
+
+    /**
+     * Lee un administrador del arreglo del archivo, con los mismos campos que escribe {@link #guardarDB()}
+     */
+    private static Administrador leerAdmin(LectorJson json) throws IOException {
+        Administrador admin = new Administrador();
+        json.inicioObjeto();
+        String campo;
+        while ((campo = json.siguienteCampo()) != null) {
+            switch (campo) {
+                case "nombre" -> admin.setNombre(json.texto());
+                case "numTrabajador" -> admin.setNumTrabajador(json.texto());
+                case "password" -> admin.setPassword(json.texto());
+                case "username" -> admin.setUsername(json.texto());
+                default -> json.saltar();
+            }
+        }
+        return admin;
+    }
+
+    /**
+     * Reconstruye los índices de credenciales y de números de trabajador a partir de
+     * la lista de administradores.
+     */
+    private void indexarAdmins() {
+        this.limpiarIndices();
+        for (Administrador admin : this.admins) {
+            this.indexar(admin);
         }
     }
 
+    private void limpiarIndices() {
+        this.indiceCredenciales.limpiar();
+        this.indiceTrabajadores.clear();
+        this.numerosTrabajador.limpiar();
+    }
+
+    private void indexar(Administrador admin) {
+        this.indiceCredenciales.agregar(admin);
+        this.indiceTrabajadores.put(Claves.aEntero(admin.getNumTrabajador()), admin);
+        this.numerosTrabajador.registrar(Claves.aEntero(admin.getNumTrabajador()));
+    }
+
+    @Override
+    protected List<String> archivos() {
+        return List.of(this.pathAdminsDB);
+    }
+
     @Override
     protected void createDB() {
         try {
@@ -62,20 +139,37 @@ public class DatabaseAdmins extends Database{
             File file = new File(this.pathAdminsDB);
             if (!file.createNewFile()) throw new Exception("Error al crear el archivo " + this.pathAdminsDB);
         } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()));
+            log.sendError(() -> Arrays.toString(e.getStackTrace()));
         }
     }
 
     @Override
-    public void saveDB() {
-        try (FileWriter file = new FileWriter(this.pathAdminsDB, StandardCharsets.UTF_8)) {
-            JSONSerializer serializer = new JSONSerializer();
-
-            file.write(serializer.prettyPrint(true).serialize(this.admins));
+    protected void guardarDB() throws IOException {
+        Database.guardarJson(this.pathAdminsDB, json -> {
+            json.inicioArreglo();
+            for (Administrador admin : this.admins) {
+                escribirAdmin(json, admin);
+            }
+            json.finArreglo();
+        });
+    }
 
-        } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()));
-        }
+    /**
+     * Escribe un administrador con los mismos campos (y en el mismo orden) que usaba flexjson
+     */
+    private static void escribirAdmin(EscritorJson json, Administrador admin) throws IOException {
+        json.inicioObjeto();
+        json.campo("class");
+        json.texto(Administrador.class.getName());
+        json.campo("nombre");
+        json.texto(admin.getNombre());
+        json.campo("numTrabajador");
+        json.texto(admin.getNumTrabajador());
+        json.campo("password");
+        json.texto(admin.getPassword());
+        json.campo("username");
+        json.texto(admin.getUsername());
+        json.finObjeto();
     }
 
     @Override
@@ -95,9 +189,17 @@ public class DatabaseAdmins extends Database{
      * @param administrador objeto Administrador
      */
     public void agregarAdmin(Administrador administrador) {
-        administrador.setNumTrabajador(this.generarNumTrabajador());
-        this.admins.add(administrador);
-        log.sendInfo("Administrador registrado: " + administrador);
+        administrador.setNumTrabajador(String.valueOf(this.numerosTrabajador.siguiente()));
+        Lock cambios = this.bloqueoCambios();
+        cambios.lock();
+        try {
+            this.admins.add(administrador);
+            this.indexar(administrador);
+            this.registrar("+" + Database.jsonEnLinea(json -> escribirAdmin(json, administrador)));
+        } finally {
+            cambios.unlock();
+        }
+        log.sendInfo("Administrador registrado: %s", administrador);
     }
 
     /**
@@ -107,31 +209,32 @@ public class DatabaseAdmins extends Database{
      * @return Admin si existe; Admin null en caso contrario
      */
     public Administrador readAdmins(String numTrabajador) {
-        for (Administrador admin : this.admins) {
-            if (Objects.equals(admin.getNumTrabajador(), numTrabajador)) {
-                return admin;
-            }
-        }
-        return new Administrador();
+        Administrador admin = this.indiceTrabajadores.get(Claves.aEntero(numTrabajador));
+        return admin != null ? admin : new Administrador();
     }
 
     /**
      * Obtiene el objeto del Administrador por su nombre y contraseña para el
-     * inicio de sesión.
+     * inicio de sesión. Si hay administradores con el mismo nombre, se sigue el
+     * orden descrito en {@link IndiceUsuarios}.
      *
      * @param nombre Nombre
      * @param password Password
      * @return Alumno
      */
     public Administrador readAdmins(String nombre, String password) {
-        for (Administrador admin : this.admins) {
-            if (Objects.equals(admin.getUsername(), nombre) || Objects.equals(admin.getNombre(), nombre)) {
-                if (Objects.equals(admin.getPassword(), password)) {
-                    return admin;
-                }
-            }
-        }
-        return new Administrador();
+        Administrador admin = this.indiceCredenciales.buscar(nombre, password);
+        return admin != null ? admin : new Administrador();
+    }
+
+    /**
+     * Comprueba si un nombre de usuario ya está registrado por algún administrador
+     *
+     * @param username Nombre de usuario
+     * @return true si ya existe
+     */
+    public boolean existeUsername(String username) {
+        return this.indiceCredenciales.existeUsername(username);
     }
 
     /**
@@ -142,31 +245,57 @@ public class DatabaseAdmins extends Database{
     public void eliminarAdministrador(String numTrabajador) {
         for (int i = 0; i < this.admins.size(); i++) {
             if (Objects.equals(this.admins.get(i).getNumTrabajador(), numTrabajador)) {
-                this.admins.remove(i);
+                Lock cambios = this.bloqueoCambios();
+                cambios.lock();
+                try {
+                    this.quitar(this.admins.get(i));
+                    this.registrar("-" + numTrabajador);
+                } finally {
+                    cambios.unlock();
+                }
                 break;
             }
         }
-        log.sendWarning("El administrador con número de trabajador \"" +
-                numTrabajador + "\" no existe.");
+        log.sendWarning("El administrador con número de trabajador \"%s\" no existe.", numTrabajador);
+    }
+
+    private void quitar(Administrador admin) {
+        this.admins.remove(admin);
+        this.indiceCredenciales.eliminar(admin);
+        this.indiceTrabajadores.remove(Claves.aEntero(admin.getNumTrabajador()));
     }
 
     /**
-     * Genera un número de trabajador
-     *
-     * @return Número de trabajador de 8 dígitos generado para el administrador
+     * Registros: "+{administrador en json}" y "-numTrabajador", como en {@link DatabaseAlumnos}
+     * cada uno deja un estado absoluto.
      */
-    private String generarNumTrabajador() {
-        Random rand = new Random();
-        String numGenerado;
-        while (true) {
-            numGenerado = String.valueOf(rand.nextInt(99999999));
-            for (Administrador administrador : this.admins) {
-                if (Objects.equals(numGenerado, administrador.getNumTrabajador())) {
-                    numGenerado = String.valueOf(rand.nextInt(99999999));
-                } else {
-                    return numGenerado;
-                }
+    @Override
+    protected void aplicarRegistro(String registro) throws IOException {
+        switch (registro.charAt(0)) {
+            case '+' -> {
+                Administrador admin = leerAdmin(new LectorJson(registro.substring(1)));
+                Administrador anterior = this.indiceTrabajadores.get(Claves.aEntero(admin.getNumTrabajador()));
+                if (anterior != null) this.quitar(anterior);
+                this.admins.add(admin);
+                this.indexar(admin);
             }
+            case '-' -> {
+                Administrador admin = this.indiceTrabajadores.get(Claves.aEntero(registro.substring(1)));
+                if (admin != null) this.quitar(admin);
+            }
+            default -> throw new IOException("Tipo de registro desconocido");
         }
     }
+
+    @Override
+    protected void clavesAfectadas(String registro, IntSet claves) throws IOException {
+        claves.add(registro.charAt(0) == '+'
+                ? Claves.aEntero(leerAdmin(new LectorJson(registro.substring(1))).getNumTrabajador())
+                : Claves.aEntero(registro.substring(1)));
+    }
+
+    @Override
+    protected Administrador conClave(int clave) {
+        return this.indiceTrabajadores.get(clave);
+    }
 }
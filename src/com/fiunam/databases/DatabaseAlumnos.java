@@ -3,26 +3,40 @@ package com.fiunam.databases;
 import com.fiunam.logger.Logger;
 import com.fiunam.materias.AdminMateria;
 import com.fiunam.users.Alumno;
+import com.fiunam.util.Claves;
+import com.fiunam.util.Franjas;
+import com.fiunam.util.IntMap;
+import com.fiunam.util.IntSet;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Objects;
-import java.util.Random;
-
-import flexjson.*;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Crea y maneja la información de los alumnos
  */
 public class DatabaseAlumnos extends Database {
     private ArrayList<Alumno> alumnos;
+    private final IntMap<Alumno> indiceCuentas = new IntMap<>();
+    private final IndiceUsuarios<Alumno> indiceCredenciales = new IndiceUsuarios<>();
+    private final AsignadorNumeros numerosCuenta = new AsignadorNumeros(10_000_000, 99_999_999);
+    private final Franjas bloqueosAlumnos = new Franjas(256);
     private final String pathAlumnosDB = Path.of(super.pathFiles, "alumnos.json").toString();
+    private final Formato formato = Formato.de("alumnos");
+    private final Almacen<Alumno> almacenJson = DatabaseAlumnos.almacenDe(Formato.JSON, super.pathFiles);
+    private final Almacen<Alumno> almacen = DatabaseAlumnos.almacenDe(this.formato, super.pathFiles);
+    /**
+     * Modo perezoso ("fiunam.db.alumnos.perezoso", solo en formato binario): en lugar de la
+     * lista completa solo se tiene el índice de claves y los alumnos se leen al pedirlos
+     */
+    private final boolean perezoso = Boolean.getBoolean("fiunam.db.alumnos.perezoso");
+    /** Alumnos en el modo perezoso, null si están todos en la lista */
+    private AlumnosEnDisco enDisco;
     private final Logger log = new Logger(DatabaseAlumnos.class);
 
     /**
@@ -35,9 +49,11 @@ public class DatabaseAlumnos extends Database {
     }
 
     /**
-     * @return Lista de alumnos
+     * @return Lista de alumnos. En el modo perezoso es una copia con todos los alumnos
+     * leídos del archivo, solo para recorrerla
      */
     public ArrayList<Alumno> getAlumnos() {
+        if (this.enDisco != null) return new ArrayList<>(this.enDisco.vista());
         return alumnos;
     }
 
@@ -47,21 +63,172 @@ public class DatabaseAlumnos extends Database {
      * @return Lista de alumnos
      */
     public ArrayList<Alumno> getCopiaAlumnos() {
+        if (this.enDisco != null) return new ArrayList<>(this.enDisco.vista());
         return new ArrayList<>(this.alumnos);
     }
 
+    /**
+     * @return Alumnos que hay en memoria: todos, o en el modo perezoso los de la caché y los
+     * que tienen cambios sin guardar
+     */
+    public int alumnosEnMemoria() {
+        return this.enDisco != null ? this.enDisco.residentes() : this.alumnos.size();
+    }
+
+    /**
+     * @param formato Formato del archivo
+     * @param carpeta Carpeta de los archivos
+     * @return Almacén del archivo de alumnos en ese formato
+     */
+    static Almacen<Alumno> almacenDe(Formato formato, String carpeta) {
+        return switch (formato) {
+            case JSON -> new AlmacenJson<>(Path.of(carpeta, "alumnos.json").toString(),
+                    DatabaseAlumnos::leerAlumno, DatabaseAlumnos::escribirAlumno);
+            case BINARIO -> new AlmacenBinario<>(Path.of(carpeta, "alumnos.bin").toString(),
+                    InstantaneaBinaria::leerAlumnos, InstantaneaBinaria::escribirAlumnos);
+            case REGISTROS -> new AlmacenRegistros<>(Path.of(carpeta, "alumnos.kv").toString(),
+                    Alumno::claveCuenta, DatabaseAlumnos::leerAlumno, DatabaseAlumnos::escribirAlumno);
+        };
+    }
+
+    /**
+     * Lee el archivo de alumnos del {@link Almacen} del formato elegido (si aún no existe, el
+     * json), cada alumno se agrega a los índices en cuanto se lee. En el modo perezoso solo se
+     * lee el índice de claves de alumnos.bin ({@link AlumnosEnDisco}). Si el archivo tiene un
+     * error se conservan los datos anteriores. Al final se aplica la bitácora con los cambios
+     * posteriores al archivo.
+     */
     @Override
     protected void initDB() {
-        JSONDeserializer<ArrayList<Alumno>> jsonDeserializer = new JSONDeserializer<>();
+        this.limpiarIndices();
+
+        Database.recuperarGuardado(this.pathAlumnosDB);
+        Database.recuperarGuardado(this.almacen.ruta());
+        Almacen<Alumno> origen = this.almacen.existe() ? this.almacen : this.almacenJson;
 
-        try (FileReader file = new FileReader(this.pathAlumnosDB, StandardCharsets.UTF_8)) {
-            this.alumnos = jsonDeserializer.deserialize(file);
+        try {
+            if (origen != this.almacenJson && this.formato == Formato.BINARIO && this.perezoso) {
+                if (this.enDisco == null) {
+                    this.enDisco = new AlumnosEnDisco(Integer.getInteger("fiunam.db.alumnos.cache", 10_000));
+                }
+                this.enDisco.abrir(Path.of(origen.ruta()), this.numerosCuenta);
+                this.alumnos = new ArrayList<>();
+                this.marcarSinCambios();
+            } else {
+                ArrayList<Alumno> leidos = origen.leer(this::indexar);
+                if (leidos == null) {
+                    // Archivo vacío (recién creado): se conservan los datos actuales
+                    this.indexarAlumnos();
+                } else {
+                    this.alumnos = leidos;
+                    this.enDisco = null;
+                    this.marcarSinCambios();
+                    // Un almacén por registro vacío no puede recibir solo los cambios
+                    if (origen != this.almacen && this.almacen instanceof AlmacenPorRegistro) this.marcarModificada();
+                }
+            }
         } catch (FileNotFoundException fe) {
             log.sendWarning("La base de datos \"ALUMNOS\" no existe, esperando datos para crear una nueva.");
             this.createDB();
+            this.indexarAlumnos();
         } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()));
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+            Database.resguardarDanado(origen.ruta());
+            this.indexarAlumnos();
+        }
+        // La bitácora es la misma en todos los formatos
+        this.reproducirBitacora(this.pathAlumnosDB);
+    }
+
+    @Override
+    protected List<String> archivos() {
+        return List.of(this.almacen.ruta(), this.pathAlumnosDB);
+    }
+
+    /**
+     * Vuelve a leer el archivo (con initDB) y pasa los datos leídos a los alumnos que ya
+     * estaban en memoria: la lista y los objetos de los alumnos que siguen existiendo son los
+     * mismos, solo cambian sus datos. En el modo perezoso los alumnos se leen de nuevo del archivo.
+     */
+    @Override
+    protected void recargar() {
+        ArrayList<Alumno> lista = this.alumnos;
+        IntMap<Alumno> anteriores = new IntMap<>(lista.size());
+        for (Alumno alumno : lista) {
+            anteriores.put(alumno.claveCuenta(), alumno);
+        }
+
+        this.initDB();
+        if (this.enDisco != null) return;
+
+        int actualizados = 0;
+        int nuevos = 0;
+        ArrayList<Alumno> leidos = this.alumnos;
+        for (int i = 0; i < leidos.size(); i++) {
+            Alumno anterior = anteriores.remove(leidos.get(i).claveCuenta());
+            if (anterior == null) {
+                nuevos++;
+                continue;
+            }
+            if (anterior != leidos.get(i) && anterior.actualizarDesde(leidos.get(i))) actualizados++;
+            leidos.set(i, anterior);
+        }
+        if (leidos != lista) {
+            lista.clear();
+            lista.addAll(leidos);
+            this.alumnos = lista;
+        }
+        this.indexarAlumnos();
+        log.sendInfo("Alumnos recargados: %d actualizados, %d nuevos, %d eliminados.", actualizados, nuevos, anteriores.size());
+    }
+
+    /**
+     * Lee un alumno del arreglo del archivo, con los mismos campos que escribe {@link #guardarDB()}
+     */
+    static Alumno leerAlumno(LectorJson json) throws IOException {
+        Alumno alumno = new Alumno();
+        json.inicioObjeto();
+        String campo;
+        while ((campo = json.siguienteCampo()) != null) {
+            switch (campo) {
+                case "materias" -> {
+                    json.inicioArreglo();
+                    while (json.hayElemento()) {
+                        alumno.inscribirMateria(Claves.aEntero(json.texto()));
+                    }
+                }
+                case "nombre" -> alumno.setNombre(json.texto());
+                case "numCuenta" -> alumno.setNumCuenta(json.texto());
+                case "password" -> alumno.setPassword(json.texto());
+                case "semestre" -> alumno.setSemestre(json.entero());
+                case "username" -> alumno.setUsername(json.texto());
+                default -> json.saltar();
+            }
         }
+        return alumno;
+    }
+
+    /**
+     * Reconstruye los índices de números de cuenta y de credenciales a partir de la
+     * lista de alumnos.
+     */
+    private void indexarAlumnos() {
+        this.limpiarIndices();
+        for (Alumno alumno : this.alumnos) {
+            this.indexar(alumno);
+        }
+    }
+
+    private void limpiarIndices() {
+        this.indiceCuentas.clear();
+        this.indiceCredenciales.limpiar();
+        this.numerosCuenta.limpiar();
+    }
+
+    private void indexar(Alumno alumno) {
+        this.indiceCuentas.put(alumno.claveCuenta(), alumno);
+        this.indiceCredenciales.agregar(alumno);
+        this.numerosCuenta.registrar(alumno.claveCuenta());
     }
 
     @Override
@@ -71,28 +238,80 @@ public class DatabaseAlumnos extends Database {
             File file = new File(this.pathAlumnosDB);
             if (!file.createNewFile()) throw new Exception("Error al crear el archivo " + this.pathAlumnosDB);
         } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()));
+            log.sendError(() -> Arrays.toString(e.getStackTrace()));
         }
     }
 
     @Override
-    public void saveDB() {
-        try (FileWriter file = new FileWriter(this.pathAlumnosDB, StandardCharsets.UTF_8)) {
-            JSONSerializer serializer = new JSONSerializer();
+    protected void guardarDB() throws IOException {
+        if (this.enDisco != null) {
+            // Los cambios que lleguen mientras se escribe se conservan al abrir el archivo nuevo
+            this.enDisco.iniciarEscritura();
+            try {
+                this.almacen.escribirTodo(this.enDisco.vista());
+                this.enDisco.terminarEscritura(Path.of(this.almacen.ruta()), this.numerosCuenta);
+            } catch (IOException | RuntimeException e) {
+                this.enDisco.cancelarEscritura();
+                throw e;
+            }
+            return;
+        }
+        this.almacen.escribirTodo(this.alumnos);
+    }
 
-            file.write(serializer.prettyPrint(true).include("materias").serialize(this.alumnos));
+    @Override
+    protected Almacen<?> almacen() {
+        return this.almacen;
+    }
 
-        } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()));
+    @Override
+    protected void clavesAfectadas(String registro, IntSet claves) throws IOException {
+        claves.add(switch (registro.charAt(0)) {
+            case '+' -> leerAlumno(new LectorJson(registro.substring(1))).claveCuenta();
+            case '-' -> Integer.parseInt(registro.substring(1));
+            case 'A', 'D' -> Integer.parseInt(registro.split(" ")[1]);
+            default -> Integer.parseInt(registro.split(" ")[2]);
+        });
+    }
+
+    @Override
+    protected Alumno conClave(int clave) {
+        return this.conCuenta(clave);
+    }
+
+    /**
+     * Escribe un alumno con los mismos campos (y en el mismo orden) que usaba flexjson
+     */
+    static void escribirAlumno(EscritorJson json, Alumno alumno) throws IOException {
+        json.inicioObjeto();
+        json.campo("class");
+        json.texto(Alumno.class.getName());
+        json.campo("materias");
+        json.inicioArreglo();
+        for (int idMateria : alumno.idsMaterias()) {
+            json.elemento(Claves.idMateria(idMateria));
         }
+        json.finArreglo();
+        json.campo("nombre");
+        json.texto(alumno.getNombre());
+        json.campo("numCuenta");
+        json.texto(alumno.getNumCuenta());
+        json.campo("password");
+        json.texto(alumno.getPassword());
+        json.campo("semestre");
+        json.entero(alumno.getSemestre());
+        json.campo("username");
+        json.texto(alumno.getUsername());
+        json.finObjeto();
     }
 
     @Override
     public String printDB() {
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < this.alumnos.size(); i++) {
+        List<Alumno> lista = this.enDisco != null ? this.enDisco.vista() : this.alumnos;
+        for (int i = 0; i < lista.size(); i++) {
             sb.append("[").append(i).append("] ");
-            sb.append(this.alumnos.get(i)).append("\n");
+            sb.append(lista.get(i)).append("\n");
         }
 
         return sb.toString();
@@ -104,9 +323,16 @@ public class DatabaseAlumnos extends Database {
      * @param alumno Objeto con la información del alumno
      */
     public void agregarAlumno(Alumno alumno) {
-        alumno.setNumCuenta(this.generarNumCuenta());
-        this.alumnos.add(alumno);
-        log.sendInfo("Alumno registrado: " + alumno);
+        alumno.asignarCuenta(this.numerosCuenta.siguiente());
+        Lock cambios = this.bloqueoCambios();
+        cambios.lock();
+        try {
+            this.poner(alumno);
+            this.registrar("+" + Database.jsonEnLinea(json -> escribirAlumno(json, alumno)));
+        } finally {
+            cambios.unlock();
+        }
+        log.sendInfo("Alumno registrado: %s", alumno);
     }
 
     /**
@@ -116,75 +342,238 @@ public class DatabaseAlumnos extends Database {
      * @return Alumno si existe; null en caso contrario
      */
     public Alumno readAlumno(String numCuenta) {
-        for (Alumno alumno : this.alumnos) {
-            if (Objects.equals(alumno.getNumCuenta(), numCuenta)) {
-                return alumno;
-            }
-        }
-        return new Alumno();
+        return this.readAlumno(Claves.aEntero(numCuenta));
+    }
+
+    /**
+     * Obtiene el objeto del Alumno por su número de cuenta como entero
+     *
+     * @param numCuenta Número de cuenta
+     * @return Alumno si existe; un alumno con sus atributos nulos en caso contrario
+     */
+    public Alumno readAlumno(int numCuenta) {
+        Alumno alumno = this.conCuenta(numCuenta);
+        return alumno != null ? alumno : new Alumno();
     }
 
     /**
      * obtiene el objeto del alumno desde su nombre y password para el
-     * inicio de sesión.
+     * inicio de sesión. Si hay alumnos con el mismo nombre, se sigue el
+     * orden descrito en {@link IndiceUsuarios}.
      *
      * @param nombre Nombre o Username del alumno
      * @param password Contraseña del alumno
      * @return Alumno
      */
     public Alumno readAlumno(String nombre, String password) {
-        for (Alumno alumno : this.alumnos) {
-            if (Objects.equals(alumno.getUsername(), nombre) || Objects.equals(alumno.getNombre(), nombre)) {
-                if (Objects.equals(alumno.getPassword(), password)) {
-                    return alumno;
-                }
-            }
-        }
-        return new Alumno();
+        Alumno alumno = this.enDisco != null ? this.enDisco.buscar(nombre, password)
+                : this.indiceCredenciales.buscar(nombre, password);
+        return alumno != null ? alumno : new Alumno();
     }
 
     /**
-     * Elimina un alumno y lo da de baja en todas las materias que haya insctito
+     * Comprueba si un nombre de usuario ya está registrado por algún alumno
+     *
+     * @param username Nombre de usuario
+     * @return true si ya existe
+     */
+    public boolean existeUsername(String username) {
+        if (this.enDisco != null) return this.enDisco.existeUsername(username);
+        return this.indiceCredenciales.existeUsername(username);
+    }
+
+    /**
+     * Elimina un alumno y lo da de baja en todas las materias que haya insctito (sus lugares
+     * pasan a los primeros de cada lista de espera), también sale de las listas de espera.
+     * Mientras tanto no hay altas ni bajas en ninguna de las dos bases de datos: se tienen sus
+     * bloqueos de escritura, en el mismo orden que en
+     * {@link com.fiunam.materias.ServicioInscripciones} (primero materias, luego alumnos).
      *
      * @param dbmaterias Base de datos de las materias
      * @param numCuenta Número de cuenta del alumno
      */
     public void eliminarAlumno(DatabaseMaterias dbmaterias, String numCuenta) {
-        for (int i = 0; i < this.alumnos.size(); i++) {
-            if (Objects.equals(this.alumnos.get(i).getNumCuenta(), numCuenta)) {
-                Alumno alumno = this.alumnos.get(i);
-
-                while (alumno.getMaterias().size() > 0) {
-                    AdminMateria.bajaMateria(dbmaterias, this, alumno.getMaterias().get(0), alumno.getNumCuenta());
-                }
-
-                this.alumnos.remove(i);
-                log.sendInfo("Alumno " + alumno.getNombre() + " (" + alumno.getNumCuenta() + ") eliminada.");
+        Lock cambiosMaterias = dbmaterias.bloqueoCambios();
+        Lock cambios = this.bloqueoCambios();
+        cambiosMaterias.lock();
+        cambios.lock();
+        Alumno alumno;
+        try {
+            alumno = this.conCuenta(Claves.aEntero(numCuenta));
+            if (alumno == null) {
+                log.sendWarning("El alumno con Número de cuenta \"%s\" no existe.", numCuenta);
                 return;
             }
+
+            dbmaterias.quitarDeEsperas(alumno.claveCuenta());
+            for (int idMateria : alumno.idsMaterias()) {
+                AdminMateria.bajaMateria(dbmaterias, this, idMateria, alumno.claveCuenta());
+            }
+            this.quitar(alumno);
+            this.registrar("-" + alumno.claveCuenta());
+        } finally {
+            cambios.unlock();
+            cambiosMaterias.unlock();
         }
-        log.sendWarning("El alumno con Número de cuenta \"" + numCuenta + "\" no existe.");
+        log.sendInfo(() -> "Alumno " + alumno.getNombre() + " (" + alumno.getNumCuenta() + ") eliminada.");
+    }
+
+    /**
+     * @return El alumno con ese número de cuenta, o null
+     */
+    private Alumno conCuenta(int numCuenta) {
+        return this.enDisco != null ? this.enDisco.obtener(numCuenta) : this.indiceCuentas.get(numCuenta);
+    }
+
+    private void poner(Alumno alumno) {
+        if (this.enDisco != null) {
+            this.enDisco.agregar(alumno);
+            this.numerosCuenta.registrar(alumno.claveCuenta());
+            return;
+        }
+        this.alumnos.add(alumno);
+        this.indexar(alumno);
+    }
+
+    private void quitar(Alumno alumno) {
+        if (this.enDisco != null) {
+            this.enDisco.quitar(alumno);
+            return;
+        }
+        this.alumnos.remove(alumno);
+        this.indiceCuentas.remove(alumno.claveCuenta());
+        this.indiceCredenciales.eliminar(alumno);
+    }
+
+    /**
+     * Bloqueo de un alumno para cambiar su lista de materias, junto con
+     * {@link #bloqueoRegistros()}. Varios alumnos pueden compartir el mismo bloqueo.
+     *
+     * @param numCuenta Número de cuenta del alumno
+     * @return Bloqueo del alumno
+     */
+    public Lock bloqueoAlumno(int numCuenta) {
+        return this.bloqueosAlumnos.de(numCuenta);
+    }
+
+    /**
+     * Registra en la bitácora una inscripción, la llama
+     * {@link com.fiunam.materias.ServicioInscripciones} después de modificar al alumno.
+     *
+     * @param idMateria ID de la materia
+     * @param numCuenta Número de cuenta del alumno
+     */
+    public void registrarAlta(int idMateria, int numCuenta) {
+        this.registrar("I " + idMateria + " " + numCuenta);
+        this.fijarCambio("I " + idMateria + " " + numCuenta);
     }
 
     /**
-     * Genera un número de cuenta para el alumno.
+     * Registra en la bitácora una baja, la llama
+     * {@link com.fiunam.materias.ServicioInscripciones} después de modificar al alumno.
      *
-     * @return Número de cuenta de 8 dígitos generado para el alumno
-     */
-    private String generarNumCuenta() {
-        Random rand = new Random();
-        String numGenerado;
-        while (true) {
-            if (this.alumnos.size() <= 0) return String.valueOf(rand.nextInt(99999999));
-
-            numGenerado = String.valueOf(rand.nextInt(99999999));
-            for (Alumno alumno : this.alumnos) {
-                if (Objects.equals(numGenerado, alumno.getNumCuenta())) {
-                    numGenerado = String.valueOf(rand.nextInt(99999999));
+     * @param idMateria ID de la materia
+     * @param numCuenta Número de cuenta del alumno
+     */
+    public void registrarBaja(int idMateria, int numCuenta) {
+        this.registrar("B " + idMateria + " " + numCuenta);
+        this.fijarCambio("B " + idMateria + " " + numCuenta);
+    }
+
+    /**
+     * Registra en la bitácora varias inscripciones de un alumno en un solo registro, la llama
+     * {@link com.fiunam.materias.ServicioInscripciones} después de modificar al alumno.
+     *
+     * @param numCuenta   Número de cuenta del alumno
+     * @param idsMaterias IDs de las materias
+     */
+    public void registrarAltas(int numCuenta, int[] idsMaterias) {
+        String registro = Database.registroLote('A', numCuenta, idsMaterias);
+        this.registrar(registro);
+        this.fijarCambio(registro);
+    }
+
+    /**
+     * Registra en la bitácora varias bajas de un alumno en un solo registro, la llama
+     * {@link com.fiunam.materias.ServicioInscripciones} después de modificar al alumno.
+     *
+     * @param numCuenta   Número de cuenta del alumno
+     * @param idsMaterias IDs de las materias
+     */
+    public void registrarBajas(int numCuenta, int[] idsMaterias) {
+        String registro = Database.registroLote('D', numCuenta, idsMaterias);
+        this.registrar(registro);
+        this.fijarCambio(registro);
+    }
+
+    /**
+     * Indica que se modificó directamente a un alumno (por ejemplo, su contraseña); en el
+     * modo perezoso el alumno se conserva en memoria hasta el siguiente guardado.
+     *
+     * @param alumno Alumno modificado
+     */
+    public void marcarModificado(Alumno alumno) {
+        if (this.enDisco != null) this.enDisco.fijar(alumno);
+        this.marcarModificada();
+    }
+
+    /**
+     * En el modo perezoso, el alumno de un alta o baja pudo salir de la caché después de
+     * modificarlo; se aplica el registro al que está en memoria (no cambia nada si es el mismo).
+     */
+    private void fijarCambio(String registro) {
+        if (this.enDisco == null) return;
+        try {
+            this.aplicarRegistro(registro);
+        } catch (IOException e) {
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registros: "+{alumno en json}", "-numCuenta", "I idMateria numCuenta", "B idMateria numCuenta",
+     * y "A numCuenta idMateria ..." o "D numCuenta idMateria ..." para varias altas o bajas.
+     * Cada uno deja un estado absoluto (el alumno existe o no, está inscrito o no), así que aplicar
+     * de nuevo un registro que ya estaba en el json no cambia el resultado.
+     */
+    @Override
+    protected void aplicarRegistro(String registro) throws IOException {
+        switch (registro.charAt(0)) {
+            case '+' -> {
+                Alumno alumno = leerAlumno(new LectorJson(registro.substring(1)));
+                Alumno anterior = this.conCuenta(alumno.claveCuenta());
+                if (anterior != null) this.quitar(anterior);
+                this.poner(alumno);
+            }
+            case '-' -> {
+                Alumno alumno = this.conCuenta(Integer.parseInt(registro.substring(1)));
+                if (alumno != null) this.quitar(alumno);
+            }
+            case 'I', 'B' -> {
+                String[] partes = registro.split(" ");
+                Alumno alumno = this.conCuenta(Integer.parseInt(partes[2]));
+                if (alumno == null) return;
+                if (registro.charAt(0) == 'I') {
+                    alumno.inscribirMateria(Integer.parseInt(partes[1]));
                 } else {
-                    return numGenerado;
+                    alumno.darBajaMateria(Integer.parseInt(partes[1]));
+                }
+                if (this.enDisco != null) this.enDisco.fijar(alumno);
+            }
+            case 'A', 'D' -> {
+                String[] partes = registro.split(" ");
+                Alumno alumno = this.conCuenta(Integer.parseInt(partes[1]));
+                if (alumno == null) return;
+                for (int i = 2; i < partes.length; i++) {
+                    if (registro.charAt(0) == 'A') {
+                        alumno.inscribirMateria(Integer.parseInt(partes[i]));
+                    } else {
+                        alumno.darBajaMateria(Integer.parseInt(partes[i]));
+                    }
                 }
+                if (this.enDisco != null) this.enDisco.fijar(alumno);
             }
+            default -> throw new IOException("Tipo de registro desconocido");
         }
     }
 }
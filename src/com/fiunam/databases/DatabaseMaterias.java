@@ -3,15 +3,20 @@ package com.fiunam.databases;
 import com.fiunam.logger.Logger;
 import com.fiunam.materias.AdminMateria;
 import com.fiunam.materias.Materia;
-import flexjson.JSONDeserializer;
-import flexjson.JSONSerializer;
+import com.fiunam.util.Claves;
+import com.fiunam.util.Franjas;
+import com.fiunam.util.IntMap;
+import com.fiunam.util.IntSet;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Objects;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Crea y maneja la información de las materias
@@ -19,7 +24,13 @@ import java.util.Objects;
 public class DatabaseMaterias extends Database {
     private final Logger log = new Logger(DatabaseMaterias.class);
     private ArrayList<Materia> materias;
+    private final IntMap<Materia> indiceIds = new IntMap<>();
+    private final LinkedHashMap<String, ArrayList<Materia>> indiceAreas = new LinkedHashMap<>();
+    private final HashMap<String, List<Materia>> vistasAreas = new HashMap<>();
+    private final Franjas bloqueosMaterias = new Franjas(256);
     private final String pathMateriasDB = Paths.get(super.pathFiles, "materias.json").toString();
+    private final Almacen<Materia> almacenJson = DatabaseMaterias.almacenDe(Formato.JSON, super.pathFiles);
+    private final Almacen<Materia> almacen = DatabaseMaterias.almacenDe(Formato.de("materias"), super.pathFiles);
     private int idMaterias;
 
     /**
@@ -40,34 +51,195 @@ public class DatabaseMaterias extends Database {
         return new ArrayList<>(this.materias);
     }
 
-    public ArrayList<Materia> getCopiaMaterias(String key){
-        ArrayList<Materia> materiasFiltradas = new ArrayList<>();
-        for (Materia materia: this.materias){
-            if (Objects.equals(materia.getArea(), key)){
-                materiasFiltradas.add(materia);
-            }
-        }
-        return materiasFiltradas;
+    /**
+     * Retorna las materias de un área. La lista es una vista de solo lectura del
+     * índice de áreas (no se crea una copia), por lo que refleja las materias que
+     * se agreguen o eliminen después.
+     * @param area Área de las materias (ver {@link AdminMateria#getAreas()})
+     * @return Vista de solo lectura con las materias del área
+     */
+    public List<Materia> getMaterias(String area) {
+        List<Materia> vista = this.vistasAreas.get(area);
+        return vista != null ? vista : Collections.emptyList();
+    }
+
+    /**
+     * @param formato Formato del archivo
+     * @param carpeta Carpeta de los archivos
+     * @return Almacén del archivo de materias en ese formato
+     */
+    static Almacen<Materia> almacenDe(Formato formato, String carpeta) {
+        return switch (formato) {
+            case JSON -> new AlmacenJson<>(Paths.get(carpeta, "materias.json").toString(),
+                    DatabaseMaterias::leerMateria, DatabaseMaterias::escribirMateria);
+            case BINARIO -> new AlmacenBinario<>(Paths.get(carpeta, "materias.bin").toString(),
+                    InstantaneaBinaria::leerMaterias, InstantaneaBinaria::escribirMaterias);
+            case REGISTROS -> new AlmacenRegistros<>(Paths.get(carpeta, "materias.kv").toString(),
+                    Materia::claveMateria, DatabaseMaterias::leerMateria, DatabaseMaterias::escribirMateria);
+        };
     }
 
+    /**
+     * Lee el archivo de materias del {@link Almacen} del formato elegido (si aún no existe, el
+     * json), cada materia se agrega a los índices en cuanto se lee. Si el archivo tiene un error
+     * se conservan los datos anteriores. Al final se aplica la bitácora con los cambios
+     * posteriores al archivo.
+     */
     @Override
     protected void initDB() {
-        JSONDeserializer<ArrayList<Materia>> jsonDeserializer = new JSONDeserializer<>();
-
-        try (FileReader file = new FileReader(this.pathMateriasDB, StandardCharsets.UTF_8)) {
-            this.materias = jsonDeserializer.deserialize(file);
-            try{
-                this.idMaterias = Integer.parseInt(materias.get(materias.size()-1).getIdMateria());
-            } catch (Exception e){
-                this.idMaterias = 0;
-                log.sendWarning("(%s) Listado de materias vacio, empezando en ID 0000.".formatted(e));
+        this.limpiarIndices();
+
+        Database.recuperarGuardado(this.pathMateriasDB);
+        Database.recuperarGuardado(this.almacen.ruta());
+        Almacen<Materia> origen = this.almacen.existe() ? this.almacen : this.almacenJson;
+
+        try {
+            ArrayList<Materia> leidas = origen.leer(this::indexar);
+            if (leidas == null) {
+                // Archivo vacío (recién creado): se conservan los datos actuales
+                this.indexarMaterias();
+            } else {
+                this.materias = leidas;
+                this.marcarSinCambios();
+                // Un almacén por registro vacío no puede recibir solo los cambios
+                if (origen != this.almacen && this.almacen instanceof AlmacenPorRegistro) this.marcarModificada();
+                try{
+                    this.idMaterias = materias.get(materias.size()-1).claveMateria();
+                } catch (Exception e){
+                    this.idMaterias = 0;
+                    log.sendWarning("(%s) Listado de materias vacio, empezando en ID 0000.", e);
+                }
             }
         } catch (FileNotFoundException fe) {
             log.sendWarning("La base de datos \"MATERIAS\" no existe, esperando datos para crear una nueva.");
             this.createDB();
+            this.indexarMaterias();
         } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()));
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+            Database.resguardarDanado(origen.ruta());
+            this.indexarMaterias();
+        }
+        // La bitácora es la misma en todos los formatos
+        this.reproducirBitacora(this.pathMateriasDB);
+    }
+
+    @Override
+    protected List<String> archivos() {
+        return List.of(this.almacen.ruta(), this.pathMateriasDB);
+    }
+
+    /**
+     * Vuelve a leer el archivo (con initDB) y pasa los datos leídos a las materias que ya
+     * estaban en memoria: la lista, las listas de cada área y los objetos de las materias que
+     * siguen existiendo son los mismos, solo cambian sus datos.
+     */
+    @Override
+    protected void recargar() {
+        ArrayList<Materia> lista = this.materias;
+        IntMap<Materia> anteriores = new IntMap<>(lista.size());
+        for (Materia materia : lista) {
+            anteriores.put(materia.claveMateria(), materia);
+        }
+
+        this.initDB();
+
+        int actualizadas = 0;
+        int nuevas = 0;
+        ArrayList<Materia> leidas = this.materias;
+        for (int i = 0; i < leidas.size(); i++) {
+            Materia anterior = anteriores.remove(leidas.get(i).claveMateria());
+            if (anterior == null) {
+                nuevas++;
+                continue;
+            }
+            if (anterior != leidas.get(i) && anterior.actualizarDesde(leidas.get(i))) actualizadas++;
+            leidas.set(i, anterior);
+        }
+        if (leidas != lista) {
+            lista.clear();
+            lista.addAll(leidas);
+            this.materias = lista;
+        }
+        this.indexarMaterias();
+        log.sendInfo("Materias recargadas: %d actualizadas, %d nuevas, %d eliminadas.", actualizadas, nuevas, anteriores.size());
+    }
+
+    /**
+     * Lee una materia del arreglo del archivo, con los mismos campos que escribe {@link #guardarDB()}
+     */
+    static Materia leerMateria(LectorJson json) throws IOException {
+        Materia materia = new Materia();
+        int versionEspera = 0;
+        json.inicioObjeto();
+        String campo;
+        while ((campo = json.siguienteCampo()) != null) {
+            switch (campo) {
+                case "alumnos" -> {
+                    json.inicioArreglo();
+                    while (json.hayElemento()) {
+                        materia.inscribirAlumno(Claves.aEntero(json.texto()));
+                    }
+                }
+                case "area" -> materia.setArea(json.texto());
+                case "cupo" -> materia.setCupo(json.entero());
+                case "espera" -> {
+                    json.inicioArreglo();
+                    while (json.hayElemento()) {
+                        materia.ponerEnEspera(Claves.aEntero(json.texto()));
+                    }
+                }
+                case "grupo" -> materia.setGrupo(json.entero());
+                case "idMateria" -> materia.setIdMateria(json.texto());
+                case "nombre" -> materia.setNombre(json.texto());
+                case "profesor" -> materia.setProfesor(json.texto());
+                case "versionEspera" -> versionEspera = json.entero();
+                default -> json.saltar();
+            }
+        }
+        // Al leer la lista de espera cambia la versión, se fija al final
+        materia.setVersionEspera(versionEspera);
+        return materia;
+    }
+
+    /**
+     * Reconstruye los índices por ID y por área a partir de la lista de materias,
+     * las áreas de {@link AdminMateria#getAreas()} siempre tienen su lista aunque estén vacías.
+     */
+    private void indexarMaterias() {
+        this.limpiarIndices();
+        for (Materia materia : this.materias) {
+            this.indexar(materia);
+        }
+    }
+
+    private void limpiarIndices() {
+        this.indiceIds.clear();
+        // Las listas de cada área se vacían en lugar de reemplazarlas, así las vistas que ya
+        // se entregaron con getMaterias(area) siguen siendo válidas
+        for (ArrayList<Materia> lista : this.indiceAreas.values()) {
+            lista.clear();
+        }
+        for (String area : AdminMateria.getAreas()) {
+            this.areaDe(area);
+        }
+    }
+
+    private void indexar(Materia materia) {
+        this.indiceIds.put(materia.claveMateria(), materia);
+        this.areaDe(materia.getArea()).add(materia);
+    }
+
+    /**
+     * Obtiene la lista del índice para un área, si no existe la crea.
+     */
+    private ArrayList<Materia> areaDe(String area) {
+        ArrayList<Materia> lista = this.indiceAreas.get(area);
+        if (lista == null) {
+            lista = new ArrayList<>();
+            this.indiceAreas.put(area, lista);
+            this.vistasAreas.put(area, Collections.unmodifiableList(lista));
         }
+        return lista;
     }
 
     @Override
@@ -77,22 +249,85 @@ public class DatabaseMaterias extends Database {
             File file = new File(this.pathMateriasDB);
             if (!file.createNewFile()) throw new Exception("Error al crear el archivo " + this.pathMateriasDB);
         } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()));
+            log.sendError(() -> Arrays.toString(e.getStackTrace()));
         }
     }
 
     @Override
-    public void saveDB() {
-        try (FileWriter file = new FileWriter(this.pathMateriasDB, StandardCharsets.UTF_8)) {
-            JSONSerializer serializer = new JSONSerializer();
+    protected void guardarDB() throws IOException {
+        this.almacen.escribirTodo(this.materias);
+    }
 
-            file.write(serializer.prettyPrint(true).include("alumnos").serialize(this.materias));
+    @Override
+    protected Almacen<?> almacen() {
+        return this.almacen;
+    }
 
-        } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()));
+    @Override
+    protected void clavesAfectadas(String registro, IntSet claves) throws IOException {
+        switch (registro.charAt(0)) {
+            case '+' -> claves.add(leerMateria(new LectorJson(registro.substring(1))).claveMateria());
+            case '-' -> claves.add(Integer.parseInt(registro.substring(1)));
+            case 'A', 'D' -> {
+                String[] partes = registro.split(" ");
+                for (int i = 2; i < partes.length; i++) {
+                    claves.add(Integer.parseInt(partes[i]));
+                }
+            }
+            default -> claves.add(Integer.parseInt(registro.split(" ")[1]));
         }
     }
 
+    @Override
+    protected Materia conClave(int clave) {
+        return this.indiceIds.get(clave);
+    }
+
+    /**
+     * Escribe una materia con los mismos campos (y en el mismo orden) que usaba flexjson. El
+     * cupo solo se escribe si no es el de {@link Materia#MAX_ALUMNOS}, la lista de espera
+     * ("espera") solo si tiene alumnos, y su versión ("versionEspera") solo si ya cambió.
+     */
+    static void escribirMateria(EscritorJson json, Materia materia) throws IOException {
+        json.inicioObjeto();
+        json.campo("alumnos");
+        json.inicioArreglo();
+        for (int numCuenta : materia.cuentasAlumnos()) {
+            json.elemento(Claves.numCuenta(numCuenta));
+        }
+        json.finArreglo();
+        json.campo("area");
+        json.texto(materia.getArea());
+        json.campo("class");
+        json.texto(Materia.class.getName());
+        if (materia.getCupo() != Materia.MAX_ALUMNOS) {
+            json.campo("cupo");
+            json.entero(materia.getCupo());
+        }
+        int[] espera = materia.cuentasEnEspera();
+        if (espera.length > 0) {
+            json.campo("espera");
+            json.inicioArreglo();
+            for (int numCuenta : espera) {
+                json.elemento(Claves.numCuenta(numCuenta));
+            }
+            json.finArreglo();
+        }
+        json.campo("grupo");
+        json.entero(materia.getGrupo());
+        json.campo("idMateria");
+        json.texto(materia.getIdMateria());
+        json.campo("nombre");
+        json.texto(materia.getNombre());
+        json.campo("profesor");
+        json.texto(materia.getProfesor());
+        if (materia.getVersionEspera() > 0) {
+            json.campo("versionEspera");
+            json.entero(materia.getVersionEspera());
+        }
+        json.finObjeto();
+    }
+
     @Override
     public String printDB() {
         StringBuilder sb = new StringBuilder();
@@ -108,9 +343,17 @@ public class DatabaseMaterias extends Database {
      * @param materia Objeto de una materia
      */
     public void agregarMateria(Materia materia) {
-        materia.setIdMateria(String.valueOf(++this.idMaterias));
-        this.materias.add(materia);
-        log.sendInfo("Materia " + materia.getNombre() + " (" + materia.getIdMateria() + ") agregada.");
+        materia.asignarClave(++this.idMaterias);
+        Lock cambios = this.bloqueoCambios();
+        cambios.lock();
+        try {
+            this.materias.add(materia);
+            this.indexar(materia);
+            this.registrar("+" + Database.jsonEnLinea(json -> escribirMateria(json, materia)));
+        } finally {
+            cambios.unlock();
+        }
+        log.sendInfo(() -> "Materia " + materia.getNombre() + " (" + materia.getIdMateria() + ") agregada.");
     }
 
     /**
@@ -120,33 +363,270 @@ public class DatabaseMaterias extends Database {
      * con sus atributos nulos
      */
     public Materia readMateria(String idMateria) {
-        for (Materia materia : this.materias) {
-            if (Objects.equals(materia.getIdMateria(), idMateria)) {
-                return materia;
-            }
-        }
-        return new Materia();
+        return this.readMateria(Claves.aEntero(idMateria));
     }
 
     /**
-     * Da de baja la materia de todos los alumnos que estaban inscritos, y luego se elimina
+     * Busca una materia a partir de su ID como entero
+     * @param idMateria ID de la materia
+     * @return La materia si se encuentra, en caso contrario, una materia
+     * con sus atributos nulos
+     */
+    public Materia readMateria(int idMateria) {
+        Materia materia = this.indiceIds.get(idMateria);
+        return materia != null ? materia : new Materia();
+    }
+
+    /**
+     * Da de baja la materia de todos los alumnos que estaban inscritos, y luego se elimina. La
+     * lista de espera se vacía antes de las bajas, para que nadie pase de ella a la materia que
+     * se elimina. Mientras tanto no hay altas ni bajas en ninguna de las dos bases de datos: se
+     * tienen sus bloqueos de escritura, en el mismo orden que en
+     * {@link com.fiunam.materias.ServicioInscripciones} (primero materias, luego alumnos).
      * @param dbAlumnos Base de datos de los alumnos.
      * @param idMateria ID de la materia
      */
     public void eliminarMateria(DatabaseAlumnos dbAlumnos, String idMateria) {
-        for (int i = 0; i < this.materias.size(); i++) {
-            if (Objects.equals(this.materias.get(i).getIdMateria(), idMateria)) {
-                Materia materia = this.materias.get(i);
+        Lock cambios = this.bloqueoCambios();
+        Lock cambiosAlumnos = dbAlumnos.bloqueoCambios();
+        cambios.lock();
+        cambiosAlumnos.lock();
+        try {
+            Materia materia = this.indiceIds.get(Claves.aEntero(idMateria));
+            if (materia == null) {
+                log.sendWarning("La materia con id \"%s\" no existe.", idMateria);
+                return;
+            }
+
+            for (int numCuenta : materia.cuentasEnEspera()) {
+                materia.quitarDeEspera(numCuenta);
+                this.registrarSalidaEspera(materia, numCuenta);
+            }
+            for (int numCuenta : materia.cuentasAlumnos()) {
+                AdminMateria.bajaMateria(this, dbAlumnos, materia.claveMateria(), numCuenta);
+            }
+            this.quitar(materia);
+            this.registrar("-" + materia.claveMateria());
+            log.sendInfo(() -> "Materia " + materia.getNombre() + " (" + materia.getIdMateria() + ") eliminada.");
+        } finally {
+            cambiosAlumnos.unlock();
+            cambios.unlock();
+        }
+    }
+
+    private void quitar(Materia materia) {
+        this.materias.remove(materia);
+        this.indiceIds.remove(materia.claveMateria());
+        this.areaDe(materia.getArea()).remove(materia);
+    }
+
+    /**
+     * Bloqueo de una materia para cambiar su lista de alumnos, junto con
+     * {@link #bloqueoRegistros()}. Varias materias pueden compartir el mismo bloqueo.
+     *
+     * @param idMateria ID de la materia
+     * @return Bloqueo de la materia
+     */
+    public Lock bloqueoMateria(int idMateria) {
+        return this.bloqueosMaterias.de(idMateria);
+    }
+
+    /**
+     * Bloqueos de varias materias, sin repetir y en el orden en que se deben tomar para que
+     * dos operaciones con varias materias no se esperen mutuamente.
+     *
+     * @param idsMaterias IDs de las materias
+     * @return Bloqueos de las materias
+     */
+    public Lock[] bloqueosMaterias(int[] idsMaterias) {
+        return this.bloqueosMaterias.de(idsMaterias);
+    }
+
+    /**
+     * Registra en la bitácora una inscripción, la llama
+     * {@link com.fiunam.materias.ServicioInscripciones} después de modificar la materia.
+     *
+     * @param idMateria ID de la materia
+     * @param numCuenta Número de cuenta del alumno
+     */
+    public void registrarAlta(int idMateria, int numCuenta) {
+        this.registrar("I " + idMateria + " " + numCuenta);
+    }
+
+    /**
+     * Registra en la bitácora una baja, la llama
+     * {@link com.fiunam.materias.ServicioInscripciones} después de modificar la materia.
+     *
+     * @param idMateria ID de la materia
+     * @param numCuenta Número de cuenta del alumno
+     */
+    public void registrarBaja(int idMateria, int numCuenta) {
+        this.registrar("B " + idMateria + " " + numCuenta);
+    }
+
+    /**
+     * Registra en la bitácora que un alumno entró a la lista de espera de una materia, la llama
+     * {@link com.fiunam.materias.ServicioInscripciones} después de modificar la materia. El
+     * registro lleva la versión de la lista ({@link Materia#getVersionEspera()}).
+     *
+     * @param materia   Materia con el alumno ya en la lista
+     * @param numCuenta Número de cuenta del alumno
+     */
+    public void registrarEspera(Materia materia, int numCuenta) {
+        this.registrar("E " + materia.claveMateria() + " " + numCuenta + " " + materia.getVersionEspera());
+    }
+
+    /**
+     * Registra en la bitácora que un alumno salió de la lista de espera de una materia (porque
+     * se inscribió o la dejó), la llama {@link com.fiunam.materias.ServicioInscripciones}. El
+     * registro lleva la versión de la lista ({@link Materia#getVersionEspera()}).
+     *
+     * @param materia   Materia con el alumno ya fuera de la lista
+     * @param numCuenta Número de cuenta del alumno
+     */
+    public void registrarSalidaEspera(Materia materia, int numCuenta) {
+        this.registrar("S " + materia.claveMateria() + " " + numCuenta + " " + materia.getVersionEspera());
+    }
 
-                while (materia.getAlumnos().size() > 0) {
-                    AdminMateria.bajaMateria(this, dbAlumnos, materia.getIdMateria(), materia.getAlumnos().get(0));
+    /**
+     * Quita a un alumno de las listas de espera de todas las materias, se usa al eliminarlo
+     *
+     * @param numCuenta Número de cuenta del alumno
+     */
+    public void quitarDeEsperas(int numCuenta) {
+        Lock registros = this.bloqueoRegistros();
+        registros.lock();
+        try {
+            for (Materia materia : this.materias) {
+                if (!materia.hayEnEspera()) continue;
+                Lock bloqueo = this.bloqueoMateria(materia.claveMateria());
+                bloqueo.lock();
+                try {
+                    if (materia.quitarDeEspera(numCuenta)) {
+                        this.registrarSalidaEspera(materia, numCuenta);
+                    }
+                } finally {
+                    bloqueo.unlock();
                 }
+            }
+        } finally {
+            registros.unlock();
+        }
+    }
 
-                this.materias.remove(i);
-                log.sendInfo("Materia " + materia.getNombre() + " (" + materia.getIdMateria() + ") eliminada.");
-                return;
+    /**
+     * Registra en la bitácora varias inscripciones de un alumno en un solo registro, la llama
+     * {@link com.fiunam.materias.ServicioInscripciones} después de modificar las materias.
+     *
+     * @param numCuenta   Número de cuenta del alumno
+     * @param idsMaterias IDs de las materias
+     */
+    public void registrarAltas(int numCuenta, int[] idsMaterias) {
+        this.registrar(Database.registroLote('A', numCuenta, idsMaterias));
+    }
+
+    /**
+     * Registra en la bitácora varias bajas de un alumno en un solo registro, la llama
+     * {@link com.fiunam.materias.ServicioInscripciones} después de modificar las materias.
+     *
+     * @param numCuenta   Número de cuenta del alumno
+     * @param idsMaterias IDs de las materias
+     */
+    public void registrarBajas(int numCuenta, int[] idsMaterias) {
+        this.registrar(Database.registroLote('D', numCuenta, idsMaterias));
+    }
+
+    /**
+     * Cambia el cupo de una materia. Si es menor a los alumnos inscritos no se da de baja a
+     * nadie, solo se dejan de aceptar altas.
+     *
+     * @param idMateria ID de la materia
+     * @param cupo      Número máximo de alumnos
+     * @return false si la materia no existe
+     */
+    public boolean cambiarCupo(int idMateria, int cupo) {
+        Lock registros = this.bloqueoRegistros();
+        registros.lock();
+        try {
+            Materia materia = this.indiceIds.get(idMateria);
+            if (materia == null) return false;
+            Lock bloqueo = this.bloqueoMateria(idMateria);
+            bloqueo.lock();
+            try {
+                materia.setCupo(cupo);
+                this.registrar("C " + idMateria + " " + cupo);
+            } finally {
+                bloqueo.unlock();
+            }
+        } finally {
+            registros.unlock();
+        }
+        log.sendInfo("Cupo de la materia %s: %d", Claves.idMateria(idMateria), cupo);
+        return true;
+    }
+
+    /**
+     * Registros: "+{materia en json}", "-idMateria", "I idMateria numCuenta", "B idMateria numCuenta",
+     * "A numCuenta idMateria ..." y "D numCuenta idMateria ..." (varias altas o bajas de un alumno),
+     * "C idMateria cupo", y "E idMateria numCuenta version" y "S idMateria numCuenta version"
+     * (entrada y salida de la lista de espera). Igual que en {@link DatabaseAlumnos}, aplicar de
+     * nuevo un registro que ya estaba en el archivo no cambia el resultado: los demás dejan un
+     * estado absoluto, y los de la lista de espera (cuyo orden depende de en qué orden se
+     * aplican) se omiten si la versión de la lista en el archivo ya los incluye.
+     */
+    @Override
+    protected void aplicarRegistro(String registro) throws IOException {
+        switch (registro.charAt(0)) {
+            case '+' -> {
+                Materia materia = leerMateria(new LectorJson(registro.substring(1)));
+                Materia anterior = this.indiceIds.get(materia.claveMateria());
+                if (anterior != null) this.quitar(anterior);
+                this.materias.add(materia);
+                this.indexar(materia);
+                this.idMaterias = Math.max(this.idMaterias, materia.claveMateria());
+            }
+            case '-' -> {
+                Materia materia = this.indiceIds.get(Integer.parseInt(registro.substring(1)));
+                if (materia != null) this.quitar(materia);
+            }
+            case 'I', 'B', 'C' -> {
+                String[] partes = registro.split(" ");
+                Materia materia = this.indiceIds.get(Integer.parseInt(partes[1]));
+                if (materia == null) return;
+                int valor = Integer.parseInt(partes[2]);
+                switch (registro.charAt(0)) {
+                    case 'I' -> materia.inscribirAlumno(valor);
+                    case 'B' -> materia.darBajaAlumno(valor);
+                    default -> materia.setCupo(valor);
+                }
+            }
+            case 'E', 'S' -> {
+                String[] partes = registro.split(" ");
+                Materia materia = this.indiceIds.get(Integer.parseInt(partes[1]));
+                int version = Integer.parseInt(partes[3]);
+                if (materia == null || version <= materia.getVersionEspera()) return;
+                int numCuenta = Integer.parseInt(partes[2]);
+                if (registro.charAt(0) == 'E') {
+                    materia.ponerEnEspera(numCuenta);
+                } else {
+                    materia.quitarDeEspera(numCuenta);
+                }
+                materia.setVersionEspera(version);
+            }
+            case 'A', 'D' -> {
+                String[] partes = registro.split(" ");
+                int numCuenta = Integer.parseInt(partes[1]);
+                for (int i = 2; i < partes.length; i++) {
+                    Materia materia = this.indiceIds.get(Integer.parseInt(partes[i]));
+                    if (materia == null) continue;
+                    if (registro.charAt(0) == 'A') {
+                        materia.inscribirAlumno(numCuenta);
+                    } else {
+                        materia.darBajaAlumno(numCuenta);
+                    }
+                }
             }
+            default -> throw new IOException("Tipo de registro desconocido");
         }
-        log.sendWarning("La materia con id \"" + idMateria + "\" no existe.");
     }
 }
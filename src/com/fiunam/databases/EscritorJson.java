@@ -0,0 +1,124 @@
+package com.fiunam.databases;
+
+import com.fiunam.util.TextoJson;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Escritor de json por partes, contraparte de {@link LectorJson}: cada registro se escribe
+ * directamente al archivo en lugar de generar primero el documento completo como String.
+ * <p>
+ * En modo normal produce el mismo texto que el JSONSerializer de flexjson con
+ * prettyPrint(true) (sangría de 4 espacios, mismos escapes), así los archivos no cambian al
+ * guardarlos; en modo compacto no escribe espacios ni saltos de línea.
+ */
+final class EscritorJson implements Closeable {
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final Writer salida;
+    private final boolean compacto;
+    /** Por cada arreglo u objeto abierto, si ya tiene algún elemento */
+    private boolean[] conElementos = new boolean[8];
+    private int nivel;
+
+    EscritorJson(Writer salida, boolean compacto) {
+        this.salida = new BufferedWriter(salida, TAMANO_BUFFER);
+        this.compacto = compacto;
+    }
+
+    void inicioArreglo() throws IOException {
+        this.abrir('[');
+    }
+
+    void finArreglo() throws IOException {
+        this.cerrar(']');
+    }
+
+    /**
+     * Inicia un objeto como elemento de un arreglo
+     */
+    void inicioObjeto() throws IOException {
+        this.separarElemento();
+        this.abrir('{');
+    }
+
+    void finObjeto() throws IOException {
+        this.cerrar('}');
+    }
+
+    /**
+     * Escribe el nombre de un campo del objeto actual, seguido de los dos puntos
+     */
+    void campo(String nombre) throws IOException {
+        this.separarElemento();
+        TextoJson.escribir(this.salida, nombre);
+        this.salida.write(this.compacto ? ":" : ": ");
+    }
+
+    /**
+     * Escribe una cadena como valor de un campo
+     */
+    void texto(String valor) throws IOException {
+        TextoJson.escribir(this.salida, valor);
+    }
+
+    /**
+     * Escribe una cadena como elemento de un arreglo
+     */
+    void elemento(String valor) throws IOException {
+        this.separarElemento();
+        this.texto(valor);
+    }
+
+    void entero(int valor) throws IOException {
+        this.salida.write(Integer.toString(valor));
+    }
+
+    /**
+     * Pasa al destino todo lo que se ha escrito
+     */
+    void vaciar() throws IOException {
+        this.salida.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.salida.close();
+    }
+
+    private void abrir(char c) throws IOException {
+        this.salida.write(c);
+        if (!this.compacto) this.salida.write('\n');
+        if (++this.nivel == this.conElementos.length) {
+            this.conElementos = Arrays.copyOf(this.conElementos, this.nivel * 2);
+        }
+        this.conElementos[this.nivel] = false;
+    }
+
+    private void cerrar(char c) throws IOException {
+        this.nivel--;
+        if (!this.compacto) {
+            this.salida.write('\n');
+            this.sangria();
+        }
+        this.salida.write(c);
+    }
+
+    private void separarElemento() throws IOException {
+        if (this.conElementos[this.nivel]) {
+            this.salida.write(this.compacto ? "," : ",\n");
+        }
+        this.conElementos[this.nivel] = true;
+        if (!this.compacto) this.sangria();
+    }
+
+    private void sangria() throws IOException {
+        for (int i = 0; i < this.nivel; i++) {
+            this.salida.write("    ");
+        }
+    }
+}
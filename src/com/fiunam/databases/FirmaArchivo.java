@@ -0,0 +1,89 @@
+package com.fiunam.databases;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32C;
+
+/**
+ * Tamaño, fecha de modificación y (opcionalmente) hash del contenido de un archivo, para que
+ * {@link Database#reloadDB()} no vuelva a leer archivos que no cambiaron.
+ * <p>
+ * Si el tamaño y la fecha son iguales el archivo se considera igual. Si solo cambió la fecha
+ * (por ejemplo, se copió el mismo archivo encima) se compara el hash, que se calcula al leer
+ * el archivo completo; después de un guardado propio no se calcula, así que un cambio de fecha
+ * cuenta como cambio.
+ */
+final class FirmaArchivo {
+    /** Leer el archivo por partes de este tamaño para el hash */
+    private static final long PARTE = 64L * 1024 * 1024;
+
+    private final long tamano;
+    private final long modificado;
+    /** Hash CRC32C, -1 si no se calculó */
+    private final long hash;
+
+    private FirmaArchivo(long tamano, long modificado, long hash) {
+        this.tamano = tamano;
+        this.modificado = modificado;
+        this.hash = hash;
+    }
+
+    /**
+     * @param archivo      Archivo, puede no existir
+     * @param calcularHash Leer el contenido para calcular el hash
+     * @return Firma del archivo en este momento
+     */
+    static FirmaArchivo de(Path archivo, boolean calcularHash) throws IOException {
+        BasicFileAttributes atributos;
+        try {
+            atributos = Files.readAttributes(archivo, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return new FirmaArchivo(-1, -1, -1);
+        }
+        long hash = calcularHash ? FirmaArchivo.hash(archivo, atributos.size()) : -1;
+        return new FirmaArchivo(atributos.size(), atributos.lastModifiedTime().toMillis(), hash);
+    }
+
+    /**
+     * Firma después de escribir el archivo: si el tamaño y la fecha no cambiaron se conserva
+     * esta firma (con su hash), si no se usa la nueva sin hash.
+     */
+    FirmaArchivo actualizar(Path archivo) throws IOException {
+        FirmaArchivo actual = FirmaArchivo.de(archivo, false);
+        return this.mismosAtributos(actual) ? this : actual;
+    }
+
+    /**
+     * @return La misma firma (o una con la fecha nueva, si solo cambió la fecha y el hash es
+     * igual), null si el contenido del archivo cambió
+     */
+    FirmaArchivo comprobar(Path archivo) throws IOException {
+        FirmaArchivo actual = FirmaArchivo.de(archivo, false);
+        if (this.mismosAtributos(actual)) return this;
+        if (this.hash < 0 || actual.tamano != this.tamano || actual.tamano < 0) return null;
+
+        long hash = FirmaArchivo.hash(archivo, actual.tamano);
+        return hash == this.hash ? new FirmaArchivo(actual.tamano, actual.modificado, hash) : null;
+    }
+
+    private boolean mismosAtributos(FirmaArchivo otra) {
+        return this.tamano == otra.tamano && this.modificado == otra.modificado;
+    }
+
+    private static long hash(Path archivo, long tamano) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            for (long inicio = 0; inicio < tamano; inicio += PARTE) {
+                MappedByteBuffer parte = canal.map(FileChannel.MapMode.READ_ONLY, inicio, Math.min(PARTE, tamano - inicio));
+                crc.update(parte);
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,105 @@
+package com.fiunam.databases;
+
+import com.fiunam.users.Usuario;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * Índice secundario de credenciales para el inicio de sesión, lo usan tanto
+ * la base de datos de alumnos como la de administradores.
+ * <p>
+ * Guarda dos mapas: nombre de usuario -> usuario, y nombre completo -> usuarios
+ * con ese nombre (en orden de registro), de forma que iniciar sesión sea una
+ * búsqueda en el mapa y una sola comparación de la contraseña.
+ * <p>
+ * Si varios usuarios comparten el mismo nombre completo, primero se revisa la
+ * coincidencia exacta por nombre de usuario, y después los usuarios con ese nombre
+ * en el orden en el que se registraron; se retorna el primero cuya contraseña coincida.
+ *
+ * @param <T> Tipo de usuario (Alumno o Administrador)
+ */
+public class IndiceUsuarios<T extends Usuario> {
+    private final HashMap<String, T> porUsername = new HashMap<>();
+    private final HashMap<String, ArrayList<T>> porNombre = new HashMap<>();
+
+    /**
+     * Agrega un usuario al índice
+     *
+     * @param usuario Usuario que se va a indexar
+     */
+    public void agregar(T usuario) {
+        if (usuario.getUsername() != null) {
+            this.porUsername.putIfAbsent(usuario.getUsername(), usuario);
+        }
+        if (usuario.getNombre() != null) {
+            this.porNombre.computeIfAbsent(usuario.getNombre(), nombre -> new ArrayList<>(1)).add(usuario);
+        }
+    }
+
+    /**
+     * Elimina un usuario del índice
+     *
+     * @param usuario Usuario que se va a eliminar
+     */
+    public void eliminar(T usuario) {
+        this.porUsername.remove(usuario.getUsername(), usuario);
+
+        ArrayList<T> homonimos = this.porNombre.get(usuario.getNombre());
+        if (homonimos != null) {
+            homonimos.remove(usuario);
+            if (homonimos.isEmpty()) this.porNombre.remove(usuario.getNombre());
+        }
+    }
+
+    /**
+     * Vacía el índice
+     */
+    public void limpiar() {
+        this.porUsername.clear();
+        this.porNombre.clear();
+    }
+
+    /**
+     * Comprueba si ya existe un usuario con ese nombre de usuario
+     *
+     * @param username Nombre de usuario
+     * @return true si existe
+     */
+    public boolean existeUsername(String username) {
+        return this.porUsername.containsKey(username);
+    }
+
+    /**
+     * @param username Nombre de usuario
+     * @return El usuario con ese nombre de usuario, o null
+     */
+    public T conUsername(String username) {
+        return this.porUsername.get(username);
+    }
+
+    /**
+     * Busca un usuario por su nombre de usuario o nombre completo, y comprueba la contraseña.
+     *
+     * @param nombre   Nombre de usuario o nombre completo
+     * @param password Contraseña
+     * @return El usuario si las credenciales son correctas; null en caso contrario
+     */
+    public T buscar(String nombre, String password) {
+        T usuario = this.porUsername.get(nombre);
+        if (usuario != null && Objects.equals(usuario.getPassword(), password)) {
+            return usuario;
+        }
+
+        ArrayList<T> homonimos = this.porNombre.get(nombre);
+        if (homonimos != null) {
+            for (T homonimo : homonimos) {
+                if (Objects.equals(homonimo.getPassword(), password)) {
+                    return homonimo;
+                }
+            }
+        }
+        return null;
+    }
+}
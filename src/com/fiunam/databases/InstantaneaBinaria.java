@@ -0,0 +1,292 @@
+package com.fiunam.databases;
+
+import com.fiunam.materias.Materia;
+import com.fiunam.users.Alumno;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Formato binario para los archivos de alumnos y materias, alternativa al json que se lee
+ * con el archivo mapeado en memoria ({@link FileChannel#map}) en lugar de analizar texto.
+ * <p>
+ * Todos los números son enteros de 4 bytes (big-endian):
+ * <pre>
+ * encabezado  MAGICO, tipo (1 alumnos, 2 materias), registros, cadenas, total de IDs en listas
+ * registros   5 enteros por alumno y 8 por materia:
+ *             alumno:  cuenta, semestre, nombre, username, password
+ *             materia: ID, grupo, nombre, profesor, área, cupo, alumnos en espera,
+ *                      versión de la lista de espera
+ * listas      registros + 1 posiciones de inicio, después los IDs (materias de cada alumno
+ *             o cuentas de los alumnos de cada materia seguidas de las de su lista de
+ *             espera) de todos los registros seguidos
+ * cadenas     cadenas + 1 posiciones de inicio, después los bytes UTF-8 de todas las cadenas
+ * </pre>
+ * Los campos de texto guardan el índice de la cadena en la tabla (-1 para null); cada cadena
+ * se guarda una sola vez, así las áreas y profesores repetidos se leen como el mismo String.
+ */
+final class InstantaneaBinaria {
+    /** "FIB1" */
+    private static final int MAGICO = 0x46494231;
+    private static final int ALUMNOS = 1;
+    private static final int MATERIAS = 2;
+    private static final int CAMPOS = 5;
+    private static final int CAMPOS_MATERIAS = 8;
+    private static final int ENCABEZADO = 5;
+
+    private InstantaneaBinaria() {
+    }
+
+    static void escribirAlumnos(FileChannel canal, List<Alumno> alumnos) throws IOException {
+        TablaCadenas cadenas = new TablaCadenas();
+        int[] registros = new int[alumnos.size() * CAMPOS];
+        int[][] listas = new int[alumnos.size()][];
+        for (int i = 0; i < alumnos.size(); i++) {
+            Alumno alumno = alumnos.get(i);
+            int base = i * CAMPOS;
+            registros[base] = alumno.claveCuenta();
+            registros[base + 1] = alumno.getSemestre();
+            registros[base + 2] = cadenas.indice(alumno.getNombre());
+            registros[base + 3] = cadenas.indice(alumno.getUsername());
+            registros[base + 4] = cadenas.indice(alumno.getPassword());
+            listas[i] = alumno.idsMaterias();
+        }
+        escribir(canal, ALUMNOS, registros, listas, cadenas);
+    }
+
+    static void escribirMaterias(FileChannel canal, List<Materia> materias) throws IOException {
+        TablaCadenas cadenas = new TablaCadenas();
+        int[] registros = new int[materias.size() * CAMPOS_MATERIAS];
+        int[][] listas = new int[materias.size()][];
+        for (int i = 0; i < materias.size(); i++) {
+            Materia materia = materias.get(i);
+            int base = i * CAMPOS_MATERIAS;
+            registros[base] = materia.claveMateria();
+            registros[base + 1] = materia.getGrupo();
+            registros[base + 2] = cadenas.indice(materia.getNombre());
+            registros[base + 3] = cadenas.indice(materia.getProfesor());
+            registros[base + 4] = cadenas.indice(materia.getArea());
+            registros[base + 5] = materia.getCupo();
+            int[] alumnos = materia.cuentasAlumnos();
+            int[] espera = materia.cuentasEnEspera();
+            registros[base + 6] = espera.length;
+            registros[base + 7] = materia.getVersionEspera();
+            listas[i] = Arrays.copyOf(alumnos, alumnos.length + espera.length);
+            System.arraycopy(espera, 0, listas[i], alumnos.length, espera.length);
+        }
+        escribir(canal, MATERIAS, registros, listas, cadenas);
+    }
+
+    static ArrayList<Alumno> leerAlumnos(Path archivo) throws IOException {
+        Lectura lectura = new Lectura(archivo, ALUMNOS, true);
+        ArrayList<Alumno> alumnos = new ArrayList<>(lectura.registros());
+        for (int i = 0; i < lectura.registros(); i++) {
+            alumnos.add(lectura.alumno(i));
+        }
+        return alumnos;
+    }
+
+    static ArrayList<Materia> leerMaterias(Path archivo) throws IOException {
+        Lectura lectura = new Lectura(archivo, MATERIAS, true);
+        ArrayList<Materia> materias = new ArrayList<>(lectura.registros());
+        for (int i = 0; i < lectura.registros(); i++) {
+            materias.add(lectura.materia(i));
+        }
+        return materias;
+    }
+
+    /**
+     * Abre un archivo de alumnos para leer los registros uno por uno, sin crearlos todos
+     * (ver {@link AlumnosEnDisco}). Las cadenas no se conservan después de leerlas.
+     */
+    static Lectura abrirAlumnos(Path archivo) throws IOException {
+        return new Lectura(archivo, ALUMNOS, false);
+    }
+
+    private static void escribir(FileChannel canal, int tipo, int[] registros, int[][] listas,
+                                 TablaCadenas cadenas) throws IOException {
+        int totalIds = 0;
+        for (int[] lista : listas) totalIds += lista.length;
+
+        // Sin cerrar: el canal lo cierra Database.guardarBinario después de sincronizarlo
+        DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal), 64 * 1024));
+        salida.writeInt(MAGICO);
+        salida.writeInt(tipo);
+        salida.writeInt(listas.length);
+        salida.writeInt(cadenas.bytes.size());
+        salida.writeInt(totalIds);
+
+        for (int valor : registros) salida.writeInt(valor);
+
+        int inicio = 0;
+        salida.writeInt(inicio);
+        for (int[] lista : listas) {
+            inicio += lista.length;
+            salida.writeInt(inicio);
+        }
+        for (int[] lista : listas) {
+            for (int id : lista) salida.writeInt(id);
+        }
+
+        inicio = 0;
+        salida.writeInt(inicio);
+        for (byte[] cadena : cadenas.bytes) {
+            inicio += cadena.length;
+            salida.writeInt(inicio);
+        }
+        for (byte[] cadena : cadenas.bytes) salida.write(cadena);
+        salida.flush();
+    }
+
+    /**
+     * Asigna un índice a cada cadena distinta, en orden de aparición
+     */
+    private static final class TablaCadenas {
+        private final HashMap<String, Integer> indices = new HashMap<>();
+        private final ArrayList<byte[]> bytes = new ArrayList<>();
+
+        int indice(String cadena) {
+            if (cadena == null) return -1;
+            Integer indice = this.indices.get(cadena);
+            if (indice == null) {
+                indice = this.bytes.size();
+                this.indices.put(cadena, indice);
+                this.bytes.add(cadena.getBytes(StandardCharsets.UTF_8));
+            }
+            return indice;
+        }
+    }
+
+    /**
+     * Vistas sobre las secciones del archivo mapeado. Todas las lecturas son por posición
+     * absoluta, así que varios hilos pueden leer a la vez.
+     */
+    static final class Lectura {
+        private final int registros;
+        /** Enteros de cada registro, depende de si son alumnos o materias */
+        private final int camposRegistro;
+        private final IntBuffer campos;
+        private final IntBuffer inicios;
+        private final IntBuffer ids;
+        private final IntBuffer iniciosCadenas;
+        private final MappedByteBuffer datos;
+        private final int posicionCadenas;
+        /** Cadenas ya decodificadas, null si no se conservan */
+        private final String[] cadenas;
+
+        Lectura(Path archivo, int tipo, boolean conservarCadenas) throws IOException {
+            try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+                // El mapeo sigue siendo válido después de cerrar el canal
+                this.datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            }
+            IntBuffer enteros = this.datos.asIntBuffer();
+            if (enteros.limit() < ENCABEZADO || enteros.get(0) != MAGICO) {
+                throw new IOException("No es un archivo binario de la base de datos: " + archivo);
+            }
+            if (enteros.get(1) != tipo) {
+                throw new IOException("El archivo " + archivo + " es de otro tipo de registros");
+            }
+            this.camposRegistro = tipo == MATERIAS ? CAMPOS_MATERIAS : CAMPOS;
+            this.registros = enteros.get(2);
+            int numCadenas = enteros.get(3);
+            int totalIds = enteros.get(4);
+
+            int posicion = ENCABEZADO;
+            this.campos = seccion(enteros, posicion, this.registros * this.camposRegistro);
+            posicion += this.registros * this.camposRegistro;
+            this.inicios = seccion(enteros, posicion, this.registros + 1);
+            posicion += this.registros + 1;
+            this.ids = seccion(enteros, posicion, totalIds);
+            posicion += totalIds;
+            this.iniciosCadenas = seccion(enteros, posicion, numCadenas + 1);
+            posicion += numCadenas + 1;
+            this.posicionCadenas = posicion * Integer.BYTES;
+            if (this.posicionCadenas + this.iniciosCadenas.get(numCadenas) > this.datos.limit()) {
+                throw new IOException("Archivo binario incompleto: " + archivo);
+            }
+            this.cadenas = conservarCadenas ? new String[numCadenas] : null;
+        }
+
+        private static IntBuffer seccion(IntBuffer enteros, int posicion, int largo) throws IOException {
+            if (posicion + largo > enteros.limit()) throw new IOException("Archivo binario incompleto");
+            return enteros.slice(posicion, largo);
+        }
+
+        int registros() {
+            return this.registros;
+        }
+
+        /**
+         * @return Campo numérico de un registro (0: cuenta o ID, 1: semestre o grupo, 5: cupo,
+         * 6: alumnos en espera, 7: versión de la lista de espera)
+         */
+        int entero(int registro, int campo) {
+            return this.campos.get(registro * this.camposRegistro + campo);
+        }
+
+        /**
+         * @return Campo de texto de un registro (2: nombre, 3: username o profesor, 4: password o área)
+         */
+        String texto(int registro, int campo) {
+            return this.cadena(this.campos.get(registro * this.camposRegistro + campo));
+        }
+
+        Alumno alumno(int registro) {
+            Alumno alumno = new Alumno();
+            alumno.asignarCuenta(this.entero(registro, 0));
+            alumno.setSemestre(this.entero(registro, 1));
+            alumno.setNombre(this.texto(registro, 2));
+            alumno.setUsername(this.texto(registro, 3));
+            alumno.setPassword(this.texto(registro, 4));
+            for (int j = this.inicios.get(registro), fin = this.inicios.get(registro + 1); j < fin; j++) {
+                alumno.inscribirMateria(this.ids.get(j));
+            }
+            return alumno;
+        }
+
+        Materia materia(int registro) {
+            Materia materia = new Materia();
+            materia.asignarClave(this.entero(registro, 0));
+            materia.setGrupo(this.entero(registro, 1));
+            materia.setNombre(this.texto(registro, 2));
+            materia.setProfesor(this.texto(registro, 3));
+            materia.setArea(this.texto(registro, 4));
+            materia.setCupo(this.entero(registro, 5));
+            int enEspera = this.entero(registro, 6);
+            int fin = this.inicios.get(registro + 1);
+            for (int j = this.inicios.get(registro); j < fin - enEspera; j++) {
+                materia.inscribirAlumno(this.ids.get(j));
+            }
+            for (int j = fin - enEspera; j < fin; j++) {
+                materia.ponerEnEspera(this.ids.get(j));
+            }
+            materia.setVersionEspera(this.entero(registro, 7));
+            return materia;
+        }
+
+        private String cadena(int indice) {
+            if (indice < 0) return null;
+            if (this.cadenas != null && this.cadenas[indice] != null) return this.cadenas[indice];
+
+            int inicio = this.iniciosCadenas.get(indice);
+            int largo = this.iniciosCadenas.get(indice + 1) - inicio;
+            byte[] bytes = new byte[largo];
+            this.datos.get(this.posicionCadenas + inicio, bytes);
+            String cadena = new String(bytes, StandardCharsets.UTF_8);
+            if (this.cadenas != null) this.cadenas[indice] = cadena;
+            return cadena;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.fiunam.databases;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Lector de json por tokens, lee el archivo por partes en lugar de construir el árbol
+ * completo de mapas y listas como el JSONDeserializer de flexjson. Las bases de datos lo
+ * usan para crear cada registro directamente mientras avanzan por el arreglo:
+ * <pre>
+ * json.inicioArreglo();
+ * while (json.hayElemento()) {
+ *     json.inicioObjeto();
+ *     String campo;
+ *     while ((campo = json.siguienteCampo()) != null) {
+ *         switch (campo) { case "nombre" -> ...json.texto(); default -> json.saltar(); }
+ *     }
+ * }
+ * </pre>
+ * Es tolerante con las comas: no comprueba que estén en el lugar exacto.
+ */
+final class LectorJson implements Closeable {
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final Reader entrada;
+    private final char[] buffer;
+    private final StringBuilder texto = new StringBuilder();
+    private int posicion;
+    private int limite;
+    private long leidos;
+
+    LectorJson(Reader entrada) {
+        this.entrada = entrada;
+        this.buffer = new char[TAMANO_BUFFER];
+    }
+
+    /**
+     * Lector para un solo registro en una cadena (bitácora, almacén de registros), usa la
+     * cadena como buffer en lugar de reservar uno de {@link #TAMANO_BUFFER}
+     */
+    LectorJson(String json) {
+        this.entrada = Reader.nullReader();
+        this.buffer = json.toCharArray();
+        this.limite = this.buffer.length;
+    }
+
+    /**
+     * @return true si ya no hay nada más que espacios en blanco
+     */
+    boolean fin() throws IOException {
+        return this.siguienteNoBlanco() < 0;
+    }
+
+    void inicioArreglo() throws IOException {
+        this.esperar('[');
+    }
+
+    void inicioObjeto() throws IOException {
+        this.esperar('{');
+    }
+
+    /**
+     * Avanza al siguiente elemento del arreglo actual
+     *
+     * @return false si se llegó al final del arreglo (se consume el ']')
+     */
+    boolean hayElemento() throws IOException {
+        int c = this.siguienteNoBlanco();
+        if (c == ']') {
+            this.posicion++;
+            return false;
+        }
+        if (c == ',') {
+            this.posicion++;
+            c = this.siguienteNoBlanco();
+        }
+        if (c < 0) throw this.error("fin de archivo dentro de un arreglo");
+        return true;
+    }
+
+    /**
+     * Lee el nombre del siguiente campo del objeto actual y los dos puntos
+     *
+     * @return El nombre del campo, o null si se llegó al final del objeto (se consume el '}')
+     */
+    String siguienteCampo() throws IOException {
+        int c = this.siguienteNoBlanco();
+        if (c == '}') {
+            this.posicion++;
+            return null;
+        }
+        if (c == ',') {
+            this.posicion++;
+        }
+        String campo = this.texto();
+        if (campo == null) throw this.error("se esperaba el nombre de un campo");
+        this.esperar(':');
+        return campo;
+    }
+
+    /**
+     * Lee una cadena
+     *
+     * @return La cadena, o null si el valor es null
+     */
+    String texto() throws IOException {
+        int c = this.siguienteNoBlanco();
+        if (c == 'n') {
+            this.literal("null");
+            return null;
+        }
+        if (c != '"') throw this.error("se esperaba una cadena");
+        this.posicion++;
+
+        // Caso común: la cadena completa está en el buffer y no tiene escapes
+        for (int i = this.posicion; i < this.limite; i++) {
+            char ch = this.buffer[i];
+            if (ch == '"') {
+                String valor = new String(this.buffer, this.posicion, i - this.posicion);
+                this.posicion = i + 1;
+                return valor;
+            }
+            if (ch == '\\') break;
+        }
+
+        this.texto.setLength(0);
+        while (true) {
+            int ch = this.leer();
+            if (ch < 0) throw this.error("fin de archivo dentro de una cadena");
+            if (ch == '"') return this.texto.toString();
+            if (ch == '\\') {
+                int escape = this.leer();
+                switch (escape) {
+                    case '"', '\\', '/' -> this.texto.append((char) escape);
+                    case 'b' -> this.texto.append('\b');
+                    case 'f' -> this.texto.append('\f');
+                    case 'n' -> this.texto.append('\n');
+                    case 'r' -> this.texto.append('\r');
+                    case 't' -> this.texto.append('\t');
+                    case 'u' -> {
+                        int codigo = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digito = Character.digit(this.leer(), 16);
+                            if (digito < 0) throw this.error("escape \\u inválido");
+                            codigo = codigo * 16 + digito;
+                        }
+                        this.texto.append((char) codigo);
+                    }
+                    default -> throw this.error("escape inválido");
+                }
+            } else {
+                this.texto.append((char) ch);
+            }
+        }
+    }
+
+    /**
+     * Lee un número entero (si tiene parte decimal se trunca)
+     *
+     * @return El número, o 0 si el valor es null
+     */
+    int entero() throws IOException {
+        int c = this.siguienteNoBlanco();
+        if (c == 'n') {
+            this.literal("null");
+            return 0;
+        }
+
+        this.texto.setLength(0);
+        while (c >= 0 && (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9'))) {
+            this.texto.append((char) c);
+            this.posicion++;
+            c = this.mirar();
+        }
+        if (this.texto.length() == 0) throw this.error("se esperaba un número");
+        try {
+            return Integer.parseInt(this.texto, 0, this.texto.length(), 10);
+        } catch (NumberFormatException e) {
+            return (int) Double.parseDouble(this.texto.toString());
+        }
+    }
+
+    /**
+     * Salta el valor actual, sea del tipo que sea (se usa para los campos desconocidos)
+     */
+    void saltar() throws IOException {
+        int c = this.siguienteNoBlanco();
+        switch (c) {
+            case '"' -> this.texto();
+            case '{' -> {
+                this.posicion++;
+                while (this.siguienteCampo() != null) this.saltar();
+            }
+            case '[' -> {
+                this.posicion++;
+                while (this.hayElemento()) this.saltar();
+            }
+            case 't' -> this.literal("true");
+            case 'f' -> this.literal("false");
+            case 'n' -> this.literal("null");
+            default -> this.entero();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.entrada.close();
+    }
+
+    private void esperar(char esperado) throws IOException {
+        if (this.siguienteNoBlanco() != esperado) throw this.error("se esperaba '" + esperado + "'");
+        this.posicion++;
+    }
+
+    private void literal(String palabra) throws IOException {
+        for (int i = 0; i < palabra.length(); i++) {
+            if (this.leer() != palabra.charAt(i)) throw this.error("se esperaba " + palabra);
+        }
+    }
+
+    /**
+     * @return El siguiente carácter que no es espacio en blanco (sin consumirlo), o -1 al final
+     */
+    private int siguienteNoBlanco() throws IOException {
+        while (true) {
+            int c = this.mirar();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            this.posicion++;
+        }
+    }
+
+    private int mirar() throws IOException {
+        if (this.posicion == this.limite && !this.llenar()) return -1;
+        return this.buffer[this.posicion];
+    }
+
+    private int leer() throws IOException {
+        if (this.posicion == this.limite && !this.llenar()) return -1;
+        return this.buffer[this.posicion++];
+    }
+
+    private boolean llenar() throws IOException {
+        this.leidos += this.limite;
+        int n = this.entrada.read(this.buffer, 0, this.buffer.length);
+        this.posicion = 0;
+        this.limite = Math.max(n, 0);
+        return n > 0;
+    }
+
+    private IOException error(String mensaje) {
+        return new IOException("JSON inválido (carácter " + (this.leidos + this.posicion) + "): " + mensaje);
+    }
+}
@@ -0,0 +1,133 @@
+package com.fiunam.databases;
+
+import com.fiunam.logger.Cronometro;
+import com.fiunam.logger.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guarda las bases de datos en un hilo aparte, para que la interfaz no espere a que los
+ * archivos estén en el disco después de cada acción.
+ * <p>
+ * Las solicitudes se agrupan: la primera programa un lote que se escribe después de
+ * "fiunam.db.retrasoMaximo" milisegundos (20 por omisión) y las que llegan mientras tanto
+ * se unen a ese lote, así cada base de datos se escribe una sola vez aunque se haya pedido
+ * guardarla varias veces. Cada solicitud retorna un {@link CompletableFuture} que se completa
+ * cuando el lote está en el disco, o con la excepción si no se pudo escribir:
+ * <pre>
+ * Persistencia.guardar(dbAlumnos, dbMaterias).thenRun(() -> ...);
+ * </pre>
+ * Al terminar el programa se debe llamar a {@link #vaciar()}; si no, se llama al cerrar el
+ * programa ({@link Logger#alTerminar(Runnable)}).
+ */
+public final class Persistencia {
+    private static final Logger log = new Logger(Persistencia.class);
+    private static final long retrasoMaximo = Long.getLong("fiunam.db.retrasoMaximo", 20);
+
+    private static final ScheduledExecutorService hilo = Persistencia.crearHilo();
+    private static final Object monitor = new Object();
+    /** Bases de datos del lote que aún no empieza */
+    private static LinkedHashSet<Database> lote = new LinkedHashSet<>();
+    private static CompletableFuture<Void> futuroLote;
+    /** Futuro del último lote programado, los lotes se escriben en orden */
+    private static CompletableFuture<Void> ultimoLote;
+
+    private Persistencia() {
+    }
+
+    private static ScheduledExecutorService crearHilo() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "db-persistencia");
+            t.setDaemon(true);
+            return t;
+        });
+        // Si el programa termina sin pasar por vaciar(), se escribe lo pendiente antes de salir,
+        // antes de que se cierre el archivo .log para poder registrar errores
+        Logger.alTerminar(Persistencia::vaciar);
+        return executor;
+    }
+
+    /**
+     * Pide guardar las bases de datos sin esperar a que se escriban. Los cambios hechos hasta
+     * este momento son los que se guardan, un reloadDB posterior ya no los descarta.
+     *
+     * @param databases Bases de datos a guardar
+     * @return Se completa cuando los cambios están en el disco
+     */
+    public static CompletableFuture<Void> guardar(Database... databases) {
+        for (Database db : databases) {
+            db.solicitarGuardado();
+        }
+
+        synchronized (Persistencia.monitor) {
+            if (Persistencia.futuroLote == null) {
+                Persistencia.futuroLote = new CompletableFuture<>();
+                Persistencia.ultimoLote = Persistencia.futuroLote;
+                Persistencia.hilo.schedule(Persistencia::escribirLote, Persistencia.retrasoMaximo, TimeUnit.MILLISECONDS);
+            }
+            Persistencia.lote.addAll(Arrays.asList(databases));
+            return Persistencia.futuroLote;
+        }
+    }
+
+    /**
+     * Escribe en ese momento el lote pendiente (sin esperar el retraso) y espera a que
+     * terminen todos los lotes solicitados hasta ahora.
+     */
+    public static void vaciar() {
+        CompletableFuture<Void> ultimo;
+        synchronized (Persistencia.monitor) {
+            ultimo = Persistencia.ultimoLote;
+            if (Persistencia.futuroLote != null) {
+                Persistencia.hilo.execute(Persistencia::escribirLote);
+            }
+        }
+        if (ultimo != null) {
+            // Los errores ya se registraron al escribir el lote
+            ultimo.exceptionally(e -> null).join();
+        }
+    }
+
+    private static void escribirLote() {
+        ArrayList<Database> databases;
+        CompletableFuture<Void> futuro;
+        synchronized (Persistencia.monitor) {
+            if (Persistencia.futuroLote == null) return;  // ya lo escribió vaciar()
+            databases = new ArrayList<>(Persistencia.lote);
+            futuro = Persistencia.futuroLote;
+            Persistencia.lote = new LinkedHashSet<>();
+            Persistencia.futuroLote = null;
+        }
+
+        IOException error = null;
+        Cronometro medicion = log.medir("guardarLote", databases.size() + " bases de datos");
+        try {
+            for (Database db : databases) {
+                try {
+                    db.escribirSolicitado(false);
+                } catch (IOException e) {
+                    log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+                    if (error == null) error = e; else error.addSuppressed(e);
+                } catch (RuntimeException e) {
+                    log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+                    if (error == null) error = new IOException(e); else error.addSuppressed(e);
+                }
+            }
+        } finally {
+            medicion.close();
+        }
+
+        if (error == null) {
+            futuro.complete(null);
+        } else {
+            futuro.completeExceptionally(error);
+        }
+    }
+}
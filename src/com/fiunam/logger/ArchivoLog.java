@@ -0,0 +1,119 @@
+package com.fiunam.logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Archivo .log abierto durante toda la ejecución. Las líneas se acumulan en un buffer
+ * y se escriben al canal cuando se llena o cuando se llama a {@link #vaciar()}, en lugar
+ * de abrir y cerrar el archivo con cada mensaje.
+ * <p>
+ * Cuando el archivo supera {@link ConfiguracionLog#tamanoMaximo} bytes, o cambia el día si
+ * {@link ConfiguracionLog#diario} está activo, se renombra como un segmento
+ * (loggerProyecto-2024-05-20-1.log) y se abre uno nuevo con el nombre original. La compresión
+ * y el borrado de segmentos viejos los hace {@link CompresorLog} en otro hilo.
+ * <p>
+ * No es seguro para varios hilos, quien lo use debe sincronizar el acceso.
+ */
+class ArchivoLog {
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final Path ruta;
+    private final ConfiguracionLog config;
+    private final CompresorLog compresor;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANO_BUFFER);
+    private FileChannel canal;
+    private long tamano;
+    private LocalDate fechaSegmento;
+    private long siguienteCorte;
+
+    ArchivoLog(ConfiguracionLog config) throws IOException {
+        this.ruta = config.archivo;
+        this.config = config;
+        this.compresor = new CompresorLog(config);
+        this.abrir();
+    }
+
+    private void abrir() throws IOException {
+        this.canal = FileChannel.open(this.ruta, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.tamano = this.canal.size();
+
+        // Un archivo que ya tiene datos pertenece al día en que se modificó por última vez
+        ZoneId zona = ZoneId.systemDefault();
+        this.fechaSegmento = this.tamano > 0
+                ? LocalDate.ofInstant(Files.getLastModifiedTime(this.ruta).toInstant(), zona)
+                : LocalDate.now(zona);
+        this.siguienteCorte = this.fechaSegmento.plusDays(1).atStartOfDay(zona).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Agrega una línea al buffer (debe incluir el salto de línea)
+     */
+    void escribir(String linea) throws IOException {
+        byte[] bytes = linea.getBytes(StandardCharsets.UTF_8);
+        if (this.debeRotar(bytes.length)) {
+            this.rotar();
+        }
+        this.tamano += bytes.length;
+
+        if (bytes.length > this.buffer.remaining()) {
+            this.vaciar();
+        }
+        if (bytes.length > this.buffer.capacity()) {
+            this.canal.write(ByteBuffer.wrap(bytes));
+            return;
+        }
+        this.buffer.put(bytes);
+    }
+
+    private boolean debeRotar(int bytes) {
+        if (this.tamano == 0) return false;
+        if (this.config.tamanoMaximo > 0 && this.tamano + bytes > this.config.tamanoMaximo) return true;
+        return this.config.diario && System.currentTimeMillis() >= this.siguienteCorte;
+    }
+
+    /**
+     * Cierra el archivo actual, lo renombra como segmento y abre uno nuevo
+     */
+    private void rotar() throws IOException {
+        this.cerrarCanal();
+
+        Path segmento = this.compresor.nombreSegmento(this.fechaSegmento);
+        Files.move(this.ruta, segmento);
+        this.compresor.archivar(segmento);
+
+        this.abrir();
+    }
+
+    /**
+     * Escribe en el archivo lo que haya en el buffer
+     */
+    void vaciar() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.canal.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    private void cerrarCanal() throws IOException {
+        this.vaciar();
+        this.canal.close();
+    }
+
+    /**
+     * Cierra el archivo y espera a que terminen las compresiones pendientes
+     */
+    void cerrar() throws IOException {
+        this.cerrarCanal();
+        this.compresor.terminar();
+    }
+}
@@ -0,0 +1,85 @@
+package com.fiunam.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cola circular acotada y sin bloqueos para varios productores y un solo consumidor.
+ * Cada casilla tiene un número de secuencia que indica si está libre para el productor
+ * de esa vuelta o lista para el consumidor, los productores solo compiten con un CAS
+ * sobre la posición de escritura.
+ */
+class BufferCircular {
+    private final int mascara;
+    private final String[] elementos;
+    private final AtomicLongArray secuencias;
+    private final AtomicLong escritura = new AtomicLong();
+    // Solo la modifica el hilo consumidor, es volatile para poder calcular el tamaño
+    private volatile long lectura;
+
+    /**
+     * @param capacidad Número de elementos, se redondea a la siguiente potencia de 2
+     */
+    BufferCircular(int capacidad) {
+        int tamano = Integer.highestOneBit(Math.max(capacidad, 2) * 2 - 1);
+        this.mascara = tamano - 1;
+        this.elementos = new String[tamano];
+        this.secuencias = new AtomicLongArray(tamano);
+        for (int i = 0; i < tamano; i++) {
+            this.secuencias.set(i, i);
+        }
+    }
+
+    int capacidad() {
+        return this.mascara + 1;
+    }
+
+    /**
+     * @return Número aproximado de elementos en la cola
+     */
+    int tamano() {
+        return (int) (this.escritura.get() - this.lectura);
+    }
+
+    /**
+     * Agrega un elemento (puede llamarse desde cualquier hilo)
+     *
+     * @return false si la cola está llena
+     */
+    boolean ofrecer(String elemento) {
+        long posicion = this.escritura.get();
+        while (true) {
+            int casilla = (int) posicion & this.mascara;
+            long diferencia = this.secuencias.get(casilla) - posicion;
+            if (diferencia == 0) {
+                if (this.escritura.compareAndSet(posicion, posicion + 1)) {
+                    this.elementos[casilla] = elemento;
+                    this.secuencias.set(casilla, posicion + 1);
+                    return true;
+                }
+                posicion = this.escritura.get();
+            } else if (diferencia < 0) {
+                return false;
+            } else {
+                posicion = this.escritura.get();
+            }
+        }
+    }
+
+    /**
+     * Saca el siguiente elemento (solo desde el hilo consumidor)
+     *
+     * @return El elemento, o null si la cola está vacía
+     */
+    String tomar() {
+        long posicion = this.lectura;
+        int casilla = (int) posicion & this.mascara;
+        if (this.secuencias.get(casilla) != posicion + 1) return null;
+
+        String elemento = this.elementos[casilla];
+        this.elementos[casilla] = null;
+        this.secuencias.set(casilla, posicion + this.mascara + 1);
+        this.lectura = posicion + 1;
+        return elemento;
+    }
+}
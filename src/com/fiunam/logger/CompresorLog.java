@@ -0,0 +1,151 @@
+package com.fiunam.logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Comprime los segmentos rotados por {@link ArchivoLog} y borra los más viejos cuando hay
+ * más de {@link ConfiguracionLog#retencion}. Todo se hace en un hilo aparte para que la
+ * rotación no detenga a quien escribe en el log.
+ */
+class CompresorLog {
+    private static final String EXTENSION = ".log";
+    private static final String EXTENSION_GZ = ".log.gz";
+
+    private final ConfiguracionLog config;
+    private final Path directorio;
+    private final String prefijo;
+    private final ExecutorService hilo = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "logger-compresor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    CompresorLog(ConfiguracionLog config) {
+        this.config = config;
+        Path absoluta = config.archivo.toAbsolutePath();
+        this.directorio = absoluta.getParent();
+
+        String nombre = absoluta.getFileName().toString();
+        int punto = nombre.lastIndexOf('.');
+        this.prefijo = (punto > 0 ? nombre.substring(0, punto) : nombre) + "-";
+    }
+
+    /**
+     * @return Ruta para un nuevo segmento de la fecha dada, como loggerProyecto-2024-05-20-3.log,
+     * con un número mayor que el de cualquier segmento de ese día
+     */
+    Path nombreSegmento(LocalDate fecha) throws IOException {
+        String base = this.prefijo + fecha + "-";
+        int ultimo = 0;
+        for (Path segmento : this.segmentos()) {
+            String nombre = segmento.getFileName().toString();
+            if (nombre.startsWith(base)) {
+                ultimo = Math.max(ultimo, numero(nombre));
+            }
+        }
+        return this.directorio.resolve(base + (ultimo + 1) + EXTENSION);
+    }
+
+    /**
+     * Programa la compresión del segmento y la limpieza de los segmentos viejos
+     */
+    void archivar(Path segmento) {
+        this.hilo.execute(() -> {
+            try {
+                if (this.config.comprimir) {
+                    this.comprimir(segmento);
+                }
+                this.aplicarRetencion();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void comprimir(Path segmento) throws IOException {
+        Path destino = segmento.resolveSibling(segmento.getFileName() + ".gz");
+        Path temporal = segmento.resolveSibling(segmento.getFileName() + ".gz.tmp");
+        try (InputStream entrada = Files.newInputStream(segmento);
+             OutputStream salida = new GZIPOutputStream(Files.newOutputStream(temporal), 64 * 1024)) {
+            entrada.transferTo(salida);
+        }
+        Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(segmento);
+    }
+
+    private void aplicarRetencion() throws IOException {
+        if (this.config.retencion <= 0) return;
+
+        ArrayList<Path> segmentos = this.segmentos();
+        if (segmentos.size() <= this.config.retencion) return;
+
+        // Los segmentos más viejos primero: por fecha y luego por número
+        segmentos.sort(Comparator.comparing((Path archivo) -> fecha(archivo.getFileName().toString()))
+                .thenComparingInt(archivo -> numero(archivo.getFileName().toString())));
+        for (int i = 0; i < segmentos.size() - this.config.retencion; i++) {
+            Files.deleteIfExists(segmentos.get(i));
+        }
+    }
+
+    /**
+     * @return Los segmentos rotados, comprimidos o no
+     */
+    private ArrayList<Path> segmentos() throws IOException {
+        ArrayList<Path> segmentos = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(this.directorio, this.prefijo + "*")) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                if ((nombre.endsWith(EXTENSION) || nombre.endsWith(EXTENSION_GZ)) && numero(nombre) > 0) {
+                    segmentos.add(archivo);
+                }
+            }
+        }
+        return segmentos;
+    }
+
+    /**
+     * @return La fecha del nombre de un segmento (aaaa-mm-dd)
+     */
+    private String fecha(String nombre) {
+        return nombre.substring(this.prefijo.length(), Math.min(nombre.length(), this.prefijo.length() + 10));
+    }
+
+    /**
+     * @return El número del nombre de un segmento, o 0 si el nombre no tiene la forma esperada
+     */
+    private int numero(String nombre) {
+        int inicio = this.prefijo.length() + 11;
+        int fin = nombre.indexOf('.', inicio);
+        if (fin < 0) return 0;
+        try {
+            return Integer.parseInt(nombre.substring(inicio, fin));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Espera a que terminen las compresiones pendientes
+     */
+    void terminar() {
+        this.hilo.shutdown();
+        try {
+            this.hilo.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.fiunam.logger;
+
+import java.nio.file.Path;
+
+/**
+ * Opciones del Logger, se leen una sola vez de las propiedades del sistema
+ * (por ejemplo -Dfiunam.log.async=true), así no hay que modificar el código que
+ * envía los mensajes para cambiar la forma de escribirlos. Si un valor no es válido se usa
+ * el que aparece entre paréntesis.
+ * <ul>
+ *     <li>fiunam.log.archivo: ruta del archivo (./loggerProyecto.log)</li>
+ *     <li>fiunam.log.formato: TEXTO o JSON, JSON escribe un objeto por línea con la hora en
+ *     nanosegundos, el hilo, el tipo de evento y la duración de las mediciones (TEXTO)</li>
+ *     <li>fiunam.log.nivel: nivel mínimo que se escribe, INFO, WARNING o ERROR (INFO)</li>
+ *     <li>fiunam.log.async: escribe los mensajes desde un hilo aparte (false)</li>
+ *     <li>fiunam.log.capacidad: mensajes que caben en el buffer del modo asíncrono (8192)</li>
+ *     <li>fiunam.log.intervalo: milisegundos entre cada escritura al archivo en el modo asíncrono (200)</li>
+ *     <li>fiunam.log.desborde: BLOQUEAR o DESCARTAR, qué hacer cuando el buffer está lleno (BLOQUEAR)</li>
+ *     <li>fiunam.log.tamanoMaximo: bytes a partir de los cuales se rota el archivo, 0 para no rotar por tamaño (10485760)</li>
+ *     <li>fiunam.log.diario: rota el archivo al cambiar el día (false)</li>
+ *     <li>fiunam.log.retencion: archivos rotados que se conservan, 0 para conservarlos todos (10)</li>
+ *     <li>fiunam.log.comprimir: comprime con gzip los archivos rotados (true)</li>
+ * </ul>
+ */
+final class ConfiguracionLog {
+    /**
+     * Qué hacer con un mensaje cuando el buffer del modo asíncrono está lleno
+     */
+    enum Desborde {
+        /** Espera a que el hilo escritor libere espacio */
+        BLOQUEAR,
+        /** Descarta el mensaje y lo cuenta */
+        DESCARTAR
+    }
+
+    /**
+     * Forma en la que se escriben las líneas
+     */
+    enum Formato {
+        /** [  INFO   ] [class ...] : mensaje */
+        TEXTO,
+        /** Un objeto JSON por línea */
+        JSON
+    }
+
+    final Path archivo;
+    final Formato formato;
+    final Logger.Nivel nivelMinimo;
+    final boolean asincrono;
+    final int capacidad;
+    final long intervaloMs;
+    final Desborde desborde;
+    final long tamanoMaximo;
+    final boolean diario;
+    final int retencion;
+    final boolean comprimir;
+
+    private ConfiguracionLog() {
+        this.archivo = Path.of(System.getProperty("fiunam.log.archivo", Path.of(".", "loggerProyecto.log").toString()));
+        this.formato = opcion("fiunam.log.formato", Formato.class, Formato.TEXTO);
+        this.nivelMinimo = opcion("fiunam.log.nivel", Logger.Nivel.class, Logger.Nivel.INFO);
+        this.asincrono = Boolean.parseBoolean(System.getProperty("fiunam.log.async", "false"));
+        this.capacidad = entero("fiunam.log.capacidad", 8192);
+        this.intervaloMs = entero("fiunam.log.intervalo", 200);
+        this.desborde = opcion("fiunam.log.desborde", Desborde.class, Desborde.BLOQUEAR);
+        this.tamanoMaximo = largo("fiunam.log.tamanoMaximo", 10L * 1024 * 1024);
+        this.diario = Boolean.parseBoolean(System.getProperty("fiunam.log.diario", "false"));
+        this.retencion = entero("fiunam.log.retencion", 10);
+        this.comprimir = Boolean.parseBoolean(System.getProperty("fiunam.log.comprimir", "true"));
+    }
+
+    static ConfiguracionLog desdePropiedades() {
+        return new ConfiguracionLog();
+    }
+
+    /**
+     * Lee una opción de un enum. Un valor que no existe no debe impedir que se cargue el
+     * Logger, así que se avisa en la salida de error y se usa el valor por omisión.
+     */
+    private static <E extends Enum<E>> E opcion(String propiedad, Class<E> tipo, E porDefecto) {
+        String valor = System.getProperty(propiedad);
+        if (valor == null) return porDefecto;
+        try {
+            return Enum.valueOf(tipo, valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Logger: " + propiedad + "=" + valor + " no es válido, se usa " + porDefecto);
+            return porDefecto;
+        }
+    }
+
+    private static int entero(String propiedad, int porDefecto) {
+        try {
+            return Integer.parseInt(System.getProperty(propiedad, String.valueOf(porDefecto)));
+        } catch (NumberFormatException e) {
+            return porDefecto;
+        }
+    }
+
+    private static long largo(String propiedad, long porDefecto) {
+        try {
+            return Long.parseLong(System.getProperty(propiedad, String.valueOf(porDefecto)));
+        } catch (NumberFormatException e) {
+            return porDefecto;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.fiunam.logger;
+
+/**
+ * Mide cuánto tarda un bloque de código y al cerrarse envía un evento con la duración
+ * al Logger que lo creó. Se cierra en un finally:
+ * <pre>
+ * Cronometro medicion = log.medir("saveDB");
+ * try {
+ *     ...
+ * } finally {
+ *     medicion.close();
+ * }
+ * </pre>
+ * Si el bloque no lanza excepciones verificadas es más corto
+ * {@link Logger#medir(String, java.util.function.Supplier)}. Con try-with-resources el
+ * compilador advierte que la variable no se usa dentro del bloque.
+ * Si el nivel INFO está desactivado, {@link Logger#medir(String)} regresa un cronómetro
+ * inactivo que no lee el reloj ni escribe nada.
+ */
+public final class Cronometro implements AutoCloseable {
+    static final Cronometro INACTIVO = new Cronometro(null, null, null);
+
+    private final Logger log;
+    private final String evento;
+    private final String detalle;
+    private final long inicio;
+
+    Cronometro(Logger log, String evento, String detalle) {
+        this.log = log;
+        this.evento = evento;
+        this.detalle = detalle;
+        this.inicio = log == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Envía el evento con el tiempo transcurrido desde que se creó el cronómetro
+     */
+    @Override
+    public void close() {
+        if (this.log != null) {
+            this.log.enviarEvento(this.evento, this.detalle, System.nanoTime() - this.inicio);
+        }
+    }
+}
@@ -1,20 +1,72 @@
 package com.fiunam.logger;
 
+import com.fiunam.util.TextoJson;
+
 import java.io.File;
-import java.io.FileWriter;
-import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
 
 /**
  * Clase que maneja los mensajes de la aplicación que no se pueden imprimir debido a
  * que por la interfaz no se pueden mostrar.
+ * <p>
+ * Todos los Logger comparten una misma salida, que mantiene el archivo abierto; con
+ * la propiedad -Dfiunam.log.async=true los mensajes se escriben desde un hilo aparte
+ * (ver {@link ConfiguracionLog}).
+ * <p>
+ * Los mensajes por debajo del nivel mínimo se ignoran. Para que no cueste nada armar
+ * un mensaje que no se va a escribir, se pueden enviar con un Supplier o con un formato
+ * y sus argumentos (como en String.format), que solo se evalúan si el nivel está activo.
+ * <p>
+ * Con -Dfiunam.log.formato=JSON cada línea es un objeto con la hora en nanosegundos desde
+ * la época, el hilo, la clase, el tipo de evento y, para las mediciones hechas con
+ * {@link #medir(String)}, la duración en nanosegundos:
+ * <pre>
+ * {"ts":1716220800123456000,"nivel":"INFO","hilo":"main","clase":"com.fiunam.materias.AdminMateria","evento":"altaMateria","duracion":48213}
+ * </pre>
+ * <p>
+ * El archivo se cierra en un solo gancho de apagado. Lo que se deba hacer al terminar el
+ * programa y pueda enviar mensajes (guardar lo pendiente, detener el servidor) se registra
+ * con {@link #alTerminar(Runnable)} en lugar de agregar otro gancho, así se hace antes de
+ * cerrar el archivo y en un orden conocido (la máquina virtual ejecuta los ganchos al mismo
+ * tiempo y sin orden).
  */
 public class Logger {
-    private static final String logPath = Path.of(".", "loggerProyecto.log").toString();
+    /**
+     * Niveles de los mensajes, de menor a mayor importancia
+     */
+    public enum Nivel {
+        INFO("[  INFO   ] ["),
+        WARNING("[ WARNING ] ["),
+        ERROR("[  ERROR  ] [");
+
+        private final String etiqueta;
+
+        Nivel(String etiqueta) {
+            this.etiqueta = etiqueta;
+        }
+    }
+
+    private static final ConfiguracionLog config = ConfiguracionLog.desdePropiedades();
+    private static final String logPath = config.archivo.toString();
+    private static final SalidaLog salida = SalidaLog.crear(config);
+    /** Tareas de {@link #alTerminar(Runnable)}, la última registrada al principio */
+    private static final Deque<Runnable> tareasCierre = new ArrayDeque<>();
+    private static final boolean json = config.formato == ConfiguracionLog.Formato.JSON;
+    private static volatile Nivel nivelMinimo = config.nivelMinimo;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(Logger::terminar, "logger-cierre"));
+    }
+
     private final String className;
+    private final String nombreClase;
 
     public Logger(Class<?> className){
         this.className = className.toString();
-        Logger.createNewFile();
+        this.nombreClase = className.getName();
     }
 
     /**
@@ -32,17 +84,173 @@ public class Logger {
         }
     }
 
+    /**
+     * Espera a que todos los mensajes enviados hasta ahora estén escritos en el archivo.
+     */
+    public static void vaciar(){
+        salida.vaciar();
+    }
+
+    /**
+     * Registra una tarea para el cierre del programa. Las tareas se ejecutan en el gancho de
+     * apagado del Logger, una después de otra y en orden inverso al que se registraron (la
+     * última registrada primero, como al cerrar recursos anidados), y al final se cierra el
+     * archivo .log; así pueden seguir enviando mensajes.
+     *
+     * @param tarea Tarea que se ejecuta al terminar el programa
+     */
+    public static void alTerminar(Runnable tarea) {
+        synchronized (tareasCierre) {
+            tareasCierre.addFirst(tarea);
+        }
+    }
+
+    private static void terminar() {
+        while (true) {
+            Runnable tarea;
+            synchronized (tareasCierre) {
+                tarea = tareasCierre.pollFirst();
+            }
+            if (tarea == null) break;
+            try {
+                tarea.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        salida.cerrar();
+    }
+
+    public static Nivel getNivelMinimo() {
+        return nivelMinimo;
+    }
+
+    /**
+     * Cambia el nivel mínimo de los mensajes que se escriben.
+     * @param nivel Nivel mínimo
+     */
+    public static void setNivelMinimo(Nivel nivel) {
+        Logger.nivelMinimo = nivel;
+    }
+
+    /**
+     * @param nivel Nivel del mensaje
+     * @return true si los mensajes de ese nivel se escriben
+     */
+    public static boolean estaActivo(Nivel nivel) {
+        return nivel.compareTo(nivelMinimo) >= 0;
+    }
+
+    private void enviar(Nivel nivel, String message) {
+        if (json) {
+            salida.escribir(this.lineaJson(nivel, "mensaje", null, -1, message));
+        } else {
+            salida.escribir(nivel.etiqueta + this.className + "] : " + message + "\n");
+        }
+    }
+
+    /**
+     * Empieza a medir un bloque de código, al cerrar el cronómetro se envía un evento INFO
+     * con la duración.
+     * @param evento Tipo de evento, por ejemplo "altaMateria"
+     * @return Cronómetro que se debe cerrar al terminar el bloque
+     */
+    public Cronometro medir(String evento) {
+        return this.medir(evento, (String) null);
+    }
+
+    /**
+     * @param evento Tipo de evento
+     * @param detalle Dato adicional del evento, puede ser null
+     * @see #medir(String)
+     */
+    public Cronometro medir(String evento, String detalle) {
+        return estaActivo(Nivel.INFO) ? new Cronometro(this, evento, detalle) : Cronometro.INACTIVO;
+    }
+
+    /**
+     * Mide lo que tarda el bloque y envía el evento con la duración, aunque el bloque lance
+     * una excepción.
+     * @param evento Tipo de evento
+     * @param bloque Código que se mide
+     * @return Lo que regresa el bloque
+     * @see #medir(String)
+     */
+    public <T> T medir(String evento, Supplier<T> bloque) {
+        return this.medir(evento, null, bloque);
+    }
+
+    /**
+     * @param evento Tipo de evento
+     * @param detalle Dato adicional del evento, puede ser null
+     * @param bloque Código que se mide
+     * @see #medir(String, Supplier)
+     */
+    public <T> T medir(String evento, String detalle, Supplier<T> bloque) {
+        Cronometro medicion = this.medir(evento, detalle);
+        try {
+            return bloque.get();
+        } finally {
+            medicion.close();
+        }
+    }
+
+    void enviarEvento(String evento, String detalle, long duracion) {
+        if (json) {
+            salida.escribir(this.lineaJson(Nivel.INFO, evento, detalle, duracion, null));
+        } else {
+            salida.escribir(Nivel.INFO.etiqueta + this.className + "] : " + evento +
+                    (detalle == null ? "" : " (" + detalle + ")") + ": " + (duracion / 1000) + " µs\n");
+        }
+    }
+
+    private String lineaJson(Nivel nivel, String evento, String detalle, long duracion, String message) {
+        Instant ahora = Instant.now();
+        StringBuilder sb = new StringBuilder(160);
+        sb.append("{\"ts\":").append(ahora.getEpochSecond() * 1_000_000_000L + ahora.getNano());
+        sb.append(",\"nivel\":\"").append(nivel.name());
+        sb.append("\",\"hilo\":");
+        TextoJson.agregar(sb, Thread.currentThread().getName());
+        sb.append(",\"clase\":\"").append(this.nombreClase);
+        sb.append("\",\"evento\":");
+        TextoJson.agregar(sb, evento);
+        if (detalle != null) {
+            sb.append(",\"detalle\":");
+            TextoJson.agregar(sb, detalle);
+        }
+        if (duracion >= 0) {
+            sb.append(",\"duracion\":").append(duracion);
+        }
+        if (message != null) {
+            sb.append(",\"msg\":");
+            TextoJson.agregar(sb, message);
+        }
+        return sb.append("}\n").toString();
+    }
+
     /**
      * Envía un mensaje informativo.
      * @param message detalles
      */
     public void sendInfo(String message){
-        try (FileWriter file = new FileWriter(logPath, true)){
-            file.write("[  INFO   ] [" + this.className + "] : " + message + "\n");
-        } catch (Exception e){
-            e.printStackTrace();
-            System.exit(0);
-        }
+        if (estaActivo(Nivel.INFO)) this.enviar(Nivel.INFO, message);
+    }
+
+    /**
+     * Envía un mensaje informativo, el mensaje solo se genera si el nivel INFO está activo.
+     * @param message genera los detalles
+     */
+    public void sendInfo(Supplier<String> message){
+        if (estaActivo(Nivel.INFO)) this.enviar(Nivel.INFO, message.get());
+    }
+
+    /**
+     * Envía un mensaje informativo con formato, solo se formatea si el nivel INFO está activo.
+     * @param format formato, como en String.format
+     * @param args argumentos del formato
+     */
+    public void sendInfo(String format, Object... args){
+        if (estaActivo(Nivel.INFO)) this.enviar(Nivel.INFO, format.formatted(args));
     }
 
     /**
@@ -50,12 +258,24 @@ public class Logger {
      * @param message detalles
      */
     public void sendError(String message){
-        try (FileWriter file = new FileWriter(logPath, true)){
-            file.write("[  ERROR  ] [" + this.className + "] : " + message + "\n");
-        } catch (Exception e){
-            e.printStackTrace();
-            System.exit(0);
-        }
+        if (estaActivo(Nivel.ERROR)) this.enviar(Nivel.ERROR, message);
+    }
+
+    /**
+     * Envía un mensaje de error, el mensaje solo se genera si el nivel ERROR está activo.
+     * @param message genera los detalles
+     */
+    public void sendError(Supplier<String> message){
+        if (estaActivo(Nivel.ERROR)) this.enviar(Nivel.ERROR, message.get());
+    }
+
+    /**
+     * Envía un mensaje de error con formato, solo se formatea si el nivel ERROR está activo.
+     * @param format formato, como en String.format
+     * @param args argumentos del formato
+     */
+    public void sendError(String format, Object... args){
+        if (estaActivo(Nivel.ERROR)) this.enviar(Nivel.ERROR, format.formatted(args));
     }
 
     /**
@@ -63,12 +283,24 @@ public class Logger {
      * @param message detalles
      */
     public void sendWarning(String message){
-        try (FileWriter file = new FileWriter(logPath, true)){
-            file.write("[ WARNING ] [" + this.className + "] : " + message + "\n");
-        } catch (Exception e){
-            e.printStackTrace();
-            System.exit(0);
-        }
+        if (estaActivo(Nivel.WARNING)) this.enviar(Nivel.WARNING, message);
+    }
+
+    /**
+     * Envía una advertencia, el mensaje solo se genera si el nivel WARNING está activo.
+     * @param message genera los detalles
+     */
+    public void sendWarning(Supplier<String> message){
+        if (estaActivo(Nivel.WARNING)) this.enviar(Nivel.WARNING, message.get());
+    }
+
+    /**
+     * Envía una advertencia con formato, solo se formatea si el nivel WARNING está activo.
+     * @param format formato, como en String.format
+     * @param args argumentos del formato
+     */
+    public void sendWarning(String format, Object... args){
+        if (estaActivo(Nivel.WARNING)) this.enviar(Nivel.WARNING, format.formatted(args));
     }
 
 }
@@ -0,0 +1,158 @@
+package com.fiunam.logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Envía las líneas a un {@link BufferCircular} y un único hilo escritor las pasa al
+ * archivo, de forma que el hilo de la interfaz nunca abre ni escribe el archivo.
+ * El archivo se vacía cada {@link ConfiguracionLog#intervaloMs} milisegundos, cuando se
+ * pide con {@link #vaciar()} y al cerrar el programa (gancho de apagado).
+ * <p>
+ * Si el archivo no se pudo abrir o la salida ya se cerró, las líneas se escriben en la
+ * salida de errores.
+ */
+class SalidaAsincrona implements SalidaLog {
+    private final ConfiguracionLog config;
+    private final BufferCircular buffer;
+    private final ArchivoLog archivo;
+    private final Thread escritor;
+    private final int umbralDespertar;
+    private final AtomicLong descartados = new AtomicLong();
+    private final AtomicLong solicitudesVaciado = new AtomicLong();
+    private volatile long vaciadosAtendidos;
+    private volatile boolean activa = true;
+
+    SalidaAsincrona(ConfiguracionLog config) {
+        this.config = config;
+        this.buffer = new BufferCircular(config.capacidad);
+        this.umbralDespertar = this.buffer.capacidad() / 2;
+
+        ArchivoLog archivo = null;
+        try {
+            archivo = new ArchivoLog(config);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        this.archivo = archivo;
+
+        this.escritor = new Thread(this::ejecutar, "logger-escritor");
+        this.escritor.setDaemon(true);
+        if (archivo != null) {
+            this.escritor.start();
+        } else {
+            this.activa = false;
+        }
+    }
+
+    @Override
+    public void escribir(String linea) {
+        if (!this.activa) {
+            System.err.print(linea);
+            return;
+        }
+        while (!this.buffer.ofrecer(linea)) {
+            if (!this.activa) {
+                System.err.print(linea);
+                return;
+            }
+            if (this.config.desborde == ConfiguracionLog.Desborde.DESCARTAR) {
+                this.descartados.incrementAndGet();
+                return;
+            }
+            // Buffer lleno: se despierta al escritor y se espera a que libere espacio
+            LockSupport.unpark(this.escritor);
+            LockSupport.parkNanos(50_000);
+        }
+        if (this.buffer.tamano() >= this.umbralDespertar) {
+            LockSupport.unpark(this.escritor);
+        }
+    }
+
+    @Override
+    public void vaciar() {
+        long solicitud = this.solicitudesVaciado.incrementAndGet();
+        LockSupport.unpark(this.escritor);
+        while (this.vaciadosAtendidos < solicitud && this.escritor.isAlive()) {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    @Override
+    public void cerrar() {
+        if (!this.escritor.isAlive()) return;
+        this.activa = false;
+        LockSupport.unpark(this.escritor);
+        try {
+            this.escritor.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!this.escritor.isAlive()) {
+            // Líneas que entraron al buffer mientras el escritor terminaba
+            String linea;
+            while ((linea = this.buffer.tomar()) != null) {
+                System.err.print(linea);
+            }
+        }
+    }
+
+    /**
+     * Ciclo del hilo escritor
+     */
+    private void ejecutar() {
+        final long intervalo = TimeUnit.MILLISECONDS.toNanos(Math.max(this.config.intervaloMs, 1));
+        long ultimoVaciado = System.nanoTime();
+        boolean pendiente = false;
+
+        while (this.activa) {
+            long solicitud = this.solicitudesVaciado.get();
+            try {
+                pendiente |= this.drenar();
+                if (solicitud > this.vaciadosAtendidos || (pendiente && System.nanoTime() - ultimoVaciado >= intervalo)) {
+                    this.archivo.vaciar();
+                    ultimoVaciado = System.nanoTime();
+                    pendiente = false;
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            this.vaciadosAtendidos = solicitud;
+
+            if (this.buffer.tamano() == 0 && this.solicitudesVaciado.get() == solicitud) {
+                LockSupport.parkNanos(intervalo);
+            }
+        }
+
+        try {
+            this.drenar();
+            this.archivo.cerrar();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        this.vaciadosAtendidos = Long.MAX_VALUE;
+    }
+
+    /**
+     * Pasa al archivo todas las líneas disponibles
+     *
+     * @return true si se escribió algo
+     */
+    private boolean drenar() throws Exception {
+        boolean escribio = false;
+        String linea;
+        while ((linea = this.buffer.tomar()) != null) {
+            this.archivo.escribir(linea);
+            escribio = true;
+        }
+
+        long perdidos = this.descartados.getAndSet(0);
+        if (perdidos > 0) {
+            this.archivo.escribir("[ WARNING ] [" + SalidaAsincrona.class + "] : " + perdidos +
+                    " mensajes descartados por buffer lleno.\n");
+            escribio = true;
+        }
+        return escribio;
+    }
+}
@@ -0,0 +1,27 @@
+package com.fiunam.logger;
+
+/**
+ * Destino de las líneas del Logger. Hay una sola salida para toda la aplicación,
+ * se elige con {@link ConfiguracionLog} al cargar el Logger, que la cierra al terminar el programa.
+ */
+interface SalidaLog {
+    /**
+     * Envía una línea ya formateada (con salto de línea)
+     */
+    void escribir(String linea);
+
+    /**
+     * Asegura que las líneas enviadas hasta ahora estén en el archivo
+     */
+    void vaciar();
+
+    /**
+     * Escribe lo pendiente y cierra el archivo. Las líneas que se envíen después se
+     * escriben en la salida de errores.
+     */
+    void cerrar();
+
+    static SalidaLog crear(ConfiguracionLog config) {
+        return config.asincrono ? new SalidaAsincrona(config) : new SalidaSincrona(config);
+    }
+}
@@ -0,0 +1,61 @@
+package com.fiunam.logger;
+
+/**
+ * Escribe cada línea en el archivo desde el hilo que la envía. El archivo se abre
+ * una sola vez y se vacía después de cada línea, así que ningún mensaje queda
+ * pendiente si el programa termina de forma inesperada.
+ * <p>
+ * Si el archivo no se pudo abrir o ya se cerró (un gancho de apagado que escribe después
+ * del cierre), las líneas se escriben en la salida de errores.
+ */
+class SalidaSincrona implements SalidaLog {
+    private final ArchivoLog archivo;
+    private boolean cerrada;
+
+    SalidaSincrona(ConfiguracionLog config) {
+        ArchivoLog archivo = null;
+        try {
+            archivo = new ArchivoLog(config);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        this.archivo = archivo;
+        this.cerrada = archivo == null;
+    }
+
+    @Override
+    public synchronized void escribir(String linea) {
+        if (this.cerrada) {
+            System.err.print(linea);
+            return;
+        }
+        try {
+            this.archivo.escribir(linea);
+            this.archivo.vaciar();
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.print(linea);
+        }
+    }
+
+    @Override
+    public synchronized void vaciar() {
+        if (this.cerrada) return;
+        try {
+            this.archivo.vaciar();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void cerrar() {
+        if (this.cerrada) return;
+        this.cerrada = true;
+        try {
+            this.archivo.cerrar();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
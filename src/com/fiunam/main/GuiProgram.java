@@ -4,11 +4,14 @@ import com.fiunam.logger.Logger;
 import com.fiunam.databases.DatabaseAdmins;
 import com.fiunam.databases.DatabaseAlumnos;
 import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.databases.Persistencia;
 import com.fiunam.materias.AdminMateria;
 import com.fiunam.materias.Materia;
+import com.fiunam.materias.ServicioInscripciones;
 import com.fiunam.users.Administrador;
 import com.fiunam.users.Alumno;
 import com.fiunam.users.Usuario;
+import com.fiunam.util.Claves;
 import com.googlecode.lanterna.Symbols;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.TextColor;
@@ -101,7 +104,7 @@ public class GuiProgram {
                     ArrayList<Materia> listadoMaterias = GuiProgram.dbMaterias.getCopiaMaterias();
 
                     // Filtrado de las materias ya inscritas
-                    listadoMaterias.removeIf(materia -> alumnoActual.getMaterias().contains(materia.getIdMateria()));
+                    listadoMaterias.removeIf(materia -> alumnoActual.estaInscrito(materia.claveMateria()));
                     listadoMaterias.removeIf(materia -> materia.cupoDisponible() == 0);
 
                     // Limpiado del segundo menú secundario
@@ -133,13 +136,12 @@ public class GuiProgram {
                                     tablaMaterias.getTableModel().removeRow(0);
                                 }
 
-                                // Filtrado de materias por cupo y área
-                                ArrayList<Materia> materiasFiltradas = dbMaterias.getCopiaMaterias(area);
-                                materiasFiltradas.removeIf(materia -> alumnoActual.getMaterias().contains(materia.getIdMateria()));
-                                materiasFiltradas.removeIf(materia -> materia.cupoDisponible() == 0);
+                                // Se listan las materias del área en la tabla, omitiendo las
+                                // inscritas y las que no tienen cupo
+                                for (Materia materiaFiltrada : dbMaterias.getMaterias(area)) {
+                                    if (alumnoActual.estaInscrito(materiaFiltrada.claveMateria())
+                                            || materiaFiltrada.cupoDisponible() == 0) continue;
 
-                                // Se listan las materias en la tabla
-                                for (Materia materiaFiltrada : materiasFiltradas) {
                                     tablaMaterias.getTableModel().addRow(
                                             materiaFiltrada.getNombre(),
                                             materiaFiltrada.getProfesor(),
@@ -208,14 +210,33 @@ public class GuiProgram {
                                     new MessageDialogBuilder().setTitle("Aviso").setText("No hay materias por inscribir")
                                             .addButton(MessageDialogButton.OK).build().showDialog(gui);
                                 } else {
-                                    for (int i = 0; i < tablaMateriasIns.getTableModel().getRowCount(); i++) {
-                                        AdminMateria.altaMateria(GuiProgram.dbMaterias, GuiProgram.dbAlumnos,
-                                                tablaMateriasIns.getTableModel().getRow(i).get(3), alumnoActual.getNumCuenta());
+                                    // Se inscriben todas o ninguna
+                                    ServicioInscripciones.ResultadoLote resultado = AdminMateria.altaMaterias(
+                                            GuiProgram.dbMaterias, GuiProgram.dbAlumnos, alumnoActual.getNumCuenta(),
+                                            GuiProgram.columna(tablaMateriasIns, 3));
+
+                                    // Otro alumno pudo ocupar los últimos lugares mientras se elegían: se
+                                    // ofrece la lista de espera de esas materias y se queda en la
+                                    // pantalla para quitarlas
+                                    if (resultado.getResultado() == ServicioInscripciones.Resultado.SIN_CUPO) {
+                                        MessageDialogButton respuesta = new MessageDialogBuilder().setTitle("Aviso")
+                                                .setText("No se inscribió ninguna materia, estas ya no tienen cupo:"
+                                                        + GuiProgram.nombres(tablaMateriasIns, resultado.getMaterias())
+                                                        + "\n\n¿Entrar a su lista de espera?")
+                                                .addButton(MessageDialogButton.Yes).addButton(MessageDialogButton.No)
+                                                .build().showDialog(gui);
+                                        if (respuesta == MessageDialogButton.Yes) {
+                                            for (int idMateria : resultado.getMaterias()) {
+                                                AdminMateria.altaOEspera(GuiProgram.dbMaterias, GuiProgram.dbAlumnos,
+                                                        idMateria, alumnoActual.claveCuenta());
+                                            }
+                                            Persistencia.guardar(GuiProgram.dbAlumnos, GuiProgram.dbMaterias);
+                                        }
+                                        return;
                                     }
 
                                     // Guarda los cambios y muestra la confirmación en pantalla
-                                    GuiProgram.dbAlumnos.saveDB();
-                                    GuiProgram.dbMaterias.saveDB();
+                                    Persistencia.guardar(GuiProgram.dbAlumnos, GuiProgram.dbMaterias);
                                     new MessageDialogBuilder().setTitle("Aviso").setText("Materias inscritas con éxito")
                                             .addButton(MessageDialogButton.OK).build().showDialog(gui);
 
@@ -258,7 +279,7 @@ public class GuiProgram {
                     ArrayList<Materia> listadoMaterias = GuiProgram.dbMaterias.getCopiaMaterias();
 
                     // Filtrado de las materias no inscritas
-                    listadoMaterias.removeIf(materia -> !(alumnoActual.getMaterias().contains(materia.getIdMateria())));
+                    listadoMaterias.removeIf(materia -> !(alumnoActual.estaInscrito(materia.claveMateria())));
 
                     // Agrega las materias en la lista
                     for (Materia materia : listadoMaterias) {
@@ -309,15 +330,27 @@ public class GuiProgram {
                                     new MessageDialogBuilder().setTitle("Aviso").setText("No hay materias seleccionadas")
                                             .addButton(MessageDialogButton.OK).build().showDialog(gui);
                                 } else {
-                                    for (int i = 0; i < tablaMateriasBaja.getTableModel().getRowCount(); i++) {
-                                        AdminMateria.bajaMateria(GuiProgram.dbMaterias, GuiProgram.dbAlumnos,
-                                                tablaMateriasBaja.getTableModel().getRow(i).get(3), alumnoActual.getNumCuenta());
+                                    // Se dan de baja todas o ninguna
+                                    ServicioInscripciones.ResultadoLote resultado = AdminMateria.bajaMaterias(
+                                            GuiProgram.dbMaterias, GuiProgram.dbAlumnos, alumnoActual.getNumCuenta(),
+                                            GuiProgram.columna(tablaMateriasBaja, 3));
+
+                                    // Un administrador pudo eliminar alguna mientras se elegían: se queda
+                                    // en la pantalla para quitarlas
+                                    if (resultado.getResultado() == ServicioInscripciones.Resultado.NO_EXISTE) {
+                                        new MessageDialogBuilder().setTitle("Aviso")
+                                                .setText("No se dio de baja ninguna materia, estas ya no existen:"
+                                                        + GuiProgram.nombres(tablaMateriasBaja, resultado.getMaterias()))
+                                                .addButton(MessageDialogButton.OK).build().showDialog(gui);
+                                        return;
                                     }
 
                                     // Guarda los cambios y muestra el aviso
-                                    GuiProgram.dbAlumnos.saveDB();
-                                    GuiProgram.dbMaterias.saveDB();
-                                    new MessageDialogBuilder().setTitle("Aviso").setText("Materias dadas de baja con éxito")
+                                    Persistencia.guardar(GuiProgram.dbAlumnos, GuiProgram.dbMaterias);
+                                    String aviso = resultado.getResultado() == ServicioInscripciones.Resultado.NO_INSCRITO
+                                            ? "Ya no estaba inscrito en ninguna de las materias seleccionadas"
+                                            : "Materias dadas de baja con éxito";
+                                    new MessageDialogBuilder().setTitle("Aviso").setText(aviso)
                                             .addButton(MessageDialogButton.OK).build().showDialog(gui);
 
                                     while (tablaMateriasInscritas.getTableModel().getRowCount() != 0) {
@@ -351,7 +384,7 @@ public class GuiProgram {
                     Table<String> tablaMaterias = new Table<>("Nombre", "Profesor", "Grupo");
                     ArrayList<Materia> filtroMaterias = GuiProgram.dbMaterias.getCopiaMaterias();
 
-                    filtroMaterias.removeIf(materia -> !(alumnoActual.getMaterias().contains(materia.getIdMateria())));
+                    filtroMaterias.removeIf(materia -> !(alumnoActual.estaInscrito(materia.claveMateria())));
 
                     for (Materia materia : filtroMaterias) {
                         tablaMaterias.getTableModel().addRow(materia.getNombre(),
@@ -404,6 +437,7 @@ public class GuiProgram {
                                     .setText("Debes ingresar una nueva contraseña").addButton(MessageDialogButton.Retry)
                                     .build().showDialog(gui);
                         } else if (Objects.equals(pwdUpdtA.getText(), alumnoActual.getPassword()) && alumnoActual.changePassword(pwdUpdtB.getText(), pwdUpdtC.getText())) {
+                            GuiProgram.dbAlumnos.marcarModificado(alumnoActual);
                             new MessageDialogBuilder().setTitle("Aviso")
                                     .setText("Contraseña actualizada con éxito").addButton(MessageDialogButton.OK)
                                     .build().showDialog(gui);
@@ -507,7 +541,7 @@ public class GuiProgram {
                                     // Se crea una materia con la información proporcionada y se agrega al listado de materias
                                     GuiProgram.dbMaterias.agregarMateria(new Materia(nombreMateria.getText(),
                                             Integer.parseInt(grupoMateria.getText()), nombreProfMateria.getText(), selecArea.getText()));
-                                    GuiProgram.dbMaterias.saveDB();
+                                    Persistencia.guardar(GuiProgram.dbMaterias);
 
                                     // Se muestra una confirmación y se muestra en pantalla
                                     new MessageDialogBuilder().setTitle("Aviso").setText("La materia se creó exitosamente")
@@ -557,7 +591,7 @@ public class GuiProgram {
 
                     for (Alumno alumno : alumnos) {
                         tablaAlumnos.getTableModel().addRow(alumno.getNombre(), alumno.getUsername(), alumno.getNumCuenta(),
-                                String.valueOf(alumno.getSemestre()), String.valueOf(alumno.getMaterias().size()));
+                                String.valueOf(alumno.getSemestre()), String.valueOf(alumno.totalMaterias()));
                     }
 
                     tablaAlumnos.setTheme(GuiProgram.temaGlobal);
@@ -605,15 +639,14 @@ public class GuiProgram {
                                     .addComponent(new Label("ID: "))
                                     .addComponent(new Label(materiaEncontrada.getIdMateria()))
                                     .addComponent(new Label("Alumnos inscritos: "))
-                                    .addComponent(new Label(String.valueOf(materiaEncontrada.getAlumnos().size())));
+                                    .addComponent(new Label(String.valueOf(materiaEncontrada.totalAlumnos())));
 
                             subResultados.addComponent(new EmptySpace(new TerminalSize(0, 0)));
                             subResultados.addComponent(new Button("Eliminar materia", () -> {
 
                                 // Se elimina la materia
                                 GuiProgram.dbMaterias.eliminarMateria(dbAlumnos, materiaEncontrada.getIdMateria());
-                                GuiProgram.dbMaterias.saveDB();
-                                GuiProgram.dbAlumnos.saveDB();
+                                Persistencia.guardar(GuiProgram.dbMaterias, GuiProgram.dbAlumnos);
 
                                 new MessageDialogBuilder().setTitle("Aviso").setText("Materia eliminada exitosamente")
                                         .addButton(MessageDialogButton.OK).build().showDialog(gui);
@@ -678,15 +711,14 @@ public class GuiProgram {
                                     .addComponent(new Label("Semestre: "))
                                     .addComponent(new Label(String.valueOf(alumnoEncontrado.getSemestre())))
                                     .addComponent(new Label("Materias inscritas: "))
-                                    .addComponent(new Label(String.valueOf(alumnoEncontrado.getMaterias().size())));
+                                    .addComponent(new Label(String.valueOf(alumnoEncontrado.totalMaterias())));
 
                             subResultados.addComponent(new EmptySpace(new TerminalSize(0, 0)));
                             subResultados.addComponent(new Button("Eliminar alumno", () -> {
 
                                 // Se elimina la materia
                                 GuiProgram.dbAlumnos.eliminarAlumno(GuiProgram.dbMaterias, alumnoEncontrado.getNumCuenta());
-                                GuiProgram.dbMaterias.saveDB();
-                                GuiProgram.dbAlumnos.saveDB();
+                                Persistencia.guardar(GuiProgram.dbMaterias, GuiProgram.dbAlumnos);
 
                                 new MessageDialogBuilder().setTitle("Aviso").setText("Alumno eliminado exitosamente")
                                         .addButton(MessageDialogButton.OK).build().showDialog(gui);
@@ -757,7 +789,7 @@ public class GuiProgram {
                                     GuiProgram.dbadmins.agregarAdmin(new Administrador(
                                             adminUsrNm.getText(), adminPwd.getText(), adminName.getText()
                                     ));
-                                    GuiProgram.dbadmins.saveDB();
+                                    Persistencia.guardar(GuiProgram.dbadmins);
 
                                     // Se reestablecen los campos
                                     adminName.setText("");
@@ -824,7 +856,7 @@ public class GuiProgram {
 
                                 // Se elimina el administrador
                                 GuiProgram.dbadmins.eliminarAdministrador(numTrabAdm.getText());
-                                GuiProgram.dbadmins.saveDB();
+                                Persistencia.guardar(GuiProgram.dbadmins);
 
                                 new MessageDialogBuilder().setTitle("Aviso").setText("Administrador eliminado exitosamente")
                                         .addButton(MessageDialogButton.OK).build().showDialog(gui);
@@ -889,6 +921,7 @@ public class GuiProgram {
                                     .setText("Debes ingresar una nueva contraseña").addButton(MessageDialogButton.Retry)
                                     .build().showDialog(gui);
                         } else if (Objects.equals(pwdUpdtA.getText(), adminActual.getPassword()) && adminActual.changePassword(pwdUpdtB.getText(), pwdUpdtC.getText())) {
+                            GuiProgram.dbadmins.marcarModificada();
                             new MessageDialogBuilder().setTitle("Aviso")
                                     .setText("Contraseña actualizada con éxito").addButton(MessageDialogButton.OK)
                                     .build().showDialog(gui);
@@ -964,19 +997,14 @@ public class GuiProgram {
                         passRegister.getText(), Integer.parseInt(semesterRegister.getText()));
 
                 // Se comprueba que el usuario no exista en las listas de alumnos y administradores
-                for (int i = 0; i < dbAlumnos.getAlumnos().size(); i++) {
-                    if (Objects.equals(dbAlumnos.getAlumnos().get(i).getUsername(), userRegister.getText()))
-                        throw new Exception("El alumno \"" + userRegister.getText() + "\" ya existe.");
-                }
-
-                for (int i = 0; i < GuiProgram.dbadmins.getAdmins().size(); i++) {
-                    if (Objects.equals(dbadmins.getAdmins().get(i).getUsername(), userRegister.getText()))
-                        throw new Exception("Registro no permitido");
-                }
+                if (GuiProgram.dbAlumnos.existeUsername(userRegister.getText()))
+                    throw new Exception("El alumno \"" + userRegister.getText() + "\" ya existe.");
+                if (GuiProgram.dbadmins.existeUsername(userRegister.getText()))
+                    throw new Exception("Registro no permitido");
 
                 // Se guardan los cambios
                 GuiProgram.dbAlumnos.agregarAlumno(alumno);
-                GuiProgram.dbAlumnos.saveDB();
+                Persistencia.guardar(GuiProgram.dbAlumnos);
 
                 // Se reinician los campos
                 usernameRegister.setText("");
@@ -1056,11 +1084,11 @@ public class GuiProgram {
                 pwdTxt.setText("");
                 if (GuiProgram.currentUser.getCurrentUser() instanceof Alumno) {
                     log.sendInfo("Iniciando interfaz de alumnos.");
-                    log.sendInfo("Sesión iniciada por:\n%s".formatted(GuiProgram.currentUser));
+                    log.sendInfo("Sesión iniciada por:\n%s", GuiProgram.currentUser);
                     gui.addWindowAndWait(windowAlumno);
                 } else if (GuiProgram.currentUser.getCurrentUser() instanceof Administrador) {
                     log.sendInfo("Iniciando interfaz de administradores.");
-                    log.sendInfo("Sesión iniciada por:\n%s".formatted(GuiProgram.currentUser));
+                    log.sendInfo("Sesión iniciada por:\n%s", GuiProgram.currentUser);
                     gui.addWindowAndWait(windowAdmin);
                 }
 
@@ -1074,19 +1102,25 @@ public class GuiProgram {
                 .setTheme(GuiProgram.temaGlobal).addTo(loginPanel);
         new Button("Salir", () -> {
             log.sendInfo("Finalizando programa.");
-            GuiProgram.dbMaterias.saveDB();
+            // Espera a que terminen los guardados en segundo plano antes de escribir los json
+            Persistencia.vaciar();
+            GuiProgram.dbMaterias.guardarInstantanea();
             log.sendInfo("Materias actualizados.");
-            GuiProgram.dbAlumnos.saveDB();
+            GuiProgram.dbAlumnos.guardarInstantanea();
             log.sendInfo("Alumnos actualizados.");
-            GuiProgram.dbadmins.saveDB();
+            GuiProgram.dbadmins.guardarInstantanea();
             log.sendInfo("Administradores actualizados.");
+            log.sendInfo(() -> "Guardados json/bitácora/omitidos: materias %d/%d/%d, alumnos %d/%d/%d, administradores %d/%d/%d.".formatted(
+                    GuiProgram.dbMaterias.getGuardadosRealizados(), GuiProgram.dbMaterias.getGuardadosEnBitacora(), GuiProgram.dbMaterias.getGuardadosOmitidos(),
+                    GuiProgram.dbAlumnos.getGuardadosRealizados(), GuiProgram.dbAlumnos.getGuardadosEnBitacora(), GuiProgram.dbAlumnos.getGuardadosOmitidos(),
+                    GuiProgram.dbadmins.getGuardadosRealizados(), GuiProgram.dbadmins.getGuardadosEnBitacora(), GuiProgram.dbadmins.getGuardadosOmitidos()));
             try {
                 screen.stopScreen();
                 terminal.close();
                 log.sendInfo("Interfaz finalizada.");
                 System.exit(0);
             } catch (IOException e) {
-                log.sendError(Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+                log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
             }
         }).setTheme(GuiProgram.temaGlobal).addTo(loginPanel);
 
@@ -1137,6 +1171,7 @@ public class GuiProgram {
 
                     GuiProgram.currentUser = GuiProgram.dbadmins.getAdmins().get(0);
                     currentUser.setPassword(newPwd.getText());
+                    GuiProgram.dbadmins.marcarModificada();
                     GuiProgram.currentUser = null;
 
                     new MessageDialogBuilder().setTitle("Aviso").setText("Contraseña establecida con éxito")
@@ -1159,4 +1194,28 @@ public class GuiProgram {
         }
 
     }
+
+    /**
+     * @return Los valores de una columna de la tabla
+     */
+    private static List<String> columna(Table<String> tabla, int columna) {
+        ArrayList<String> valores = new ArrayList<>();
+        for (int i = 0; i < tabla.getTableModel().getRowCount(); i++) {
+            valores.add(tabla.getTableModel().getRow(i).get(columna));
+        }
+        return valores;
+    }
+
+    /**
+     * @return Nombres (primera columna) de las materias de la tabla con esos IDs, uno por renglón
+     */
+    private static String nombres(Table<String> tabla, int[] idsMaterias) {
+        StringBuilder nombres = new StringBuilder();
+        for (List<String> fila : tabla.getTableModel().getRows()) {
+            for (int idMateria : idsMaterias) {
+                if (Claves.aEntero(fila.get(3)) == idMateria) nombres.append("\n").append(fila.get(0));
+            }
+        }
+        return nombres.toString();
+    }
 }
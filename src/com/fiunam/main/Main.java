@@ -1,6 +1,9 @@
 package com.fiunam.main;
 
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
 import com.fiunam.logger.Logger;
+import com.fiunam.servidor.ServidorInscripciones;
 
 import java.util.Arrays;
 
@@ -8,14 +11,25 @@ import java.util.Arrays;
  * Comienza la ejecución del programa, en caso de que
  * lanterna (de GuiProgram) no pueda iniciar, envía el error
  * al archivo .log
+ * <p>
+ * Con el argumento "--servidor [puerto]" no se abre la interfaz, se inicia el
+ * {@link ServidorInscripciones} (puerto 8080 por omisión).
  */
 public class Main {
     public static void main(String[] args) {
         Logger log = new Logger(Main.class);
         try {
+            if (args.length > 0 && args[0].equals("--servidor")) {
+                int puerto = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+                ServidorInscripciones servidor = new ServidorInscripciones(new DatabaseMaterias(), new DatabaseAlumnos());
+                servidor.iniciar(puerto);
+                // Se detiene antes de guardar lo pendiente y de cerrar el archivo .log
+                Logger.alTerminar(servidor::detener);
+                return;
+            }
             GuiProgram.start();
         } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+            log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
         }
     }
 }
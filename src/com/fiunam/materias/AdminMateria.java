@@ -1,11 +1,10 @@
 package com.fiunam.materias;
 
-import com.fiunam.logger.Logger;
 import com.fiunam.databases.DatabaseAlumnos;
 import com.fiunam.databases.DatabaseMaterias;
-import com.fiunam.users.Alumno;
+import com.fiunam.util.Claves;
 
-import java.util.Arrays;
+import java.util.List;
 
 /**
  * Administra la creación de las materias, así como las altas y bajas de estas
@@ -14,7 +13,6 @@ import java.util.Arrays;
  */
 public class AdminMateria {
     private static String[] areas = {"Ciencias Básicas", "Ciencias de la ingeniería", "Ingeniería aplicada", "Ciencias Sociales", "Otras asignaturas"};
-    private static final Logger log = new Logger(AdminMateria.class);
 
     public static String[] getAreas() {
         return areas;
@@ -32,28 +30,39 @@ public class AdminMateria {
      * @param dbAlumnos  Base de dato de los alumnos
      * @param idmateria  ID de la materia
      * @param numCuenta  Número de Cuenta del alumno
+     * @return Resultado del alta
      */
-    public static void altaMateria(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos, String idmateria, String numCuenta) {
-        try {
-            Alumno alumno = dbAlumnos.readAlumno(numCuenta);
-            Materia materia = dbMaterias.readMateria(idmateria);
+    public static ServicioInscripciones.Resultado altaMateria(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos, String idmateria, String numCuenta) {
+        return AdminMateria.altaMateria(dbMaterias, dbAlumnos, Claves.aEntero(idmateria), Claves.aEntero(numCuenta));
+    }
 
-            if (alumno.getNumCuenta() != null && materia.getIdMateria() != null) {
-                if (!alumno.getMaterias().contains(idmateria) && !materia.getAlumnos().contains(numCuenta)) {
-                    materia.getAlumnos().add(alumno.getNumCuenta());
-                    alumno.getMaterias().add(materia.getIdMateria());
+    /**
+     * Da de alta una inscripción a partir de los identificadores numéricos. Se puede llamar
+     * desde varios hilos a la vez, ver {@link ServicioInscripciones}.
+     *
+     * @param dbMaterias Base de datos de las materias
+     * @param dbAlumnos  Base de dato de los alumnos
+     * @param idmateria  ID de la materia
+     * @param numCuenta  Número de Cuenta del alumno
+     * @return Resultado del alta
+     * @see #altaMateria(DatabaseMaterias, DatabaseAlumnos, String, String)
+     */
+    public static ServicioInscripciones.Resultado altaMateria(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos, int idmateria, int numCuenta) {
+        return new ServicioInscripciones(dbMaterias, dbAlumnos).alta(idmateria, numCuenta);
+    }
 
-                    log.sendInfo("Materia " + materia.getNombre() + " (" +
-                            materia.getIdMateria() + ") dada de alta por el alumno " + alumno.getNombre() + " (" + alumno.getNumCuenta() + ").");
-                } else {
-                    AdminMateria.log.sendInfo("La materia ya está inscrita");
-                }
-            } else {
-                AdminMateria.log.sendInfo("El Alumno o la materia no existen");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /**
+     * Da de alta una inscripción, o si la materia no tiene lugar pone al alumno en su lista de
+     * espera. Ver {@link ServicioInscripciones#altaOEspera(int, int)}.
+     *
+     * @param dbMaterias Base de datos de las materias
+     * @param dbAlumnos  Base de dato de los alumnos
+     * @param idmateria  ID de la materia
+     * @param numCuenta  Número de Cuenta del alumno
+     * @return Resultado del alta
+     */
+    public static ServicioInscripciones.Resultado altaOEspera(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos, int idmateria, int numCuenta) {
+        return new ServicioInscripciones(dbMaterias, dbAlumnos).altaOEspera(idmateria, numCuenta);
     }
 
     /**
@@ -64,30 +73,60 @@ public class AdminMateria {
      * @param dbAlumnos  Lista de alumnos
      * @param idmateria  ID de la materia
      * @param numCuenta  Número de cuenta del alumno
+     * @return Resultado de la baja
      */
-    public static void bajaMateria(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos, String idmateria, String numCuenta) {
-        try {
-            Alumno alumno = dbAlumnos.readAlumno(numCuenta);
-            Materia materia = dbMaterias.readMateria(idmateria);
-
-            if (alumno.getNumCuenta() != null && materia.getIdMateria() != null) {
-                if (alumno.getMaterias().contains(idmateria) && materia.getAlumnos().contains(numCuenta)) {
-                    alumno.getMaterias().remove(materia.getIdMateria());
-                    materia.getAlumnos().remove(alumno.getNumCuenta());
+    public static ServicioInscripciones.Resultado bajaMateria(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos, String idmateria, String numCuenta) {
+        return AdminMateria.bajaMateria(dbMaterias, dbAlumnos, Claves.aEntero(idmateria), Claves.aEntero(numCuenta));
+    }
 
-                    log.sendInfo("Materia " + materia.getNombre() + " (" +
-                            materia.getIdMateria() + ") dada de baja por el alumno " + alumno.getNombre() + " (" + alumno.getNumCuenta() + ").");
+    /**
+     * Da de baja una inscripción a partir de los identificadores numéricos. Se puede llamar
+     * desde varios hilos a la vez, ver {@link ServicioInscripciones}.
+     *
+     * @param dbMaterias Lista de materias
+     * @param dbAlumnos  Lista de alumnos
+     * @param idmateria  ID de la materia
+     * @param numCuenta  Número de cuenta del alumno
+     * @return Resultado de la baja
+     * @see #bajaMateria(DatabaseMaterias, DatabaseAlumnos, String, String)
+     */
+    public static ServicioInscripciones.Resultado bajaMateria(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos, int idmateria, int numCuenta) {
+        return new ServicioInscripciones(dbMaterias, dbAlumnos).baja(idmateria, numCuenta);
+    }
 
-                } else {
-                    AdminMateria.log.sendInfo("La materia no está inscrita");
-                }
-            } else {
-                AdminMateria.log.sendInfo("El Alumno o la materia no existen");
-            }
-        } catch (Exception e) {
-            log.sendError(Arrays.toString(e.getStackTrace()));
-        }
+    /**
+     * Inscribe a un alumno en varias materias a la vez: todas o ninguna, con un solo registro en
+     * la bitácora. Ver {@link ServicioInscripciones#altas(int, int[])}.
+     *
+     * @param dbMaterias  Base de datos de las materias
+     * @param dbAlumnos   Base de dato de los alumnos
+     * @param numCuenta   Número de Cuenta del alumno
+     * @param idsMaterias IDs de las materias
+     * @return Resultado de las altas
+     */
+    public static ServicioInscripciones.ResultadoLote altaMaterias(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos, String numCuenta, List<String> idsMaterias) {
+        return new ServicioInscripciones(dbMaterias, dbAlumnos).altas(Claves.aEntero(numCuenta), AdminMateria.claves(idsMaterias));
     }
 
+    /**
+     * Da de baja a un alumno de varias materias a la vez: todas o ninguna, con un solo registro
+     * en la bitácora. Ver {@link ServicioInscripciones#bajas(int, int[])}.
+     *
+     * @param dbMaterias  Base de datos de las materias
+     * @param dbAlumnos   Base de dato de los alumnos
+     * @param numCuenta   Número de Cuenta del alumno
+     * @param idsMaterias IDs de las materias
+     * @return Resultado de las bajas
+     */
+    public static ServicioInscripciones.ResultadoLote bajaMaterias(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos, String numCuenta, List<String> idsMaterias) {
+        return new ServicioInscripciones(dbMaterias, dbAlumnos).bajas(Claves.aEntero(numCuenta), AdminMateria.claves(idsMaterias));
+    }
 
+    private static int[] claves(List<String> idsMaterias) {
+        int[] claves = new int[idsMaterias.size()];
+        for (int i = 0; i < claves.length; i++) {
+            claves[i] = Claves.aEntero(idsMaterias.get(i));
+        }
+        return claves;
+    }
 }
@@ -1,6 +1,15 @@
 package com.fiunam.materias;
 
+import com.fiunam.util.Claves;
+import com.fiunam.util.IntSet;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Crea una materia con su nombre, grupo, profesor y la lista de alumnos
@@ -9,17 +18,46 @@ public class Materia {
     private String nombre;
     private int grupo;
     private String profesor;
-    private String idMateria;
-    private ArrayList<String> alumnos;
-    private static final int MAX_ALUMNOS = 20;
+    /*
+     * El ID y los números de cuenta de los alumnos se guardan como enteros, en el json
+     * se siguen guardando como texto ("idMateria" y el arreglo "alumnos").
+     */
+    private int clave = Claves.SIN_CLAVE;
+    private final IntSet alumnosInscritos = new IntSet();
+    /**
+     * Cupo de las materias que no tienen uno propio
+     */
+    public static final int MAX_ALUMNOS = 20;
+    private volatile int cupo = MAX_ALUMNOS;
+    /*
+     * Lugares ocupados, siempre igual al tamaño de alumnosInscritos. La lista solo se cambia con
+     * el bloqueo de la materia tomado, pero el contador se puede leer desde cualquier hilo
+     * (cupoDisponible) y el lugar se reserva con compareAndSet antes de agregar al alumno.
+     */
+    private final AtomicInteger ocupados = new AtomicInteger();
+    /*
+     * Lista de espera: turnos en orden de llegada y el turno vigente de cada número de cuenta.
+     * Quitar a un alumno solo lo borra de "turnos", su turno queda en la cola y se salta (así
+     * no se recorre la cola en cada baja); cuando hay más turnos vencidos que vigentes se
+     * limpia la cola. Igual que la lista de alumnos solo se cambia con el bloqueo de la materia
+     * tomado, y se puede leer desde cualquier hilo.
+     */
+    private final ConcurrentLinkedQueue<Turno> espera = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Integer, Long> turnos = new ConcurrentHashMap<>();
+    private long ultimoTurno;
+    private int turnosVencidos;
+    /*
+     * Cambios hechos a la lista de espera. Los registros de la bitácora que la cambian llevan
+     * el número que dejaron; entrar o salir de la lista no es idempotente (cambia el orden), así
+     * que al aplicar de nuevo la bitácora sobre un archivo que ya tenía esos cambios se omiten.
+     */
+    private int versionEspera;
     private String area;
 
     /**
-     * Constructor vacío, inicializa el ArrayList de alumnos,
-     * es necesario aunque no haya elementos en la lista.
+     * Constructor vacío de una materia
      */
     public Materia() {
-        this.alumnos = new ArrayList<>();
     }
 
     /**
@@ -30,7 +68,6 @@ public class Materia {
      * @param area Area a la que pertenece
      */
     public Materia(String nombre, int grupo, String profesor, String area) {
-        this.alumnos = new ArrayList<>();
         this.nombre = nombre;
         this.grupo = grupo;
         this.profesor = profesor;
@@ -61,20 +98,200 @@ public class Materia {
         this.profesor = profesor;
     }
 
-    public ArrayList<String> getAlumnos() {
+    /**
+     * Lista con los números de cuenta de los alumnos inscritos. Se crea en cada llamada,
+     * se usa para el json; para consultas usar {@link #estaInscrito(int)}.
+     * @return Lista con los números de cuenta
+     */
+    public Collection<String> getAlumnos() {
+        ArrayList<String> alumnos = new ArrayList<>(this.alumnosInscritos.size());
+        for (int i = 0; i < this.alumnosInscritos.size(); i++) {
+            alumnos.add(Claves.numCuenta(this.alumnosInscritos.get(i)));
+        }
         return alumnos;
     }
 
-    public void setAlumnos(ArrayList<String> alumnos) {
-        this.alumnos = alumnos;
+    public void setAlumnos(Collection<String> alumnos) {
+        this.alumnosInscritos.clear();
+        for (String numCuenta : alumnos) {
+            this.alumnosInscritos.add(Claves.aEntero(numCuenta));
+        }
+        this.ocupados.set(this.alumnosInscritos.size());
+    }
+
+    /**
+     * @return Número de alumnos inscritos
+     */
+    public int totalAlumnos() {
+        return this.alumnosInscritos.size();
+    }
+
+    /**
+     * @return Copia de los números de cuenta de los alumnos inscritos
+     */
+    public int[] cuentasAlumnos() {
+        return this.alumnosInscritos.toArray();
+    }
+
+    /**
+     * Comprueba si un alumno está inscrito en la materia
+     * @param numCuenta Número de cuenta del alumno
+     * @return true si está inscrito
+     */
+    public boolean estaInscrito(int numCuenta) {
+        return this.alumnosInscritos.contains(numCuenta);
+    }
+
+    /**
+     * Agrega un alumno al grupo de la materia sin revisar el cupo, se usa al leer los archivos
+     * y la bitácora; para inscribir usar {@link #inscribirConCupo(int)}
+     * @param numCuenta Número de cuenta del alumno
+     * @return true si se agregó; false si ya estaba inscrito
+     */
+    public boolean inscribirAlumno(int numCuenta) {
+        boolean agregado = this.alumnosInscritos.add(numCuenta);
+        if (agregado) this.ocupados.incrementAndGet();
+        return agregado;
+    }
+
+    /**
+     * Reserva un lugar y agrega al alumno al grupo. El lugar se toma con compareAndSet sobre el
+     * contador, así nunca se pasa del cupo aunque otro hilo lo cambie al mismo tiempo con
+     * {@link #setCupo(int)}. Se llama con el bloqueo de la materia tomado
+     * ({@link com.fiunam.databases.DatabaseMaterias#bloqueoMateria(int)}).
+     * @param numCuenta Número de cuenta del alumno
+     * @return true si se inscribió; false si no hay cupo o ya estaba inscrito
+     */
+    public boolean inscribirConCupo(int numCuenta) {
+        int actuales;
+        do {
+            actuales = this.ocupados.get();
+            if (actuales >= this.cupo) return false;
+        } while (!this.ocupados.compareAndSet(actuales, actuales + 1));
+
+        if (!this.alumnosInscritos.add(numCuenta)) {
+            this.ocupados.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Elimina un alumno del grupo de la materia y libera su lugar
+     * @param numCuenta Número de cuenta del alumno
+     * @return true si se eliminó; false si no estaba inscrito
+     */
+    public boolean darBajaAlumno(int numCuenta) {
+        boolean eliminado = this.alumnosInscritos.remove(numCuenta);
+        if (eliminado) this.ocupados.decrementAndGet();
+        return eliminado;
+    }
+
+    /**
+     * @return Copia de los números de cuenta en la lista de espera, en orden de llegada
+     */
+    public int[] cuentasEnEspera() {
+        return this.espera.stream().filter(this::vigente).mapToInt(turno -> turno.numCuenta).toArray();
+    }
+
+    /**
+     * @return true si hay alumnos en la lista de espera
+     */
+    public boolean hayEnEspera() {
+        return !this.turnos.isEmpty();
+    }
+
+    /**
+     * @param numCuenta Número de cuenta del alumno
+     * @return Lugar del alumno en la lista de espera (desde 1), 0 si no está
+     */
+    public int lugarEnEspera(int numCuenta) {
+        if (!this.turnos.containsKey(numCuenta)) return 0;
+        int lugar = 1;
+        for (Turno turno : this.espera) {
+            if (!this.vigente(turno)) continue;
+            if (turno.numCuenta == numCuenta) return lugar;
+            lugar++;
+        }
+        return 0;
+    }
+
+    /**
+     * Agrega un alumno al final de la lista de espera
+     * @param numCuenta Número de cuenta del alumno
+     * @return true si se agregó; false si ya estaba en la lista
+     */
+    public boolean ponerEnEspera(int numCuenta) {
+        if (this.turnos.containsKey(numCuenta)) return false;
+        Turno turno = new Turno(numCuenta, ++this.ultimoTurno);
+        this.turnos.put(numCuenta, turno.numero);
+        this.versionEspera++;
+        return this.espera.add(turno);
+    }
+
+    /**
+     * Quita a un alumno de la lista de espera
+     * @param numCuenta Número de cuenta del alumno
+     * @return true si se quitó; false si no estaba en la lista
+     */
+    public boolean quitarDeEspera(int numCuenta) {
+        if (this.turnos.remove(numCuenta) == null) return false;
+        this.versionEspera++;
+        if (++this.turnosVencidos > 64 && this.turnosVencidos > this.turnos.size()) {
+            this.espera.removeIf(turno -> !this.vigente(turno));
+            this.turnosVencidos = 0;
+        }
+        return true;
+    }
+
+    /**
+     * @return Cambios hechos a la lista de espera, ver {@link #setVersionEspera(int)}
+     */
+    public int getVersionEspera() {
+        return this.versionEspera;
+    }
+
+    /**
+     * Fija el número de cambios de la lista de espera, se usa al leer la materia de un archivo
+     * o al aplicar un registro de la bitácora
+     * @param versionEspera Cambios hechos a la lista de espera
+     */
+    public void setVersionEspera(int versionEspera) {
+        this.versionEspera = versionEspera;
+    }
+
+    /**
+     * @return Número de cuenta del primer alumno de la lista de espera, sin quitarlo;
+     * {@link Claves#SIN_CLAVE} si está vacía
+     */
+    public int primeroEnEspera() {
+        for (Turno turno : this.espera) {
+            if (this.vigente(turno)) return turno.numCuenta;
+        }
+        return Claves.SIN_CLAVE;
     }
 
     public String getIdMateria() {
-        return idMateria;
+        return Claves.idMateria(this.clave);
     }
 
     public void setIdMateria(String idMateria) {
-        this.idMateria = String.format("%04d", Integer.parseInt(idMateria));
+        this.clave = Claves.aEntero(idMateria);
+    }
+
+    /**
+     * @return ID de la materia como entero, {@link Claves#SIN_CLAVE} si no tiene
+     */
+    public int claveMateria() {
+        return this.clave;
+    }
+
+    /**
+     * Asigna el ID de la materia a partir de su valor entero
+     * @param idMateria ID de la materia
+     */
+    public void asignarClave(int idMateria) {
+        this.clave = idMateria;
     }
 
     public String getArea() {
@@ -85,20 +302,94 @@ public class Materia {
         this.area = area;
     }
 
+    /**
+     * @return Número máximo de alumnos de la materia
+     */
+    public int getCupo() {
+        return this.cupo;
+    }
+
+    /**
+     * Cambia el cupo de la materia. Si es menor a los alumnos inscritos no se da de baja a
+     * nadie, solo se dejan de aceptar altas.
+     * @param cupo Número máximo de alumnos
+     */
+    public void setCupo(int cupo) {
+        if (cupo < 0) throw new IllegalArgumentException("El cupo no puede ser negativo: " + cupo);
+        this.cupo = cupo;
+    }
+
+    /**
+     * Lugares libres, se puede llamar desde cualquier hilo sin bloqueos
+     * @return Lugares libres, 0 si la materia está llena
+     */
     public int cupoDisponible() {
-        return Materia.MAX_ALUMNOS - this.alumnos.size();
+        return Math.max(0, this.cupo - this.ocupados.get());
+    }
+
+    /**
+     * Copia los datos de otra materia con el mismo ID, se usa al recargar la base de datos
+     * para que las referencias a este objeto sigan siendo válidas
+     * @param otra Materia con los datos leídos del archivo
+     * @return true si algún dato cambió
+     */
+    public boolean actualizarDesde(Materia otra) {
+        int[] alumnos = otra.cuentasAlumnos();
+        if (Objects.equals(this.nombre, otra.nombre) && this.grupo == otra.grupo
+                && Objects.equals(this.profesor, otra.profesor) && Objects.equals(this.area, otra.area)
+                && this.cupo == otra.cupo && Arrays.equals(this.cuentasAlumnos(), alumnos)
+                && Arrays.equals(this.cuentasEnEspera(), otra.cuentasEnEspera())
+                && this.versionEspera == otra.versionEspera) {
+            return false;
+        }
+        this.nombre = otra.nombre;
+        this.grupo = otra.grupo;
+        this.profesor = otra.profesor;
+        this.area = otra.area;
+        this.cupo = otra.cupo;
+        this.alumnosInscritos.clear();
+        for (int numCuenta : alumnos) {
+            this.alumnosInscritos.add(numCuenta);
+        }
+        this.ocupados.set(alumnos.length);
+        this.espera.clear();
+        this.turnos.clear();
+        this.turnosVencidos = 0;
+        for (int numCuenta : otra.cuentasEnEspera()) {
+            this.ponerEnEspera(numCuenta);
+        }
+        this.versionEspera = otra.versionEspera;
+        return true;
+    }
+
+    private boolean vigente(Turno turno) {
+        Long numero = this.turnos.get(turno.numCuenta);
+        return numero != null && numero == turno.numero;
+    }
+
+    /**
+     * Lugar en la lista de espera
+     */
+    private static final class Turno {
+        private final int numCuenta;
+        private final long numero;
+
+        private Turno(int numCuenta, long numero) {
+            this.numCuenta = numCuenta;
+            this.numero = numero;
+        }
     }
 
     @Override
     public String toString() {
         StringBuilder listaAlumos = new StringBuilder();
-        for (int i = 0; i < this.alumnos.size(); i++) {
-            listaAlumos.append("(").append(i+1).append(") - ");
-            listaAlumos.append(this.alumnos.get(i)).append("\n");
+        for (int i = 0; i < this.alumnosInscritos.size(); i++) {
+            listaAlumos.append("(").append(i + 1).append(") - ");
+            listaAlumos.append(Claves.numCuenta(this.alumnosInscritos.get(i))).append("\n");
         }
 
         return "Materia: " + this.nombre + " | " + this.grupo + " | ID: " +
-                this.idMateria + "\n" +
+                this.getIdMateria() + "\n" +
                 "Profesor: " + this.profesor + "\n" +
                 "Lista de Alumnos: \n" + listaAlumos;
     }
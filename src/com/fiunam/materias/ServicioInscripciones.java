@@ -0,0 +1,497 @@
+package com.fiunam.materias;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.logger.Logger;
+import com.fiunam.users.Alumno;
+import com.fiunam.util.Claves;
+import com.fiunam.util.IntSet;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Altas y bajas de materias que se pueden hacer desde varios hilos a la vez (varias sesiones
+ * inscribiéndose al mismo tiempo).
+ * <p>
+ * Cada operación toma el bloqueo compartido de las dos bases de datos
+ * ({@link com.fiunam.databases.Database#bloqueoRegistros()}) y después el de la materia y el
+ * del alumno, siempre en ese orden; así dos operaciones sobre materias y alumnos distintos no
+ * se esperan entre ellas, y las que comparten materia o alumno se hacen una después de otra.
+ * La materia y el alumno se cambian juntos, con los dos bloqueos tomados, y cada cambio se
+ * registra en la bitácora de las dos bases de datos antes de soltarlos.
+ * <p>
+ * El cupo de cada materia ({@link Materia#getCupo()}) se respeta aunque muchos hilos pidan los
+ * últimos lugares: el lugar se reserva con {@link Materia#inscribirConCupo(int)}, y si la
+ * materia ya está llena el alta se rechaza antes de tomar los bloqueos de la materia y del
+ * alumno, así los que llegan tarde no se forman detrás de los que sí alcanzaron lugar.
+ * <p>
+ * {@link #altas(int, int[])} y {@link #bajas(int, int[])} cambian varias materias de un alumno
+ * de una vez: se hacen todas o ninguna, y dejan un solo registro en la bitácora de cada base
+ * de datos. Los bloqueos de las materias se toman en el orden de
+ * {@link DatabaseMaterias#bloqueosMaterias(int[])}.
+ * <p>
+ * Con {@link #altaOEspera(int, int)} el alumno que no alcanza lugar entra a la lista de espera
+ * de la materia. Cada baja inscribe a los primeros de la lista mientras haya lugar; mientras
+ * haya alumnos esperando, las altas nuevas no toman los lugares que se liberen. La inscripción
+ * de los que esperan se hace con el bloqueo de la materia tomado pero ya sin el del alumno que
+ * se dio de baja, así nunca se tienen dos bloqueos de alumnos a la vez.
+ * <p>
+ * El servicio no guarda estado propio (los bloqueos son de las bases de datos), se puede
+ * crear uno para cada operación.
+ */
+public class ServicioInscripciones {
+    private static final Logger log = new Logger(ServicioInscripciones.class);
+    private final DatabaseMaterias dbMaterias;
+    private final DatabaseAlumnos dbAlumnos;
+
+    /**
+     * Resultado de un alta o una baja
+     */
+    public enum Resultado {
+        INSCRITO,
+        DADO_DE_BAJA,
+        /** El alta no cambió nada, el alumno ya estaba inscrito */
+        YA_INSCRITO,
+        /** La baja no cambió nada, el alumno no estaba inscrito */
+        NO_INSCRITO,
+        /** El alumno o la materia no existen */
+        NO_EXISTE,
+        /** La materia no tiene lugares libres (también si el alumno ya estaba inscrito en ella) */
+        SIN_CUPO,
+        /** La materia no tiene lugares libres y el alumno está en la lista de espera */
+        EN_ESPERA
+    }
+
+    private enum Operacion {
+        ALTA,
+        ALTA_O_ESPERA,
+        BAJA
+    }
+
+    /**
+     * Resultado de {@link #altas(int, int[])} o {@link #bajas(int, int[])}
+     */
+    public static final class ResultadoLote {
+        private final Resultado resultado;
+        private final int[] materias;
+
+        ResultadoLote(Resultado resultado, int[] materias) {
+            this.resultado = resultado;
+            this.materias = materias;
+        }
+
+        /**
+         * @return {@link Resultado#INSCRITO} o {@link Resultado#DADO_DE_BAJA} si se hicieron los
+         * cambios; si no, el motivo por el que no se hizo ninguno
+         */
+        public Resultado getResultado() {
+            return this.resultado;
+        }
+
+        /**
+         * @return IDs de las materias que cambiaron, o de las que impidieron el cambio
+         * ({@link Resultado#NO_EXISTE} o {@link Resultado#SIN_CUPO})
+         */
+        public int[] getMaterias() {
+            return this.materias.clone();
+        }
+
+        /**
+         * @return true si se hicieron los cambios
+         */
+        public boolean aplicado() {
+            return this.resultado == Resultado.INSCRITO || this.resultado == Resultado.DADO_DE_BAJA;
+        }
+
+        @Override
+        public String toString() {
+            return this.resultado + " " + Arrays.toString(this.materias);
+        }
+    }
+
+    /**
+     * @param dbMaterias Base de datos de las materias
+     * @param dbAlumnos  Base de datos de los alumnos
+     */
+    public ServicioInscripciones(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos) {
+        this.dbMaterias = dbMaterias;
+        this.dbAlumnos = dbAlumnos;
+    }
+
+    /**
+     * Inscribe a un alumno en una materia: agrega el número de cuenta a la lista de alumnos de
+     * la materia y el ID de la materia a la lista de materias del alumno.
+     *
+     * @param idMateria ID de la materia
+     * @param numCuenta Número de cuenta del alumno
+     * @return {@link Resultado#INSCRITO}, {@link Resultado#YA_INSCRITO}, {@link Resultado#SIN_CUPO}
+     * o {@link Resultado#NO_EXISTE}
+     */
+    public Resultado alta(int idMateria, int numCuenta) {
+        return log.medir("altaMateria", () -> this.cambiar(idMateria, numCuenta, Operacion.ALTA));
+    }
+
+    /**
+     * Igual que {@link #alta(int, int)}, pero si la materia no tiene lugar el alumno entra al
+     * final de su lista de espera, y se inscribe solo cuando le toca un lugar.
+     *
+     * @param idMateria ID de la materia
+     * @param numCuenta Número de cuenta del alumno
+     * @return {@link Resultado#INSCRITO}, {@link Resultado#EN_ESPERA} (también si ya estaba en la
+     * lista), {@link Resultado#YA_INSCRITO} o {@link Resultado#NO_EXISTE}
+     */
+    public Resultado altaOEspera(int idMateria, int numCuenta) {
+        return log.medir("altaMateria", "espera", () -> this.cambiar(idMateria, numCuenta, Operacion.ALTA_O_ESPERA));
+    }
+
+    /**
+     * Da de baja a un alumno de una materia, de las listas de los dos, e inscribe a los
+     * primeros de la lista de espera. Si el alumno no estaba inscrito pero sí en la lista de
+     * espera, sale de ella.
+     *
+     * @param idMateria ID de la materia
+     * @param numCuenta Número de cuenta del alumno
+     * @return {@link Resultado#DADO_DE_BAJA}, {@link Resultado#NO_INSCRITO} o {@link Resultado#NO_EXISTE}
+     */
+    public Resultado baja(int idMateria, int numCuenta) {
+        return log.medir("bajaMateria", () -> this.cambiar(idMateria, numCuenta, Operacion.BAJA));
+    }
+
+    /**
+     * Cambia el cupo de una materia ({@link DatabaseMaterias#cambiarCupo(int, int)}); si hay
+     * lugares nuevos se inscribe a los primeros de la lista de espera.
+     *
+     * @param idMateria ID de la materia
+     * @param cupo      Número máximo de alumnos
+     * @return false si la materia no existe
+     */
+    public boolean cambiarCupo(int idMateria, int cupo) {
+        if (!this.dbMaterias.cambiarCupo(idMateria, cupo)) return false;
+
+        Lock registrosMaterias = this.dbMaterias.bloqueoRegistros();
+        Lock registrosAlumnos = this.dbAlumnos.bloqueoRegistros();
+        registrosMaterias.lock();
+        registrosAlumnos.lock();
+        try {
+            Lock bloqueoMateria = this.dbMaterias.bloqueoMateria(idMateria);
+            bloqueoMateria.lock();
+            try {
+                this.promover(this.dbMaterias.readMateria(idMateria));
+            } finally {
+                bloqueoMateria.unlock();
+            }
+        } finally {
+            registrosAlumnos.unlock();
+            registrosMaterias.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Inscribe a un alumno en varias materias: todas o ninguna. Las materias en las que ya está
+     * inscrito se omiten.
+     *
+     * @param numCuenta   Número de cuenta del alumno
+     * @param idsMaterias IDs de las materias
+     * @return {@link Resultado#INSCRITO} con las materias inscritas, {@link Resultado#YA_INSCRITO}
+     * si ya estaba en todas, o {@link Resultado#NO_EXISTE} o {@link Resultado#SIN_CUPO} con las
+     * materias que lo impidieron (en ese caso no se inscribe ninguna)
+     */
+    public ResultadoLote altas(int numCuenta, int[] idsMaterias) {
+        return log.medir("altaMaterias", () -> this.cambiarVarias(numCuenta, idsMaterias, Operacion.ALTA));
+    }
+
+    /**
+     * Da de baja a un alumno de varias materias: todas o ninguna. Las materias en las que no
+     * está inscrito se omiten. En cada materia se inscribe a los primeros de la lista de espera.
+     *
+     * @param numCuenta   Número de cuenta del alumno
+     * @param idsMaterias IDs de las materias
+     * @return {@link Resultado#DADO_DE_BAJA} con las materias dadas de baja,
+     * {@link Resultado#NO_INSCRITO} si no estaba en ninguna, o {@link Resultado#NO_EXISTE} con
+     * las materias que no existen (en ese caso no se da de baja ninguna)
+     */
+    public ResultadoLote bajas(int numCuenta, int[] idsMaterias) {
+        return log.medir("bajaMaterias", () -> this.cambiarVarias(numCuenta, idsMaterias, Operacion.BAJA));
+    }
+
+    private Resultado cambiar(int idMateria, int numCuenta, Operacion operacion) {
+        Lock registrosMaterias = this.dbMaterias.bloqueoRegistros();
+        Lock registrosAlumnos = this.dbAlumnos.bloqueoRegistros();
+        registrosMaterias.lock();
+        registrosAlumnos.lock();
+        try {
+            // El contador de lugares se lee sin bloqueos
+            if (operacion == Operacion.ALTA && this.dbMaterias.readMateria(idMateria).cupoDisponible() == 0) {
+                log.sendInfo("La materia no tiene cupo");
+                return Resultado.SIN_CUPO;
+            }
+
+            Lock bloqueoMateria = this.dbMaterias.bloqueoMateria(idMateria);
+            Lock bloqueoAlumno = this.dbAlumnos.bloqueoAlumno(numCuenta);
+            bloqueoMateria.lock();
+            try {
+                Materia materia;
+                Resultado resultado;
+                bloqueoAlumno.lock();
+                try {
+                    // Se buscan con los bloqueos tomados: en el modo perezoso otro hilo pudo
+                    // cambiar al alumno y sacarlo de la caché
+                    materia = this.dbMaterias.readMateria(idMateria);
+                    Alumno alumno = this.dbAlumnos.readAlumno(numCuenta);
+                    if (alumno.claveCuenta() == Claves.SIN_CLAVE || materia.claveMateria() == Claves.SIN_CLAVE) {
+                        log.sendInfo("El Alumno o la materia no existen");
+                        return Resultado.NO_EXISTE;
+                    }
+                    resultado = operacion == Operacion.BAJA ? this.darBaja(materia, alumno)
+                            : this.inscribir(materia, alumno, operacion == Operacion.ALTA_O_ESPERA);
+                } finally {
+                    bloqueoAlumno.unlock();
+                }
+                if (resultado == Resultado.DADO_DE_BAJA) this.promover(materia);
+                return resultado;
+            } finally {
+                bloqueoMateria.unlock();
+            }
+        } finally {
+            registrosAlumnos.unlock();
+            registrosMaterias.unlock();
+        }
+    }
+
+    private ResultadoLote cambiarVarias(int numCuenta, int[] idsMaterias, Operacion operacion) {
+        IntSet sinRepetir = new IntSet();
+        for (int idMateria : idsMaterias) {
+            sinRepetir.add(idMateria);
+        }
+        int[] ids = sinRepetir.toArray();
+
+        Lock registrosMaterias = this.dbMaterias.bloqueoRegistros();
+        Lock registrosAlumnos = this.dbAlumnos.bloqueoRegistros();
+        registrosMaterias.lock();
+        registrosAlumnos.lock();
+        try {
+            Lock[] bloqueosMaterias = this.dbMaterias.bloqueosMaterias(ids);
+            Lock bloqueoAlumno = this.dbAlumnos.bloqueoAlumno(numCuenta);
+            int tomados = 0;
+            try {
+                for (Lock bloqueo : bloqueosMaterias) {
+                    bloqueo.lock();
+                    tomados++;
+                }
+                Materia[] materias = new Materia[ids.length];
+                ResultadoLote resultado;
+                bloqueoAlumno.lock();
+                try {
+                    Alumno alumno = this.dbAlumnos.readAlumno(numCuenta);
+                    if (alumno.claveCuenta() == Claves.SIN_CLAVE) {
+                        log.sendInfo("El Alumno no existe");
+                        return new ResultadoLote(Resultado.NO_EXISTE, new int[0]);
+                    }
+                    for (int i = 0; i < ids.length; i++) {
+                        materias[i] = this.dbMaterias.readMateria(ids[i]);
+                    }
+                    resultado = operacion == Operacion.BAJA ? this.darBajaVarias(ids, materias, alumno)
+                            : this.inscribirVarias(ids, materias, alumno);
+                } finally {
+                    bloqueoAlumno.unlock();
+                }
+                if (resultado.aplicado() && operacion == Operacion.BAJA) {
+                    for (Materia materia : materias) {
+                        this.promover(materia);
+                    }
+                }
+                return resultado;
+            } finally {
+                for (int i = tomados - 1; i >= 0; i--) {
+                    bloqueosMaterias[i].unlock();
+                }
+            }
+        } finally {
+            registrosAlumnos.unlock();
+            registrosMaterias.unlock();
+        }
+    }
+
+    private ResultadoLote inscribirVarias(int[] ids, Materia[] materias, Alumno alumno) {
+        int numCuenta = alumno.claveCuenta();
+        IntSet inexistentes = new IntSet();
+        IntSet llenas = new IntSet();
+        IntSet pendientes = new IntSet();
+        for (int i = 0; i < materias.length; i++) {
+            Materia materia = materias[i];
+            if (materia.claveMateria() == Claves.SIN_CLAVE) {
+                inexistentes.add(i);
+            } else if (!alumno.estaInscrito(materia.claveMateria()) && !materia.estaInscrito(numCuenta)) {
+                if (materia.cupoDisponible() == 0 || materia.hayEnEspera()) llenas.add(i); else pendientes.add(i);
+            }
+        }
+        if (!inexistentes.isEmpty()) return this.rechazar(Resultado.NO_EXISTE, ids, inexistentes);
+        if (!llenas.isEmpty()) return this.rechazar(Resultado.SIN_CUPO, ids, llenas);
+        if (pendientes.isEmpty()) {
+            log.sendInfo("Las materias ya están inscritas");
+            return new ResultadoLote(Resultado.YA_INSCRITO, new int[0]);
+        }
+
+        // Con los bloqueos tomados el cupo no cambia, pero si una reserva falla se deshacen las
+        // anteriores para no dejar el lote a medias
+        int[] inscritas = new int[pendientes.size()];
+        for (int i = 0; i < pendientes.size(); i++) {
+            Materia materia = materias[pendientes.get(i)];
+            if (!materia.inscribirConCupo(numCuenta)) {
+                for (int j = 0; j < i; j++) {
+                    materias[pendientes.get(j)].darBajaAlumno(numCuenta);
+                }
+                IntSet llena = new IntSet();
+                llena.add(pendientes.get(i));
+                return this.rechazar(Resultado.SIN_CUPO, ids, llena);
+            }
+            inscritas[i] = materia.claveMateria();
+        }
+        for (int idMateria : inscritas) {
+            alumno.inscribirMateria(idMateria);
+        }
+        this.dbMaterias.registrarAltas(numCuenta, inscritas);
+        this.dbAlumnos.registrarAltas(numCuenta, inscritas);
+        log.sendInfo(() -> inscritas.length + " materias " + nombres(materias, pendientes)
+                + " dadas de alta por el alumno " + alumno.getNombre() + " (" + alumno.getNumCuenta() + ").");
+        return new ResultadoLote(Resultado.INSCRITO, inscritas);
+    }
+
+    private ResultadoLote darBajaVarias(int[] ids, Materia[] materias, Alumno alumno) {
+        int numCuenta = alumno.claveCuenta();
+        IntSet inexistentes = new IntSet();
+        IntSet pendientes = new IntSet();
+        for (int i = 0; i < materias.length; i++) {
+            Materia materia = materias[i];
+            if (materia.claveMateria() == Claves.SIN_CLAVE) {
+                inexistentes.add(i);
+            } else if (alumno.estaInscrito(materia.claveMateria()) && materia.estaInscrito(numCuenta)) {
+                pendientes.add(i);
+            }
+        }
+        if (!inexistentes.isEmpty()) return this.rechazar(Resultado.NO_EXISTE, ids, inexistentes);
+        if (pendientes.isEmpty()) {
+            log.sendInfo("Las materias no están inscritas");
+            return new ResultadoLote(Resultado.NO_INSCRITO, new int[0]);
+        }
+
+        int[] bajas = new int[pendientes.size()];
+        for (int i = 0; i < pendientes.size(); i++) {
+            Materia materia = materias[pendientes.get(i)];
+            materia.darBajaAlumno(numCuenta);
+            alumno.darBajaMateria(materia.claveMateria());
+            bajas[i] = materia.claveMateria();
+        }
+        this.dbMaterias.registrarBajas(numCuenta, bajas);
+        this.dbAlumnos.registrarBajas(numCuenta, bajas);
+        log.sendInfo(() -> bajas.length + " materias " + nombres(materias, pendientes)
+                + " dadas de baja por el alumno " + alumno.getNombre() + " (" + alumno.getNumCuenta() + ").");
+        return new ResultadoLote(Resultado.DADO_DE_BAJA, bajas);
+    }
+
+    /**
+     * @param posiciones Posiciones en ids de las materias que impiden el cambio
+     */
+    private ResultadoLote rechazar(Resultado resultado, int[] ids, IntSet posiciones) {
+        int[] rechazadas = new int[posiciones.size()];
+        for (int i = 0; i < posiciones.size(); i++) {
+            rechazadas[i] = ids[posiciones.get(i)];
+        }
+        log.sendInfo(() -> "No se cambió ninguna materia: " + resultado + " " + Arrays.toString(rechazadas));
+        return new ResultadoLote(resultado, rechazadas);
+    }
+
+    private static String nombres(Materia[] materias, IntSet posiciones) {
+        StringBuilder nombres = new StringBuilder();
+        for (int i = 0; i < posiciones.size(); i++) {
+            Materia materia = materias[posiciones.get(i)];
+            nombres.append(i == 0 ? "" : ", ").append(materia.getNombre()).append(" (").append(materia.getIdMateria()).append(")");
+        }
+        return nombres.toString();
+    }
+
+    private Resultado inscribir(Materia materia, Alumno alumno, boolean esperar) {
+        int idMateria = materia.claveMateria();
+        int numCuenta = alumno.claveCuenta();
+        if (alumno.estaInscrito(idMateria) || materia.estaInscrito(numCuenta)) {
+            log.sendInfo("La materia ya está inscrita");
+            return Resultado.YA_INSCRITO;
+        }
+
+        // Los que ya esperan tienen preferencia sobre los lugares que se liberen
+        if (materia.hayEnEspera() || !materia.inscribirConCupo(numCuenta)) {
+            if (!esperar) {
+                log.sendInfo("La materia no tiene cupo");
+                return Resultado.SIN_CUPO;
+            }
+            if (materia.ponerEnEspera(numCuenta)) {
+                this.dbMaterias.registrarEspera(materia, numCuenta);
+            }
+            log.sendInfo(() -> "Alumno " + alumno.getNumCuenta() + " en la lista de espera de la materia "
+                    + materia.getIdMateria() + ", lugar " + materia.lugarEnEspera(numCuenta) + ".");
+            return Resultado.EN_ESPERA;
+        }
+        alumno.inscribirMateria(idMateria);
+        this.dbMaterias.registrarAlta(idMateria, numCuenta);
+        this.dbAlumnos.registrarAlta(idMateria, numCuenta);
+        log.sendInfo(() -> "Materia " + materia.getNombre() + " (" + materia.getIdMateria()
+                + ") dada de alta por el alumno " + alumno.getNombre() + " (" + alumno.getNumCuenta() + ").");
+        return Resultado.INSCRITO;
+    }
+
+    private Resultado darBaja(Materia materia, Alumno alumno) {
+        int idMateria = materia.claveMateria();
+        int numCuenta = alumno.claveCuenta();
+        if (!alumno.estaInscrito(idMateria) || !materia.estaInscrito(numCuenta)) {
+            if (materia.quitarDeEspera(numCuenta)) {
+                this.dbMaterias.registrarSalidaEspera(materia, numCuenta);
+                log.sendInfo(() -> "Alumno " + alumno.getNumCuenta() + " fuera de la lista de espera de la materia "
+                        + materia.getIdMateria() + ".");
+                return Resultado.DADO_DE_BAJA;
+            }
+            log.sendInfo("La materia no está inscrita");
+            return Resultado.NO_INSCRITO;
+        }
+
+        alumno.darBajaMateria(idMateria);
+        materia.darBajaAlumno(numCuenta);
+        this.dbMaterias.registrarBaja(idMateria, numCuenta);
+        this.dbAlumnos.registrarBaja(idMateria, numCuenta);
+        log.sendInfo(() -> "Materia " + materia.getNombre() + " (" + materia.getIdMateria()
+                + ") dada de baja por el alumno " + alumno.getNombre() + " (" + alumno.getNumCuenta() + ").");
+        return Resultado.DADO_DE_BAJA;
+    }
+
+    /**
+     * Inscribe a los primeros de la lista de espera mientras la materia tenga lugar. Se llama
+     * con el bloqueo de la materia tomado y sin el de ningún alumno; toma el de cada alumno que
+     * inscribe. Los que ya no existen o ya están inscritos solo salen de la lista.
+     */
+    private void promover(Materia materia) {
+        int idMateria = materia.claveMateria();
+        while (materia.cupoDisponible() > 0 && materia.hayEnEspera()) {
+            int numCuenta = materia.primeroEnEspera();
+            Lock bloqueoAlumno = this.dbAlumnos.bloqueoAlumno(numCuenta);
+            bloqueoAlumno.lock();
+            try {
+                materia.quitarDeEspera(numCuenta);
+                this.dbMaterias.registrarSalidaEspera(materia, numCuenta);
+                Alumno alumno = this.dbAlumnos.readAlumno(numCuenta);
+                if (alumno.claveCuenta() == Claves.SIN_CLAVE || alumno.estaInscrito(idMateria)
+                        || !materia.inscribirConCupo(numCuenta)) {
+                    continue;
+                }
+                alumno.inscribirMateria(idMateria);
+                this.dbMaterias.registrarAlta(idMateria, numCuenta);
+                this.dbAlumnos.registrarAlta(idMateria, numCuenta);
+                log.sendInfo(() -> "Alumno " + alumno.getNombre() + " (" + alumno.getNumCuenta()
+                        + ") inscrito desde la lista de espera de la materia " + materia.getNombre()
+                        + " (" + materia.getIdMateria() + ").");
+            } finally {
+                bloqueoAlumno.unlock();
+            }
+        }
+    }
+}
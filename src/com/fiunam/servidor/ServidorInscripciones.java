@@ -0,0 +1,416 @@
+package com.fiunam.servidor;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.databases.Persistencia;
+import com.fiunam.logger.Logger;
+import com.fiunam.materias.Materia;
+import com.fiunam.materias.ServicioInscripciones;
+import com.fiunam.materias.ServicioInscripciones.Resultado;
+import com.fiunam.users.Alumno;
+import com.fiunam.util.Claves;
+import com.fiunam.util.Hilos;
+import com.fiunam.util.TextoJson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Servidor HTTP (solo en localhost) para que muchos alumnos se inscriban al mismo tiempo sin
+ * la interfaz de texto. Usa el servidor incluido en el JDK y corre cada solicitud en su propio
+ * hilo ({@link Hilos#porTarea(String)}, virtual si la máquina virtual los tiene), así una
+ * solicitud que espera el bloqueo de una materia o a que se guarden los archivos no detiene a
+ * las demás.
+ * <p>
+ * Los parámetros se envían en la URL o en el cuerpo como formulario
+ * (application/x-www-form-urlencoded) y las respuestas son json:
+ * <ul>
+ *     <li>POST /login (usuario, password): inicia sesión como alumno, retorna la clave de la
+ *     sesión que se envía en las demás solicitudes como "sesion"</li>
+ *     <li>POST /logout (sesion)</li>
+ *     <li>GET /materias (area opcional): catálogo de materias con sus lugares libres</li>
+ *     <li>GET /materias/ID/alumnos (sesion): alumnos inscritos y lista de espera de una materia</li>
+ *     <li>POST /alta (sesion, materia, espera opcional): inscribe al alumno de la sesión;
+ *     materia puede ser una lista separada por comas, que se inscriben todas o ninguna
+ *     ({@link ServicioInscripciones#altas(int, int[])}). Con espera=true y una sola materia
+ *     entra a la lista de espera si no hay lugar</li>
+ *     <li>POST /baja (sesion, materia): igual, para las bajas</li>
+ * </ul>
+ * Las altas y bajas se hacen con {@link ServicioInscripciones}, y la respuesta se envía
+ * hasta que el cambio está en el disco ({@link Persistencia#guardar}), por lo que las
+ * solicitudes que llegan juntas se guardan en el mismo lote.
+ */
+public class ServidorInscripciones {
+    private static final Logger log = new Logger(ServidorInscripciones.class);
+    private static final int CONEXIONES_EN_ESPERA = 4_096;
+
+    private final DatabaseMaterias dbMaterias;
+    private final DatabaseAlumnos dbAlumnos;
+    private final ServicioInscripciones servicio;
+    /** Clave de sesión -> número de cuenta */
+    private final ConcurrentHashMap<String, Integer> sesiones = new ConcurrentHashMap<>();
+    private final SecureRandom azar = new SecureRandom();
+    private HttpServer servidor;
+    private ExecutorService hilos;
+
+    /**
+     * @param dbMaterias Base de datos de las materias
+     * @param dbAlumnos  Base de datos de los alumnos
+     */
+    public ServidorInscripciones(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos) {
+        this.dbMaterias = dbMaterias;
+        this.dbAlumnos = dbAlumnos;
+        this.servicio = new ServicioInscripciones(dbMaterias, dbAlumnos);
+    }
+
+    /**
+     * Comienza a recibir solicitudes en localhost
+     *
+     * @param puerto Puerto, 0 para usar cualquiera libre (ver {@link #getPuerto()})
+     * @throws IOException Si no se puede abrir el puerto
+     */
+    public synchronized void iniciar(int puerto) throws IOException {
+        if (this.servidor != null) throw new IllegalStateException("El servidor ya está iniciado");
+
+        // El servidor del JDK cierra las conexiones inactivas que pasan de 200, y los clientes
+        // que las reutilizan reciben la conexión cerrada; se permite una por alumno conectado
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(CONEXIONES_EN_ESPERA));
+        }
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto),
+                CONEXIONES_EN_ESPERA);
+        servidor.createContext("/login", this.atender("POST", this::login));
+        servidor.createContext("/logout", this.atender("POST", this::logout));
+        servidor.createContext("/materias", this.atender("GET", this::materias));
+        servidor.createContext("/alta", this.atender("POST", solicitud -> this.cambiar(solicitud, true)));
+        servidor.createContext("/baja", this.atender("POST", solicitud -> this.cambiar(solicitud, false)));
+        this.hilos = Hilos.porTarea("servidor");
+        servidor.setExecutor(this.hilos);
+        servidor.start();
+        this.servidor = servidor;
+        log.sendInfo("Servidor de inscripciones en http://localhost:%d (%s)", this.getPuerto(),
+                Hilos.hayVirtuales() ? "hilos virtuales" : "hilos del sistema");
+    }
+
+    /**
+     * Deja de recibir solicitudes, espera a que terminen las que están en curso (hasta
+     * un segundo) y a que se guarden los cambios.
+     */
+    public synchronized void detener() {
+        if (this.servidor == null) return;
+
+        this.servidor.stop(1);
+        this.hilos.shutdown();
+        this.servidor = null;
+        this.sesiones.clear();
+        Persistencia.vaciar();
+        log.sendInfo("Servidor de inscripciones detenido");
+    }
+
+    /**
+     * @return Puerto en el que recibe solicitudes
+     */
+    public synchronized int getPuerto() {
+        if (this.servidor == null) throw new IllegalStateException("El servidor no está iniciado");
+        return this.servidor.getAddress().getPort();
+    }
+
+    /**
+     * @return Número de sesiones abiertas
+     */
+    public int totalSesiones() {
+        return this.sesiones.size();
+    }
+
+    /**
+     * Atiende una solicitud ya validada
+     */
+    @FunctionalInterface
+    private interface Accion {
+        Respuesta atender(Solicitud solicitud) throws IOException;
+    }
+
+    /**
+     * Parámetros de una solicitud y ruta pedida
+     */
+    private static final class Solicitud {
+        private final String ruta;
+        private final Map<String, String> parametros;
+
+        Solicitud(String ruta, Map<String, String> parametros) {
+            this.ruta = ruta;
+            this.parametros = parametros;
+        }
+
+        String parametro(String nombre) {
+            return this.parametros.get(nombre);
+        }
+    }
+
+    /**
+     * Código HTTP y cuerpo json de una respuesta
+     */
+    private static final class Respuesta {
+        private final int codigo;
+        private final String json;
+
+        Respuesta(int codigo, String json) {
+            this.codigo = codigo;
+            this.json = json;
+        }
+
+        static Respuesta error(int codigo, String mensaje) {
+            StringBuilder json = new StringBuilder("{\"error\":");
+            TextoJson.agregar(json, mensaje);
+            return new Respuesta(codigo, json.append('}').toString());
+        }
+    }
+
+    private HttpHandler atender(String metodo, Accion accion) {
+        return intercambio -> {
+            Respuesta respuesta;
+            try {
+                if (!intercambio.getRequestMethod().equals(metodo)) {
+                    intercambio.getResponseHeaders().set("Allow", metodo);
+                    respuesta = Respuesta.error(405, "Se esperaba " + metodo);
+                } else {
+                    respuesta = accion.atender(leer(intercambio));
+                }
+            } catch (IOException | RuntimeException e) {
+                log.sendError(() -> Arrays.toString(e.getStackTrace()) + " | " + e.getMessage());
+                respuesta = Respuesta.error(500, "Error interno");
+            }
+
+            byte[] cuerpo = respuesta.json.getBytes(StandardCharsets.UTF_8);
+            intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            intercambio.sendResponseHeaders(respuesta.codigo, cuerpo.length);
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        };
+    }
+
+    private static Solicitud leer(HttpExchange intercambio) throws IOException {
+        Map<String, String> parametros = new HashMap<>();
+        agregarParametros(parametros, intercambio.getRequestURI().getRawQuery());
+        byte[] cuerpo = intercambio.getRequestBody().readAllBytes();
+        if (cuerpo.length > 0) {
+            agregarParametros(parametros, new String(cuerpo, StandardCharsets.UTF_8));
+        }
+        return new Solicitud(intercambio.getRequestURI().getPath(), parametros);
+    }
+
+    private static void agregarParametros(Map<String, String> parametros, String formulario) {
+        if (formulario == null || formulario.isEmpty()) return;
+
+        for (String par : formulario.split("&")) {
+            int igual = par.indexOf('=');
+            String nombre = igual < 0 ? par : par.substring(0, igual);
+            String valor = igual < 0 ? "" : par.substring(igual + 1);
+            parametros.put(URLDecoder.decode(nombre, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+    }
+
+    private Respuesta login(Solicitud solicitud) {
+        String usuario = solicitud.parametro("usuario");
+        String password = solicitud.parametro("password");
+        if (usuario == null || password == null) return Respuesta.error(400, "Faltan usuario o password");
+
+        Alumno alumno;
+        Lock registros = this.dbAlumnos.bloqueoRegistros();
+        registros.lock();
+        try {
+            alumno = this.dbAlumnos.readAlumno(usuario, password);
+        } finally {
+            registros.unlock();
+        }
+        if (alumno.getUsername() == null) return Respuesta.error(401, "Usuario o contraseña incorrectos");
+
+        byte[] bytes = new byte[18];
+        this.azar.nextBytes(bytes);
+        String sesion = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        this.sesiones.put(sesion, alumno.claveCuenta());
+
+        StringBuilder json = new StringBuilder("{\"sesion\":");
+        TextoJson.agregar(json, sesion);
+        json.append(",\"numCuenta\":");
+        TextoJson.agregar(json, alumno.getNumCuenta());
+        json.append(",\"nombre\":");
+        TextoJson.agregar(json, alumno.getNombre());
+        return new Respuesta(200, json.append('}').toString());
+    }
+
+    private Respuesta logout(Solicitud solicitud) {
+        String sesion = solicitud.parametro("sesion");
+        if (sesion == null || this.sesiones.remove(sesion) == null) return Respuesta.error(401, "Sesión no válida");
+        return new Respuesta(200, "{}");
+    }
+
+    private Respuesta materias(Solicitud solicitud) {
+        String[] partes = solicitud.ruta.split("/");
+        if (partes.length <= 2) return this.catalogo(solicitud.parametro("area"));
+        if (partes.length == 4 && partes[3].equals("alumnos")) {
+            if (this.cuentaDe(solicitud) == null) return Respuesta.error(401, "Sesión no válida");
+            return this.lista(Claves.aEntero(partes[2]));
+        }
+        return Respuesta.error(404, "No existe " + solicitud.ruta);
+    }
+
+    private Respuesta catalogo(String area) {
+        StringBuilder json = new StringBuilder("[");
+        Lock registros = this.dbMaterias.bloqueoRegistros();
+        registros.lock();
+        try {
+            List<Materia> materias = area != null ? this.dbMaterias.getMaterias(area) : this.dbMaterias.getCopiaMaterias();
+            for (Materia materia : materias) {
+                if (json.length() > 1) json.append(',');
+                json.append("{\"idMateria\":");
+                TextoJson.agregar(json, materia.getIdMateria());
+                json.append(",\"nombre\":");
+                TextoJson.agregar(json, materia.getNombre());
+                json.append(",\"grupo\":").append(materia.getGrupo());
+                json.append(",\"profesor\":");
+                TextoJson.agregar(json, materia.getProfesor());
+                json.append(",\"area\":");
+                TextoJson.agregar(json, materia.getArea());
+                json.append(",\"cupo\":").append(materia.getCupo());
+                json.append(",\"disponibles\":").append(materia.cupoDisponible());
+                json.append(",\"enEspera\":").append(materia.hayEnEspera()).append('}');
+            }
+        } finally {
+            registros.unlock();
+        }
+        return new Respuesta(200, json.append(']').toString());
+    }
+
+    private Respuesta lista(int idMateria) {
+        StringBuilder json = new StringBuilder();
+        // Mismo orden de bloqueos que ServicioInscripciones
+        Lock registrosMaterias = this.dbMaterias.bloqueoRegistros();
+        Lock registrosAlumnos = this.dbAlumnos.bloqueoRegistros();
+        registrosMaterias.lock();
+        registrosAlumnos.lock();
+        try {
+            Materia materia = this.dbMaterias.readMateria(idMateria);
+            if (materia.claveMateria() == Claves.SIN_CLAVE) return Respuesta.error(404, "La materia no existe");
+
+            int[] inscritos;
+            int[] espera;
+            Lock bloqueoMateria = this.dbMaterias.bloqueoMateria(idMateria);
+            bloqueoMateria.lock();
+            try {
+                inscritos = materia.cuentasAlumnos();
+                espera = materia.cuentasEnEspera();
+            } finally {
+                bloqueoMateria.unlock();
+            }
+
+            json.append("{\"idMateria\":");
+            TextoJson.agregar(json, materia.getIdMateria());
+            json.append(",\"nombre\":");
+            TextoJson.agregar(json, materia.getNombre());
+            json.append(",\"cupo\":").append(materia.getCupo());
+            json.append(",\"alumnos\":");
+            this.alumnos(json, inscritos);
+            json.append(",\"espera\":");
+            this.alumnos(json, espera);
+        } finally {
+            registrosAlumnos.unlock();
+            registrosMaterias.unlock();
+        }
+        return new Respuesta(200, json.append('}').toString());
+    }
+
+    private void alumnos(StringBuilder json, int[] cuentas) {
+        json.append('[');
+        for (int i = 0; i < cuentas.length; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"numCuenta\":");
+            TextoJson.agregar(json, Claves.numCuenta(cuentas[i]));
+            json.append(",\"nombre\":");
+            TextoJson.agregar(json, this.dbAlumnos.readAlumno(cuentas[i]).getNombre());
+            json.append('}');
+        }
+        json.append(']');
+    }
+
+    private Respuesta cambiar(Solicitud solicitud, boolean alta) {
+        Integer numCuenta = this.cuentaDe(solicitud);
+        if (numCuenta == null) return Respuesta.error(401, "Sesión no válida");
+        String materia = solicitud.parametro("materia");
+        if (materia == null || materia.isEmpty()) return Respuesta.error(400, "Falta materia");
+
+        int[] ids = Arrays.stream(materia.split(",")).mapToInt(id -> Claves.aEntero(id.trim())).toArray();
+        boolean espera = Boolean.parseBoolean(solicitud.parametro("espera"));
+        if (espera && (!alta || ids.length != 1)) {
+            return Respuesta.error(400, "La lista de espera es solo para el alta de una materia");
+        }
+
+        Resultado resultado;
+        int[] materias;
+        if (ids.length == 1) {
+            resultado = !alta ? this.servicio.baja(ids[0], numCuenta)
+                    : espera ? this.servicio.altaOEspera(ids[0], numCuenta) : this.servicio.alta(ids[0], numCuenta);
+            materias = ids;
+        } else {
+            ServicioInscripciones.ResultadoLote lote = alta ? this.servicio.altas(numCuenta, ids) : this.servicio.bajas(numCuenta, ids);
+            resultado = lote.getResultado();
+            materias = lote.getMaterias();
+        }
+
+        if (resultado == Resultado.INSCRITO || resultado == Resultado.DADO_DE_BAJA || resultado == Resultado.EN_ESPERA) {
+            try {
+                Persistencia.guardar(this.dbMaterias, this.dbAlumnos).join();
+            } catch (CompletionException e) {
+                // Ya se registró al escribir el lote, el cambio sigue en la bitácora en memoria
+                return Respuesta.error(500, "No se pudo guardar el cambio");
+            }
+        }
+
+        StringBuilder json = new StringBuilder("{\"resultado\":");
+        TextoJson.agregar(json, resultado.name());
+        json.append(",\"materias\":[");
+        for (int i = 0; i < materias.length; i++) {
+            if (i > 0) json.append(',');
+            TextoJson.agregar(json, Claves.idMateria(materias[i]));
+        }
+        json.append(']');
+        if (resultado == Resultado.EN_ESPERA) {
+            json.append(",\"lugar\":").append(this.lugarEnEspera(ids[0], numCuenta));
+        }
+        return new Respuesta(resultado == Resultado.NO_EXISTE ? 404 : 200, json.append('}').toString());
+    }
+
+    private int lugarEnEspera(int idMateria, int numCuenta) {
+        // El índice de materias cambia al agregar o eliminar materias, con el bloqueo exclusivo
+        Lock registros = this.dbMaterias.bloqueoRegistros();
+        registros.lock();
+        try {
+            return this.dbMaterias.readMateria(idMateria).lugarEnEspera(numCuenta);
+        } finally {
+            registros.unlock();
+        }
+    }
+
+    private Integer cuentaDe(Solicitud solicitud) {
+        String sesion = solicitud.parametro("sesion");
+        return sesion != null ? this.sesiones.get(sesion) : null;
+    }
+}
@@ -1,6 +1,12 @@
 package com.fiunam.users;
 
+import com.fiunam.util.Claves;
+import com.fiunam.util.IntSet;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
 
 /**
  * Crea un usuario para un alumno, con su nombre, número de cuenta,
@@ -9,15 +15,17 @@ import java.util.ArrayList;
 public class Alumno extends Usuario {
     private String nombre;
     private int semestre;
-    private String numCuenta;
-    private ArrayList<String> materias;
+    /*
+     * El número de cuenta y los IDs de las materias se guardan como enteros, en el json
+     * se siguen guardando como texto ("numCuenta" y el arreglo "materias").
+     */
+    private int cuenta = Claves.SIN_CLAVE;
+    private final IntSet materiasInscritas = new IntSet();
 
     /**
-     * Constructor vacío de la clase Alumno, inicializa el ArrayList,
-     * esto es necesario aunque no contenga elementos
+     * Constructor vacío de la clase Alumno
      */
     public Alumno() {
-        this.materias = new ArrayList<>();
     }
 
     /**
@@ -30,7 +38,6 @@ public class Alumno extends Usuario {
     public Alumno(String username, String nombre, String password, int semestre) {
         super(username, password);
         this.nombre = nombre;
-        this.materias = new ArrayList<>();
         this.semestre = semestre;
     }
 
@@ -47,8 +54,8 @@ public class Alumno extends Usuario {
         super(username, password);
         this.nombre = nombre;
         this.semestre = semestre;
-        this.numCuenta = numCuenta;
-        this.materias = materias;
+        this.setNumCuenta(numCuenta);
+        this.setMaterias(materias);
     }
 
     public String getNombre() {
@@ -67,32 +74,136 @@ public class Alumno extends Usuario {
         this.semestre = semestre;
     }
 
-    public ArrayList<String> getMaterias() {
+    /**
+     * Lista con los IDs de las materias inscritas, en orden de inscripción (al darse de baja
+     * de una, la última pasa a su lugar). Se crea en cada llamada, se usa para el json; para
+     * consultas usar {@link #estaInscrito(int)}.
+     * @return Lista con los IDs de las materias
+     */
+    public Collection<String> getMaterias() {
+        ArrayList<String> materias = new ArrayList<>(this.materiasInscritas.size());
+        for (int i = 0; i < this.materiasInscritas.size(); i++) {
+            materias.add(Claves.idMateria(this.materiasInscritas.get(i)));
+        }
         return materias;
     }
 
-    public void setMaterias(ArrayList<String> materias) {
-        this.materias = materias;
+    public void setMaterias(Collection<String> materias) {
+        this.materiasInscritas.clear();
+        for (String idMateria : materias) {
+            this.materiasInscritas.add(Claves.aEntero(idMateria));
+        }
+    }
+
+    /**
+     * @return Número de materias inscritas
+     */
+    public int totalMaterias() {
+        return this.materiasInscritas.size();
+    }
+
+    /**
+     * @return Copia de los IDs de las materias inscritas, en orden de inscripción (al darse de
+     * baja de una, la última pasa a su lugar)
+     */
+    public int[] idsMaterias() {
+        return this.materiasInscritas.toArray();
+    }
+
+    /**
+     * Comprueba si el alumno tiene inscrita una materia
+     * @param idMateria ID de la materia
+     * @return true si está inscrita
+     */
+    public boolean estaInscrito(int idMateria) {
+        return this.materiasInscritas.contains(idMateria);
+    }
+
+    /**
+     * Comprueba si el alumno tiene inscrita una materia, a partir del ID en texto
+     * @param idMateria ID de la materia
+     * @return true si está inscrita
+     */
+    public boolean estaInscrito(String idMateria) {
+        return this.estaInscrito(Claves.aEntero(idMateria));
+    }
+
+    /**
+     * Agrega una materia a la lista de materias del alumno
+     * @param idMateria ID de la materia
+     * @return true si se agregó; false si ya estaba inscrita
+     */
+    public boolean inscribirMateria(int idMateria) {
+        return this.materiasInscritas.add(idMateria);
+    }
+
+    /**
+     * Elimina una materia de la lista de materias del alumno
+     * @param idMateria ID de la materia
+     * @return true si se eliminó; false si no estaba inscrita
+     */
+    public boolean darBajaMateria(int idMateria) {
+        return this.materiasInscritas.remove(idMateria);
     }
 
     public String getNumCuenta() {
-        return numCuenta;
+        return Claves.numCuenta(this.cuenta);
     }
 
     public void setNumCuenta(String numCuenta) {
-        this.numCuenta = numCuenta;
+        this.cuenta = Claves.aEntero(numCuenta);
+    }
+
+    /**
+     * @return Número de cuenta como entero, {@link Claves#SIN_CLAVE} si no tiene
+     */
+    public int claveCuenta() {
+        return this.cuenta;
+    }
+
+    /**
+     * Asigna el número de cuenta a partir de su valor entero
+     * @param numCuenta Número de cuenta
+     */
+    public void asignarCuenta(int numCuenta) {
+        this.cuenta = numCuenta;
+    }
+
+    /**
+     * Copia los datos de otro alumno con el mismo número de cuenta, se usa al recargar la
+     * base de datos para que las referencias a este objeto sigan siendo válidas
+     * @param otro Alumno con los datos leídos del archivo
+     * @return true si algún dato cambió
+     */
+    public boolean actualizarDesde(Alumno otro) {
+        int[] materias = otro.idsMaterias();
+        if (Objects.equals(this.nombre, otro.nombre) && this.semestre == otro.semestre
+                && Objects.equals(this.getUsername(), otro.getUsername())
+                && Objects.equals(this.getPassword(), otro.getPassword())
+                && Arrays.equals(this.idsMaterias(), materias)) {
+            return false;
+        }
+        this.nombre = otro.nombre;
+        this.semestre = otro.semestre;
+        this.setUsername(otro.getUsername());
+        this.setPassword(otro.getPassword());
+        this.materiasInscritas.clear();
+        for (int idMateria : materias) {
+            this.materiasInscritas.add(idMateria);
+        }
+        return true;
     }
 
     @Override
     public String toString() {
         StringBuilder listaMaterias = new StringBuilder();
-        for (int i = 0; i < this.materias.size(); i++) {
+        for (int i = 0; i < this.materiasInscritas.size(); i++) {
             listaMaterias.append("(").append(i + 1).append(") - ");
-            listaMaterias.append(this.materias.get(i)).append("\n");
+            listaMaterias.append(Claves.idMateria(this.materiasInscritas.get(i))).append("\n");
         }
 
         return "ALUMNO: " + this.nombre + " | Password: " + "*".repeat(super.getPassword().length()) + "\n" +
-                "Número de cuenta: " + this.numCuenta + "\n" +
+                "Número de cuenta: " + this.getNumCuenta() + "\n" +
                 "Semestre: " + this.semestre + "\nLista de Materias:" + "\n" +
                 listaMaterias;
     }
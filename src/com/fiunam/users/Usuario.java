@@ -35,6 +35,11 @@ public abstract class Usuario {
         this.password = password;
     }
 
+    /**
+     * @return Nombre completo del usuario
+     */
+    public abstract String getNombre();
+
     public Usuario getCurrentUser(){
         return this;
     }
@@ -0,0 +1,57 @@
+package com.fiunam.util;
+
+/**
+ * Conversión entre la forma numérica interna de los identificadores (número de cuenta,
+ * número de trabajador e ID de materia) y su forma de texto, que solo se usa en el
+ * json y en la interfaz.
+ */
+public final class Claves {
+    /**
+     * Valor para un identificador que no está asignado
+     */
+    public static final int SIN_CLAVE = -1;
+
+    private Claves() {
+    }
+
+    /**
+     * Convierte un identificador de texto a entero
+     *
+     * @param texto Identificador, por ejemplo "0004" o "45901219"
+     * @return El valor numérico, o {@link #SIN_CLAVE} si es null o no es un número válido
+     */
+    public static int aEntero(String texto) {
+        if (texto == null || texto.isEmpty() || texto.length() > 9) return SIN_CLAVE;
+
+        int valor = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9') return SIN_CLAVE;
+            valor = valor * 10 + (c - '0');
+        }
+        return valor;
+    }
+
+    /**
+     * Forma de texto de un número de cuenta (sin ceros a la izquierda)
+     *
+     * @param numCuenta Número de cuenta
+     * @return Texto, o null si no está asignado
+     */
+    public static String numCuenta(int numCuenta) {
+        return numCuenta == SIN_CLAVE ? null : String.valueOf(numCuenta);
+    }
+
+    /**
+     * Forma de texto del ID de una materia, con al menos 4 dígitos (equivalente a "%04d")
+     *
+     * @param idMateria ID de la materia
+     * @return Texto, o null si no está asignado
+     */
+    public static String idMateria(int idMateria) {
+        if (idMateria == SIN_CLAVE) return null;
+
+        String texto = String.valueOf(idMateria);
+        return texto.length() >= 4 ? texto : "0".repeat(4 - texto.length()) + texto;
+    }
+}
@@ -0,0 +1,70 @@
+package com.fiunam.util;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bloqueos por franjas: un número fijo de bloqueos repartidos entre las claves (números de
+ * cuenta o IDs de materia), así se puede bloquear un registro sin crear un bloqueo para cada
+ * uno. Dos claves pueden compartir franja, lo que solo hace que se esperen entre ellas.
+ * <p>
+ * Para tomar varias franjas sin que dos hilos se esperen mutuamente, se toman en orden de
+ * {@link #indice(int)}.
+ */
+public class Franjas {
+    private final ReentrantLock[] bloqueos;
+    private final int mascara;
+
+    /**
+     * @param franjas Número de bloqueos, se redondea a una potencia de 2
+     */
+    public Franjas(int franjas) {
+        int total = Integer.highestOneBit(Math.max(franjas, 1) * 2 - 1);
+        this.bloqueos = new ReentrantLock[total];
+        for (int i = 0; i < total; i++) {
+            this.bloqueos[i] = new ReentrantLock();
+        }
+        this.mascara = total - 1;
+    }
+
+    /**
+     * @return Franja de la clave
+     */
+    public int indice(int clave) {
+        return IntMap.mezclar(clave) & this.mascara;
+    }
+
+    /**
+     * @return Bloqueo de la franja de la clave
+     */
+    public Lock de(int clave) {
+        return this.bloqueos[this.indice(clave)];
+    }
+
+    /**
+     * Bloqueos de varias claves, sin repetir y en el orden en que se deben tomar
+     * @return Bloqueos de las franjas de las claves
+     */
+    public Lock[] de(int[] claves) {
+        int[] indices = new int[claves.length];
+        for (int i = 0; i < claves.length; i++) {
+            indices[i] = this.indice(claves[i]);
+        }
+        Arrays.sort(indices);
+
+        Lock[] bloqueos = new Lock[indices.length];
+        int total = 0;
+        for (int i = 0; i < indices.length; i++) {
+            if (i == 0 || indices[i] != indices[i - 1]) bloqueos[total++] = this.bloqueos[indices[i]];
+        }
+        return Arrays.copyOf(bloqueos, total);
+    }
+
+    /**
+     * @return Bloqueo de una franja, ver {@link #indice(int)}
+     */
+    public Lock franja(int indice) {
+        return this.bloqueos[indice];
+    }
+}
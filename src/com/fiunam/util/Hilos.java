@@ -0,0 +1,64 @@
+package com.fiunam.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecutores con un hilo por tarea. Si la máquina virtual tiene hilos virtuales (Java 21 o
+ * posterior) cada tarea corre en uno, así miles de tareas que esperan (un bloqueo, el disco o
+ * la red) no ocupan un hilo del sistema cada una. El proyecto compila para Java 16, por eso
+ * se buscan con reflexión; en versiones anteriores se usan hilos normales que se reutilizan.
+ */
+public final class Hilos {
+    private static final Method porTareaVirtual = Hilos.buscarHilosVirtuales();
+
+    private Hilos() {
+    }
+
+    private static Method buscarHilosVirtuales() {
+        try {
+            Method metodo = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            // En Java 19 y 20 existe, pero falla si no se activaron las funciones preliminares
+            ((ExecutorService) metodo.invoke(null)).shutdown();
+            return metodo;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true si {@link #porTarea(String)} usa hilos virtuales
+     */
+    public static boolean hayVirtuales() {
+        return porTareaVirtual != null;
+    }
+
+    /**
+     * Crea un ejecutor que corre cada tarea en un hilo virtual nuevo, o si no hay hilos
+     * virtuales, en hilos de un grupo que crece según se necesite (hilos daemon, se llaman
+     * nombre-1, nombre-2, ...).
+     *
+     * @param nombre Nombre de los hilos (solo si no son virtuales)
+     * @return Ejecutor, se debe cerrar con shutdown()
+     */
+    public static ExecutorService porTarea(String nombre) {
+        if (porTareaVirtual != null) {
+            try {
+                return (ExecutorService) porTareaVirtual.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Ya funcionó al buscarlo, no debería fallar
+            }
+        }
+
+        AtomicInteger numero = new AtomicInteger();
+        ThreadFactory fabrica = tarea -> {
+            Thread hilo = new Thread(tarea, nombre + "-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+        return Executors.newCachedThreadPool(fabrica);
+    }
+}
@@ -0,0 +1,129 @@
+package com.fiunam.util;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de claves int a objetos con direccionamiento abierto (sondeo lineal), se usa para
+ * los índices por número de cuenta y por ID de materia sin crear objetos Integer ni
+ * entradas por cada elemento.
+ *
+ * @param <V> Tipo de los valores, no se permiten valores null
+ */
+public class IntMap<V> {
+    private int[] claves;
+    private Object[] valores;
+    private int tamano;
+
+    public IntMap() {
+        this(16);
+    }
+
+    /**
+     * @param capacidadInicial Número de elementos esperado
+     */
+    public IntMap(int capacidadInicial) {
+        int capacidad = Integer.highestOneBit(Math.max(capacidadInicial, 4) * 2 - 1) * 2;
+        this.claves = new int[capacidad];
+        this.valores = new Object[capacidad];
+    }
+
+    /**
+     * Dispersa los bits de la clave, los números de cuenta y los IDs son consecutivos
+     * o cercanos entre sí.
+     */
+    static int mezclar(int clave) {
+        int h = clave * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() {
+        return this.tamano;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int clave) {
+        int mascara = this.claves.length - 1;
+        for (int i = mezclar(clave) & mascara; this.valores[i] != null; i = (i + 1) & mascara) {
+            if (this.claves[i] == clave) return (V) this.valores[i];
+        }
+        return null;
+    }
+
+    public boolean containsKey(int clave) {
+        return this.get(clave) != null;
+    }
+
+    /**
+     * Agrega o reemplaza el valor de una clave
+     *
+     * @return El valor anterior, o null si no existía
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int clave, V valor) {
+        if (valor == null) throw new NullPointerException("IntMap no acepta valores null");
+
+        int mascara = this.claves.length - 1;
+        int i = mezclar(clave) & mascara;
+        for (; this.valores[i] != null; i = (i + 1) & mascara) {
+            if (this.claves[i] == clave) {
+                V anterior = (V) this.valores[i];
+                this.valores[i] = valor;
+                return anterior;
+            }
+        }
+        this.claves[i] = clave;
+        this.valores[i] = valor;
+        if (++this.tamano * 2 > this.claves.length) this.crecer();
+        return null;
+    }
+
+    /**
+     * Elimina una clave, las casillas siguientes se recorren hacia atrás para no
+     * dejar huecos en las secuencias de sondeo.
+     *
+     * @return El valor eliminado, o null si no existía
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int clave) {
+        int mascara = this.claves.length - 1;
+        int i = mezclar(clave) & mascara;
+        while (this.valores[i] != null && this.claves[i] != clave) i = (i + 1) & mascara;
+        if (this.valores[i] == null) return null;
+
+        V eliminado = (V) this.valores[i];
+        int hueco = i;
+        for (int j = (i + 1) & mascara; this.valores[j] != null; j = (j + 1) & mascara) {
+            int ideal = mezclar(this.claves[j]) & mascara;
+            // Se mueve si su posición ideal no está entre el hueco y j (circularmente)
+            if (((j - ideal) & mascara) >= ((j - hueco) & mascara)) {
+                this.claves[hueco] = this.claves[j];
+                this.valores[hueco] = this.valores[j];
+                hueco = j;
+            }
+        }
+        this.valores[hueco] = null;
+        this.tamano--;
+        return eliminado;
+    }
+
+    public void clear() {
+        Arrays.fill(this.valores, null);
+        this.tamano = 0;
+    }
+
+    private void crecer() {
+        int[] clavesAnt = this.claves;
+        Object[] valoresAnt = this.valores;
+        this.claves = new int[clavesAnt.length * 2];
+        this.valores = new Object[valoresAnt.length * 2];
+
+        int mascara = this.claves.length - 1;
+        for (int k = 0; k < clavesAnt.length; k++) {
+            if (valoresAnt[k] == null) continue;
+            int i = mezclar(clavesAnt[k]) & mascara;
+            while (this.valores[i] != null) i = (i + 1) & mascara;
+            this.claves[i] = clavesAnt[k];
+            this.valores[i] = valoresAnt[k];
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.fiunam.util;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto de enteros pensado para las listas de inscripción (IDs de materias de un alumno
+ * y números de cuenta de una materia).
+ * <p>
+ * Los elementos se guardan en un arreglo int[] en orden de inserción, salvo que al eliminar
+ * uno el último pasa a su lugar; así agregar y eliminar no dependen del tamaño. Mientras el
+ * conjunto es pequeño las búsquedas recorren ese arreglo, y a partir de {@link #UMBRAL_TABLA}
+ * elementos se usa además una tabla hash de direccionamiento abierto (sondeo lineal) con la
+ * posición de cada elemento; al eliminar se recorren hacia atrás las casillas que siguen, en
+ * lugar de dejar marcas de borrado.
+ */
+public class IntSet {
+    private static final int UMBRAL_TABLA = 8;
+
+    private int[] elementos;
+    private int tamano;
+    // Posición + 1 de cada elemento en "elementos", 0 indica una casilla vacía
+    private int[] tabla;
+
+    public IntSet() {
+        this.elementos = new int[4];
+    }
+
+    /**
+     * @return Número de elementos
+     */
+    public int size() {
+        return this.tamano;
+    }
+
+    public boolean isEmpty() {
+        return this.tamano == 0;
+    }
+
+    /**
+     * Obtiene el elemento en la posición indicada (orden de inserción, ver {@link #remove(int)})
+     *
+     * @param i Posición
+     * @return Elemento
+     */
+    public int get(int i) {
+        if (i >= this.tamano) throw new IndexOutOfBoundsException(i);
+        return this.elementos[i];
+    }
+
+    public boolean contains(int valor) {
+        return this.posicion(valor) >= 0;
+    }
+
+    /**
+     * Agrega un elemento al final
+     *
+     * @param valor Elemento
+     * @return true si se agregó; false si ya existía
+     */
+    public boolean add(int valor) {
+        if (this.posicion(valor) >= 0) return false;
+
+        if (this.tamano == this.elementos.length) {
+            this.elementos = Arrays.copyOf(this.elementos, this.tamano * 2);
+        }
+        this.elementos[this.tamano++] = valor;
+
+        if (this.tabla != null && this.tamano * 2 > this.tabla.length) {
+            this.reconstruirTabla();
+        } else if (this.tabla != null) {
+            this.insertarEnTabla(valor, this.tamano);
+        } else if (this.tamano > UMBRAL_TABLA) {
+            this.reconstruirTabla();
+        }
+        return true;
+    }
+
+    /**
+     * Elimina un elemento, el último pasa a su lugar
+     *
+     * @param valor Elemento
+     * @return true si se eliminó; false si no existía
+     */
+    public boolean remove(int valor) {
+        int pos = this.posicion(valor);
+        if (pos < 0) return false;
+
+        int ultimo = this.tamano - 1;
+        if (this.tabla != null) {
+            this.quitarDeTabla(this.casilla(pos));
+            if (pos != ultimo) this.tabla[this.casilla(ultimo)] = pos + 1;
+        }
+        this.elementos[pos] = this.elementos[ultimo];
+        this.tamano--;
+        return true;
+    }
+
+    public void clear() {
+        this.tamano = 0;
+        this.tabla = null;
+    }
+
+    /**
+     * @return Copia de los elementos en el orden de {@link #get(int)}
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(this.elementos, this.tamano);
+    }
+
+    private int posicion(int valor) {
+        if (this.tabla == null) {
+            for (int i = 0; i < this.tamano; i++) {
+                if (this.elementos[i] == valor) return i;
+            }
+            return -1;
+        }
+
+        int mascara = this.tabla.length - 1;
+        for (int i = IntMap.mezclar(valor) & mascara; this.tabla[i] != 0; i = (i + 1) & mascara) {
+            if (this.elementos[this.tabla[i] - 1] == valor) return this.tabla[i] - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Casilla de la tabla con la posición indicada de "elementos"
+     */
+    private int casilla(int pos) {
+        int mascara = this.tabla.length - 1;
+        int i = IntMap.mezclar(this.elementos[pos]) & mascara;
+        while (this.tabla[i] != pos + 1) i = (i + 1) & mascara;
+        return i;
+    }
+
+    /**
+     * Vacía una casilla y recorre hacia ella las siguientes que, de otra forma, ya no se
+     * encontrarían desde su casilla inicial
+     */
+    private void quitarDeTabla(int hueco) {
+        int mascara = this.tabla.length - 1;
+        for (int i = (hueco + 1) & mascara; this.tabla[i] != 0; i = (i + 1) & mascara) {
+            int inicial = IntMap.mezclar(this.elementos[this.tabla[i] - 1]) & mascara;
+            // Se recorre si su casilla inicial no está entre el hueco (sin incluirlo) e i
+            if (((i - inicial) & mascara) >= ((i - hueco) & mascara)) {
+                this.tabla[hueco] = this.tabla[i];
+                hueco = i;
+            }
+        }
+        this.tabla[hueco] = 0;
+    }
+
+    private void insertarEnTabla(int valor, int posicionMasUno) {
+        int mascara = this.tabla.length - 1;
+        int i = IntMap.mezclar(valor) & mascara;
+        while (this.tabla[i] != 0) i = (i + 1) & mascara;
+        this.tabla[i] = posicionMasUno;
+    }
+
+    private void reconstruirTabla() {
+        int capacidad = Integer.highestOneBit(Math.max(this.tamano, 2) * 4 - 1);
+        this.tabla = new int[capacidad];
+        for (int i = 0; i < this.tamano; i++) {
+            this.insertarEnTabla(this.elementos[i], i + 1);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.fiunam.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Escritura de cadenas json entre comillas, la usan los archivos de la base de datos, el
+ * formato JSON del Logger y las respuestas del servidor. Los escapes son los mismos que los
+ * de flexjson, así los archivos que se guardan no cambian respecto a los que escribía.
+ */
+public final class TextoJson {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private TextoJson() {
+    }
+
+    /**
+     * Escribe la cadena entre comillas, o null
+     *
+     * @param salida Donde se escribe
+     * @param valor  Cadena, puede ser null
+     */
+    public static void escribir(Appendable salida, String valor) throws IOException {
+        if (valor == null) {
+            salida.append("null");
+            return;
+        }
+
+        salida.append('"');
+        int inicio = 0;
+        for (int i = 0; i < valor.length(); i++) {
+            String escape = escape(valor.charAt(i));
+            if (escape != null) {
+                copiar(salida, valor, inicio, i);
+                salida.append(escape);
+                inicio = i + 1;
+            }
+        }
+        copiar(salida, valor, inicio, valor.length());
+        salida.append('"');
+    }
+
+    /**
+     * Igual que {@link #escribir(Appendable, String)}, para un StringBuilder (que no lanza
+     * IOException)
+     */
+    public static void agregar(StringBuilder json, String valor) {
+        try {
+            escribir(json, valor);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return El escape del carácter, o null si se escribe tal cual
+     */
+    private static String escape(char c) {
+        return switch (c) {
+            case '"' -> "\\u0022";
+            case '\\' -> "\\\\";
+            case '&' -> "\\u0026";
+            case '\'' -> "\\u0027";
+            case '<' -> "\\u003c";
+            case '>' -> "\\u003e";
+            case '\b' -> "\\b";
+            case '\t' -> "\\t";
+            case '\n' -> "\\n";
+            case '\f' -> "\\f";
+            case '\r' -> "\\r";
+            default -> Character.isISOControl(c) ? unicode(c) : null;
+        };
+    }
+
+    /**
+     * Copia una parte de la cadena sin crear otra (Writer.append(CharSequence, int, int) la crea)
+     */
+    private static void copiar(Appendable salida, String valor, int inicio, int fin) throws IOException {
+        if (inicio == fin) return;
+        if (salida instanceof Writer escritor) {
+            escritor.write(valor, inicio, fin - inicio);
+        } else {
+            salida.append(valor, inicio, fin);
+        }
+    }
+
+    private static String unicode(char c) {
+        return new String(new char[]{'\\', 'u', HEX[c >> 12 & 0xF], HEX[c >> 8 & 0xF], HEX[c >> 4 & 0xF], HEX[c & 0xF]});
+    }
+}
@@ -0,0 +1,81 @@
+package test.benchmarks;
+
+import com.fiunam.databases.ConvertidorArchivos;
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.materias.AdminMateria;
+import com.fiunam.materias.Materia;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compara el costo de guardar después de cada inscripción con 200 000 alumnos en json (bitácora
+ * y json completo cada "fiunam.db.bitacora.max" registros) contra el almacén de registros
+ * (alumnos.kv, solo se agregan los registros que cambiaron). Conviene ejecutar cada formato
+ * por separado:
+ * java -Xmx4g -cp ".:../lib/*" test.benchmarks.BenchAlmacenRegistros json
+ * java -Xmx4g -cp ".:../lib/*" test.benchmarks.BenchAlmacenRegistros registros
+ */
+public class BenchAlmacenRegistros {
+    private static final int ALUMNOS = 200_000;
+    private static final int MATERIAS = 50;
+    private static final int INSCRIPCIONES = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        Path directorio = Files.createTempDirectory("bench-registros");
+        String modo = args.length > 0 ? args[0] : "registros";
+        System.setProperty("fiunam.db.dir", directorio.toString());
+
+        BenchCargaAlumnos.generar(directorio.resolve("alumnos.json"), ALUMNOS);
+        Files.writeString(directorio.resolve("materias.json"), "[]");
+        DatabaseMaterias generadas = new DatabaseMaterias();
+        for (int i = 0; i < MATERIAS; i++) {
+            generadas.agregarMateria(new Materia("Materia " + i, 1 + i % 4, "Profesor " + i, AdminMateria.getAreas()[i % 4]));
+        }
+        generadas.guardarInstantanea();
+        if (modo.equals("registros")) {
+            ConvertidorArchivos.aRegistros(directorio);
+            System.setProperty("fiunam.db.formato.alumnos", "REGISTROS");
+            System.setProperty("fiunam.db.formato.materias", "REGISTROS");
+        }
+
+        DatabaseAlumnos[] dbAlumnos = new DatabaseAlumnos[1];
+        BenchCargaAlumnos.medir(modo, () -> {
+            dbAlumnos[0] = new DatabaseAlumnos();
+            return dbAlumnos[0].getAlumnos().size();
+        });
+        DatabaseMaterias dbMaterias = new DatabaseMaterias();
+
+        Random random = new Random(5);
+        long guardar = 0;
+        long peor = 0;
+        for (int i = 0; i < INSCRIPCIONES; i++) {
+            int cuenta = 10_000_000 + random.nextInt(ALUMNOS);
+            int materia = 1 + random.nextInt(MATERIAS);
+            AdminMateria.altaMateria(dbMaterias, dbAlumnos[0], materia, cuenta);
+
+            long inicio = System.nanoTime();
+            dbAlumnos[0].saveDB();
+            dbMaterias.saveDB();
+            long duracion = System.nanoTime() - inicio;
+            guardar += duracion;
+            peor = Math.max(peor, duracion);
+        }
+
+        System.out.printf("%,d inscripciones: saveDB promedio %,d µs, peor %,d ms | json completo %d veces, por registros/bitácora %d veces%n",
+                INSCRIPCIONES, guardar / INSCRIPCIONES / 1_000, peor / 1_000_000,
+                dbAlumnos[0].getGuardadosRealizados(), dbAlumnos[0].getGuardadosEnBitacora());
+        try (var archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.sorted().toList()) {
+                System.out.printf("  %s: %,d KB%n", archivo.getFileName(), Files.size(archivo) / 1024);
+            }
+        }
+
+        try (var archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) Files.delete(archivo);
+        }
+        Files.delete(directorio);
+    }
+}
@@ -0,0 +1,73 @@
+package test.benchmarks;
+
+import com.fiunam.databases.ConvertidorArchivos;
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.users.Alumno;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compara DatabaseAlumnos con 500 000 alumnos en formato binario cargando la lista completa
+ * contra el modo perezoso (solo el índice de claves y una caché LRU): tiempo de arranque,
+ * heap ocupado después de cargar y costo de buscar alumnos por número de cuenta y de iniciar
+ * sesión. Conviene ejecutar cada modo por separado:
+ * java -Xmx4g -cp ".:../lib/*" test.benchmarks.BenchAlumnosPerezosos completo
+ * java -Xmx4g -cp ".:../lib/*" test.benchmarks.BenchAlumnosPerezosos perezoso
+ */
+public class BenchAlumnosPerezosos {
+    private static final int ALUMNOS = 500_000;
+    private static final int BUSQUEDAS = 100_000;
+    private static final int SESIONES = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        Path directorio = Files.createTempDirectory("bench-perezosos");
+        String modo = args.length > 0 ? args[0] : "perezoso";
+        System.setProperty("fiunam.db.dir", directorio.toString());
+        System.setProperty("fiunam.db.formato.alumnos", "BINARIO");
+        System.setProperty("fiunam.db.alumnos.perezoso", String.valueOf(modo.equals("perezoso")));
+
+        BenchCargaAlumnos.generar(directorio.resolve("alumnos.json"), ALUMNOS);
+        Files.writeString(directorio.resolve("materias.json"), "[]");
+        ConvertidorArchivos.aBinario(directorio);
+
+        DatabaseAlumnos[] db = new DatabaseAlumnos[1];
+        BenchCargaAlumnos.medir(modo, () -> {
+            db[0] = new DatabaseAlumnos();
+            return ALUMNOS;
+        });
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.out.printf("Heap ocupado después de cargar: ~%,d MB, alumnos en memoria: %,d%n",
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024), db[0].alumnosEnMemoria());
+
+        // Los números de cuenta del archivo generado son consecutivos desde 10 000 000; la
+        // mitad de las búsquedas va a un grupo de 1 000 alumnos, como los que usan el sistema
+        Random random = new Random(3);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < BUSQUEDAS; i++) {
+            int n = random.nextBoolean() ? random.nextInt(1_000) : random.nextInt(ALUMNOS);
+            if (db[0].readAlumno(10_000_000 + n).claveCuenta() < 0) throw new AssertionError("No existe " + n);
+        }
+        long busquedas = System.nanoTime() - inicio;
+
+        inicio = System.nanoTime();
+        for (int i = 0; i < SESIONES; i++) {
+            int n = random.nextInt(ALUMNOS);
+            Alumno alumno = db[0].readAlumno("alumno" + n, "pwd" + n);
+            if (alumno.claveCuenta() != 10_000_000 + n) throw new AssertionError("Sesión inválida " + n);
+        }
+        long sesiones = System.nanoTime() - inicio;
+
+        System.gc();
+        System.out.printf("Búsqueda por cuenta: %,d ns | inicio de sesión: %,d ns | heap: ~%,d MB, alumnos en memoria: %,d%n",
+                busquedas / BUSQUEDAS, sesiones / SESIONES,
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024), db[0].alumnosEnMemoria());
+
+        try (var archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) Files.delete(archivo);
+        }
+        Files.delete(directorio);
+    }
+}
@@ -0,0 +1,117 @@
+package test.benchmarks;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.users.Alumno;
+import flexjson.JSONDeserializer;
+import flexjson.JSONSerializer;
+
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Mide el arranque de DatabaseAlumnos con un archivo generado de 500 000 alumnos, comparando
+ * el JSONDeserializer de flexjson (la carga anterior) con el lector por tokens de initDB, y
+ * el guardado con el JSONSerializer (todo el documento en un String) contra el escritor por partes.
+ * Para que el pico de memoria de un modo no afecte al otro conviene ejecutar cada uno por separado:
+ * java -Xmx4g -cp ".:../lib/*" test.benchmarks.BenchCargaAlumnos flexjson
+ * java -Xmx4g -cp ".:../lib/*" test.benchmarks.BenchCargaAlumnos tokens
+ */
+public class BenchCargaAlumnos {
+    private static final int ALUMNOS = 500_000;
+
+    public static void main(String[] args) throws Exception {
+        Path directorio = Files.createTempDirectory("bench-carga");
+        System.setProperty("fiunam.db.dir", directorio.toString());
+        Path archivo = directorio.resolve("alumnos.json");
+        generar(archivo, ALUMNOS);
+        System.out.printf("Archivo: %,d alumnos, %,d MB%n", ALUMNOS, Files.size(archivo) / (1024 * 1024));
+
+        String modo = args.length > 0 ? args[0] : "ambos";
+        if (!modo.equals("tokens")) {
+            ArrayList<Alumno> alumnos = new ArrayList<>();
+            medir("flexjson", () -> {
+                try (FileReader file = new FileReader(archivo.toFile(), StandardCharsets.UTF_8)) {
+                    alumnos.addAll(new JSONDeserializer<ArrayList<Alumno>>().deserialize(file));
+                    return alumnos.size();
+                }
+            });
+            medir("flexjson (guardar)", () -> {
+                try (FileWriter salida = new FileWriter(archivo.toFile(), StandardCharsets.UTF_8)) {
+                    salida.write(new JSONSerializer().prettyPrint(true).include("materias").serialize(alumnos));
+                }
+                return alumnos.size();
+            });
+        }
+        if (!modo.equals("flexjson")) {
+            DatabaseAlumnos[] db = new DatabaseAlumnos[1];
+            medir("tokens", () -> {
+                db[0] = new DatabaseAlumnos();
+                return db[0].getAlumnos().size();
+            });
+            medir("tokens (guardar)", () -> {
+                db[0].marcarModificada();
+                db[0].saveDB();
+                return db[0].getAlumnos().size();
+            });
+        }
+
+        Files.delete(archivo);
+        Files.delete(directorio);
+    }
+
+    interface Carga {
+        int ejecutar() throws Exception;
+    }
+
+    static void medir(String nombre, Carga carga) throws Exception {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+
+        long inicio = System.nanoTime();
+        int total = carga.ejecutar();
+        long tiempo = System.nanoTime() - inicio;
+
+        long pico = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pico += pool.getPeakUsage().getUsed();
+        }
+        System.out.printf("%-18s %,d alumnos en %,d ms | pico de heap ~%,d MB%n",
+                nombre, total, tiempo / 1_000_000, pico / (1024 * 1024));
+    }
+
+    /**
+     * Escribe el archivo con el mismo formato que guarda DatabaseAlumnos
+     */
+    static void generar(Path archivo, int total) throws Exception {
+        Random random = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            out.write("[\n");
+            for (int i = 0; i < total; i++) {
+                out.write("    {\n        \"class\": \"com.fiunam.users.Alumno\",\n        \"materias\": [\n");
+                int materias = random.nextInt(7);
+                for (int m = 0; m < materias; m++) {
+                    out.write("            \"%04d\"%s\n".formatted(1 + random.nextInt(200), m + 1 < materias ? "," : ""));
+                }
+                out.write("        ],\n");
+                out.write("        \"nombre\": \"Alumno número " + i + "\",\n");
+                out.write("        \"numCuenta\": \"" + (10_000_000 + i) + "\",\n");
+                out.write("        \"password\": \"pwd" + i + "\",\n");
+                out.write("        \"semestre\": " + (1 + random.nextInt(10)) + ",\n");
+                out.write("        \"username\": \"alumno" + i + "\"\n");
+                out.write(i + 1 < total ? "    },\n" : "    }\n");
+            }
+            out.write("]");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package test.benchmarks;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.logger.Logger;
+import com.fiunam.materias.Materia;
+import com.fiunam.materias.ServicioInscripciones;
+import com.fiunam.users.Alumno;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Varios miles de hilos (uno por alumno) piden al mismo tiempo lugares en pocas materias con
+ * poco cupo, como al abrir las inscripciones. Mide cuánto tardan en resolverse todas las
+ * altas, la latencia de cada una según su resultado y comprueba que ninguna materia se pase
+ * de su cupo:
+ * java -cp ".:../lib/*" test.benchmarks.BenchCupo [hilos]
+ */
+public class BenchCupo {
+    private static final int MATERIAS = 20;
+    private static final int CUPO = 40;
+    /** Materias que pide cada alumno */
+    private static final int PEDIDAS = 6;
+
+    public static void main(String[] args) throws Exception {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : 4_000;
+        Path directorio = Files.createTempDirectory("bench-cupo");
+        Files.writeString(directorio.resolve("alumnos.json"), "[]");
+        Files.writeString(directorio.resolve("materias.json"), "[]");
+        System.setProperty("fiunam.db.dir", directorio.toString());
+        Logger.setNivelMinimo(Logger.Nivel.WARNING);
+
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        DatabaseMaterias dbMaterias = new DatabaseMaterias();
+        for (int i = 0; i < hilos; i++) {
+            dbAlumnos.agregarAlumno(new Alumno("alumno" + i, "Alumno " + i, "pwd", 1));
+        }
+        for (int i = 0; i < MATERIAS; i++) {
+            Materia materia = new Materia("Materia " + i, 1, "Profesor", "Otras asignaturas");
+            materia.setCupo(CUPO);
+            dbMaterias.agregarMateria(materia);
+        }
+        int[] cuentas = dbAlumnos.getCopiaAlumnos().stream().mapToInt(Alumno::claveCuenta).toArray();
+        int[] materias = dbMaterias.getCopiaMaterias().stream().mapToInt(Materia::claveMateria).toArray();
+
+        ServicioInscripciones servicio = new ServicioInscripciones(dbMaterias, dbAlumnos);
+        Map<ServicioInscripciones.Resultado, AtomicLong> conteo = new EnumMap<>(ServicioInscripciones.Resultado.class);
+        for (ServicioInscripciones.Resultado resultado : ServicioInscripciones.Resultado.values()) {
+            conteo.put(resultado, new AtomicLong());
+        }
+        long[][] latencias = new long[cuentas.length][PEDIDAS];
+        boolean[][] inscrito = new boolean[cuentas.length][PEDIDAS];
+        CountDownLatch listos = new CountDownLatch(cuentas.length);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Thread> lista = new ArrayList<>();
+        for (int h = 0; h < cuentas.length; h++) {
+            int alumno = h;
+            Thread hilo = new Thread(() -> {
+                ThreadLocalRandom azar = ThreadLocalRandom.current();
+                listos.countDown();
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < PEDIDAS; i++) {
+                    // La mitad de los alumnos pide las mismas 3 materias
+                    int idMateria = materias[azar.nextBoolean() ? azar.nextInt(3) : azar.nextInt(materias.length)];
+                    long inicio = System.nanoTime();
+                    ServicioInscripciones.Resultado resultado = servicio.alta(idMateria, cuentas[alumno]);
+                    latencias[alumno][i] = System.nanoTime() - inicio;
+                    inscrito[alumno][i] = resultado == ServicioInscripciones.Resultado.INSCRITO;
+                    conteo.get(resultado).incrementAndGet();
+                }
+            }, "alumno-" + h);
+            lista.add(hilo);
+            hilo.start();
+        }
+
+        listos.await();
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Thread hilo : lista) {
+            hilo.join();
+        }
+        long total = System.nanoTime() - inicio;
+
+        int pasadas = 0;
+        for (Materia materia : dbMaterias.getCopiaMaterias()) {
+            if (materia.totalAlumnos() > materia.getCupo()) pasadas++;
+        }
+        long pedidas = (long) cuentas.length * PEDIDAS;
+        System.out.printf("%,d hilos, %,d altas en %d materias con cupo %d: %.1f ms (%,.0f altas/s)%n",
+                cuentas.length, pedidas, MATERIAS, CUPO, total / 1e6, pedidas / (total / 1e9));
+        System.out.println("Resultados: " + conteo);
+        System.out.println("Materias con más alumnos que su cupo: " + pasadas);
+        imprimir("alta INSCRITO", latencias, inscrito, true);
+        imprimir("alta SIN_CUPO/YA_INSCRITO", latencias, inscrito, false);
+
+        try (var archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) Files.delete(archivo);
+        }
+        Files.delete(directorio);
+    }
+
+    private static void imprimir(String nombre, long[][] latencias, boolean[][] inscrito, boolean deInscritos) {
+        long[] valores = new long[latencias.length * PEDIDAS];
+        int n = 0;
+        for (int i = 0; i < latencias.length; i++) {
+            for (int j = 0; j < PEDIDAS; j++) {
+                if (inscrito[i][j] == deInscritos) valores[n++] = latencias[i][j];
+            }
+        }
+        if (n == 0) return;
+        valores = Arrays.copyOf(valores, n);
+        Arrays.sort(valores);
+        System.out.printf("%-28s %8d  p50 %8.1f µs  p99 %8.1f µs  máx %8.1f µs%n", nombre, n,
+                valores[n / 2] / 1000.0, valores[(int) (n * 0.99)] / 1000.0, valores[n - 1] / 1000.0);
+    }
+}
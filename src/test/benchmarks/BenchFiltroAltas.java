@@ -0,0 +1,63 @@
+package test.benchmarks;
+
+import com.fiunam.materias.Materia;
+import com.fiunam.users.Alumno;
+
+import java.util.ArrayList;
+
+/**
+ * Mide el filtrado de la pantalla de inscripción de materias (quitar las materias que
+ * el alumno ya tiene inscritas), antes con ArrayList.contains y ahora con el conjunto
+ * de enteros de Alumno.estaInscrito.
+ */
+public class BenchFiltroAltas {
+    private static final int MATERIAS = 5_000;
+    private static final int REPETICIONES = 200;
+
+    public static void main(String[] args) {
+        ArrayList<Materia> catalogo = new ArrayList<>();
+        for (int i = 1; i <= MATERIAS; i++) {
+            Materia materia = new Materia("Materia " + i, i % 40, "Profesor " + i, "Ciencias Básicas");
+            materia.setIdMateria(String.valueOf(i));
+            catalogo.add(materia);
+        }
+
+        for (int inscritas : new int[]{8, 64, 512}) {
+            Alumno alumno = new Alumno("user", "Alumno", "pwd", 1);
+            ArrayList<String> listaAnterior = new ArrayList<>();
+            for (int i = 0; i < inscritas; i++) {
+                Materia materia = catalogo.get(i * (MATERIAS / inscritas));
+                alumno.inscribirMateria(materia.claveMateria());
+                listaAnterior.add(materia.getIdMateria());
+            }
+
+            // Calentamiento
+            filtrarLista(catalogo, listaAnterior);
+            filtrarConjunto(catalogo, alumno);
+
+            long inicio = System.nanoTime();
+            int restantes = 0;
+            for (int i = 0; i < REPETICIONES; i++) restantes += filtrarLista(catalogo, listaAnterior);
+            double usLista = (System.nanoTime() - inicio) / 1000.0 / REPETICIONES;
+
+            inicio = System.nanoTime();
+            for (int i = 0; i < REPETICIONES; i++) restantes += filtrarConjunto(catalogo, alumno);
+            double usConjunto = (System.nanoTime() - inicio) / 1000.0 / REPETICIONES;
+
+            System.out.printf("%,d materias, %3d inscritas | ArrayList: %,10.1f us | conjunto: %,8.1f us | (%d)%n",
+                    MATERIAS, inscritas, usLista, usConjunto, restantes);
+        }
+    }
+
+    private static int filtrarLista(ArrayList<Materia> catalogo, ArrayList<String> inscritas) {
+        ArrayList<Materia> listado = new ArrayList<>(catalogo);
+        listado.removeIf(materia -> inscritas.contains(materia.getIdMateria()));
+        return listado.size();
+    }
+
+    private static int filtrarConjunto(ArrayList<Materia> catalogo, Alumno alumno) {
+        ArrayList<Materia> listado = new ArrayList<>(catalogo);
+        listado.removeIf(materia -> alumno.estaInscrito(materia.claveMateria()));
+        return listado.size();
+    }
+}
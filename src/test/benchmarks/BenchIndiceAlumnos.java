@@ -0,0 +1,80 @@
+package test.benchmarks;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.users.Alumno;
+import flexjson.JSONSerializer;
+
+import java.io.FileWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Compara el tiempo de readAlumno(numCuenta) con el índice contra la búsqueda
+ * lineal anterior, con 1k, 100k y 1M de alumnos.
+ * Ejecutar con más memoria, por ejemplo: java -Xmx4g -cp ".:../lib/*" test.benchmarks.BenchIndiceAlumnos
+ */
+public class BenchIndiceAlumnos {
+    private static final int BUSQUEDAS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("bench-alumnos");
+        System.setProperty("fiunam.db.dir", dir.toString());
+
+        for (int n : new int[]{1_000, 100_000, 1_000_000}) {
+            ArrayList<String> cuentas = generarArchivo(dir.resolve("alumnos.json"), n);
+            DatabaseAlumnos db = new DatabaseAlumnos();
+            Random rand = new Random(42);
+
+            // Calentamiento
+            for (int i = 0; i < BUSQUEDAS; i++) {
+                db.readAlumno(cuentas.get(rand.nextInt(n)));
+            }
+
+            long inicio = System.nanoTime();
+            int encontrados = 0;
+            for (int i = 0; i < BUSQUEDAS; i++) {
+                if (db.readAlumno(cuentas.get(rand.nextInt(n))).getNumCuenta() != null) encontrados++;
+            }
+            double nsIndice = (System.nanoTime() - inicio) / (double) BUSQUEDAS;
+
+            // La búsqueda lineal es mucho más lenta, se hacen menos búsquedas
+            int busquedasLineales = Math.max(100, BUSQUEDAS / (n / 100));
+            inicio = System.nanoTime();
+            for (int i = 0; i < busquedasLineales; i++) {
+                String numCuenta = cuentas.get(rand.nextInt(n));
+                for (Alumno alumno : db.getAlumnos()) {
+                    if (Objects.equals(alumno.getNumCuenta(), numCuenta)) {
+                        encontrados++;
+                        break;
+                    }
+                }
+            }
+            double nsLineal = (System.nanoTime() - inicio) / (double) busquedasLineales;
+
+            System.out.printf("%,10d alumnos | índice: %,10.1f ns/op | lineal: %,14.1f ns/op | (%d)%n",
+                    n, nsIndice, nsLineal, encontrados);
+        }
+    }
+
+    /**
+     * Genera un archivo alumnos.json con n alumnos en el mismo formato que saveDB()
+     */
+    private static ArrayList<String> generarArchivo(Path archivo, int n) throws Exception {
+        ArrayList<Alumno> alumnos = new ArrayList<>();
+        ArrayList<String> cuentas = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String numCuenta = String.valueOf(10_000_000 + i);
+            alumnos.add(new Alumno("user" + i, "pwd" + i, "Alumno " + i, 1 + i % 10, numCuenta, new ArrayList<>()));
+            cuentas.add(numCuenta);
+        }
+
+        try (FileWriter file = new FileWriter(archivo.toString(), StandardCharsets.UTF_8)) {
+            file.write(new JSONSerializer().prettyPrint(true).include("materias").serialize(alumnos));
+        }
+        return cuentas;
+    }
+}
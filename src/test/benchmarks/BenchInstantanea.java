@@ -0,0 +1,51 @@
+package test.benchmarks;
+
+import com.fiunam.databases.ConvertidorArchivos;
+import com.fiunam.databases.DatabaseAlumnos;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compara el arranque de DatabaseAlumnos con 500 000 alumnos leyendo alumnos.json (lector por
+ * tokens) contra alumnos.bin (formato binario mapeado en memoria), y el heap que queda ocupado
+ * después de la carga. Conviene ejecutar cada formato por separado:
+ * java -Xmx4g -cp ".:../lib/*" test.benchmarks.BenchInstantanea json
+ * java -Xmx4g -cp ".:../lib/*" test.benchmarks.BenchInstantanea binario
+ */
+public class BenchInstantanea {
+    private static final int ALUMNOS = 500_000;
+
+    public static void main(String[] args) throws Exception {
+        Path directorio = Files.createTempDirectory("bench-instantanea");
+        String modo = args.length > 0 ? args[0] : "binario";
+        System.setProperty("fiunam.db.dir", directorio.toString());
+        System.setProperty("fiunam.db.formato.alumnos", modo.equals("json") ? "JSON" : "BINARIO");
+
+        Path json = directorio.resolve("alumnos.json");
+        BenchCargaAlumnos.generar(json, ALUMNOS);
+        Files.writeString(directorio.resolve("materias.json"), "[]");
+        ConvertidorArchivos.aBinario(directorio);
+        System.out.printf("alumnos.json: %,d MB | alumnos.bin: %,d MB%n",
+                Files.size(json) / (1024 * 1024), Files.size(directorio.resolve("alumnos.bin")) / (1024 * 1024));
+
+        DatabaseAlumnos[] db = new DatabaseAlumnos[1];
+        for (int i = 1; i <= 3; i++) {
+            db[0] = null;
+            BenchCargaAlumnos.medir(modo + " #" + i, () -> {
+                db[0] = new DatabaseAlumnos();
+                return db[0].getAlumnos().size();
+            });
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.out.printf("Heap ocupado con la base de datos cargada: ~%,d MB%n",
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+
+        try (var archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) Files.delete(archivo);
+        }
+        Files.delete(directorio);
+    }
+}
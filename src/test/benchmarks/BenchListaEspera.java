@@ -0,0 +1,148 @@
+package test.benchmarks;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.logger.Logger;
+import com.fiunam.materias.Materia;
+import com.fiunam.materias.ServicioInscripciones;
+import com.fiunam.users.Alumno;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodo de altas y bajas: muchos hilos dan de baja y piden materias llenas al mismo tiempo,
+ * con y sin lista de espera. Mide las operaciones por segundo, la latencia de las bajas (que
+ * inscriben a los que esperan) y comprueba al final que ninguna materia pase su cupo, que solo
+ * haya alumnos esperando en materias llenas y que nadie esté inscrito y esperando a la vez:
+ * java -cp ".:../lib/*" test.benchmarks.BenchListaEspera [hilos]
+ */
+public class BenchListaEspera {
+    private static final int ALUMNOS = 5_000;
+    private static final int MATERIAS = 10;
+    private static final int CUPO = 50;
+    private static final int OPERACIONES_POR_HILO = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        for (boolean espera : new boolean[]{false, true}) {
+            medir(hilos, espera);
+        }
+    }
+
+    private static void medir(int hilos, boolean espera) throws Exception {
+        Path directorio = Files.createTempDirectory("bench-espera");
+        Files.writeString(directorio.resolve("alumnos.json"), "[]");
+        Files.writeString(directorio.resolve("materias.json"), "[]");
+        System.setProperty("fiunam.db.dir", directorio.toString());
+        Logger.setNivelMinimo(Logger.Nivel.WARNING);
+
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        DatabaseMaterias dbMaterias = new DatabaseMaterias();
+        for (int i = 0; i < ALUMNOS; i++) {
+            dbAlumnos.agregarAlumno(new Alumno("alumno" + i, "Alumno " + i, "pwd", 1));
+        }
+        for (int i = 0; i < MATERIAS; i++) {
+            Materia materia = new Materia("Materia " + i, 1, "Profesor", "Otras asignaturas");
+            materia.setCupo(CUPO);
+            dbMaterias.agregarMateria(materia);
+        }
+        int[] cuentas = dbAlumnos.getCopiaAlumnos().stream().mapToInt(Alumno::claveCuenta).toArray();
+        int[] materias = dbMaterias.getCopiaMaterias().stream().mapToInt(Materia::claveMateria).toArray();
+        ServicioInscripciones servicio = new ServicioInscripciones(dbMaterias, dbAlumnos);
+
+        // Se llenan las materias antes de medir
+        for (int idMateria : materias) {
+            for (int i = 0; i < CUPO; i++) {
+                servicio.alta(idMateria, cuentas[ThreadLocalRandom.current().nextInt(cuentas.length)]);
+            }
+        }
+
+        Map<ServicioInscripciones.Resultado, AtomicLong> conteo = new EnumMap<>(ServicioInscripciones.Resultado.class);
+        for (ServicioInscripciones.Resultado resultado : ServicioInscripciones.Resultado.values()) {
+            conteo.put(resultado, new AtomicLong());
+        }
+        long[][] bajas = new long[hilos][OPERACIONES_POR_HILO];
+        int[] totalBajas = new int[hilos];
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Thread> lista = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            Thread t = new Thread(() -> {
+                ThreadLocalRandom azar = ThreadLocalRandom.current();
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < OPERACIONES_POR_HILO; i++) {
+                    int idMateria = materias[azar.nextInt(materias.length)];
+                    int numCuenta = cuentas[azar.nextInt(cuentas.length)];
+                    ServicioInscripciones.Resultado resultado;
+                    if (azar.nextBoolean()) {
+                        long inicio = System.nanoTime();
+                        resultado = servicio.baja(idMateria, numCuenta);
+                        if (resultado == ServicioInscripciones.Resultado.DADO_DE_BAJA) {
+                            bajas[hilo][totalBajas[hilo]++] = System.nanoTime() - inicio;
+                        }
+                    } else {
+                        resultado = espera ? servicio.altaOEspera(idMateria, numCuenta) : servicio.alta(idMateria, numCuenta);
+                    }
+                    conteo.get(resultado).incrementAndGet();
+                }
+            });
+            lista.add(t);
+            t.start();
+        }
+
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Thread t : lista) {
+            t.join();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        long[] latencias = new long[Arrays.stream(totalBajas).sum()];
+        int n = 0;
+        for (int h = 0; h < hilos; h++) {
+            System.arraycopy(bajas[h], 0, latencias, n, totalBajas[h]);
+            n += totalBajas[h];
+        }
+        Arrays.sort(latencias);
+
+        boolean correcto = true;
+        long enEspera = 0;
+        for (Materia materia : dbMaterias.getCopiaMaterias()) {
+            int[] cuentasEspera = materia.cuentasEnEspera();
+            enEspera += cuentasEspera.length;
+            correcto &= materia.totalAlumnos() <= materia.getCupo();
+            correcto &= cuentasEspera.length == 0 || materia.cupoDisponible() == 0;
+            for (int numCuenta : cuentasEspera) {
+                correcto &= !materia.estaInscrito(numCuenta);
+            }
+        }
+
+        long operaciones = (long) hilos * OPERACIONES_POR_HILO;
+        System.out.printf("%s lista de espera: %d hilos, %,d operaciones en %.2f s (%,.0f op/s)%n",
+                espera ? "Con" : "Sin", hilos, operaciones, segundos, operaciones / segundos);
+        System.out.println("  Resultados: " + conteo);
+        if (latencias.length > 0) {
+            System.out.printf("  Bajas: p50 %.1f µs, p99 %.1f µs, máx %.1f µs%n", latencias[latencias.length / 2] / 1000.0,
+                    latencias[(int) (latencias.length * 0.99)] / 1000.0, latencias[latencias.length - 1] / 1000.0);
+        }
+        System.out.printf("  Alumnos esperando al final: %,d, estado %s%n", enEspera, correcto ? "correcto" : "INCORRECTO");
+
+        try (var archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) Files.delete(archivo);
+        }
+        Files.delete(directorio);
+    }
+}
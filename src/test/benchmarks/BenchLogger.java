@@ -0,0 +1,72 @@
+package test.benchmarks;
+
+import com.fiunam.logger.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Mide el costo de enviar mensajes al Logger desde varios hilos. Se ejecuta una vez por modo:
+ * java -cp ".:../lib/*" test.benchmarks.BenchLogger
+ * java -Dfiunam.log.async=true -cp ".:../lib/*" test.benchmarks.BenchLogger
+ * Al final mide los mensajes INFO cuando el nivel mínimo es WARNING, que no deben costar nada.
+ */
+public class BenchLogger {
+    private static final int HILOS = 4;
+    private static final int MENSAJES = 250_000;
+
+    public static void main(String[] args) throws Exception {
+        Path archivo = Files.createTempFile("bench-logger", ".log");
+        System.setProperty("fiunam.log.archivo", archivo.toString());
+        // Sin rotación, para poder contar todas las líneas en un solo archivo
+        System.setProperty("fiunam.log.tamanoMaximo", "0");
+        Logger log = new Logger(BenchLogger.class);
+
+        ArrayList<Thread> hilos = new ArrayList<>();
+        long inicio = System.nanoTime();
+        for (int h = 0; h < HILOS; h++) {
+            final int hilo = h;
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < MENSAJES; i++) {
+                    log.sendInfo("Materia 0001 dada de alta por el alumno " + hilo + "-" + i);
+                }
+            });
+            hilos.add(t);
+            t.start();
+        }
+        for (Thread t : hilos) t.join();
+        long envio = System.nanoTime() - inicio;
+        Logger.vaciar();
+        long total = System.nanoTime() - inicio;
+
+        long lineas;
+        try (Stream<String> contenido = Files.lines(archivo)) {
+            lineas = contenido.count();
+        }
+        System.out.printf("async=%s | envío: %,d ms (%.0f ns/mensaje) | hasta vaciar: %,d ms | líneas: %,d de %,d%n",
+                System.getProperty("fiunam.log.async", "false"), envio / 1_000_000,
+                envio / (double) (HILOS * MENSAJES), total / 1_000_000, lineas, HILOS * MENSAJES);
+
+        Logger.setNivelMinimo(Logger.Nivel.WARNING);
+        ArrayList<String> materias = new ArrayList<>();
+        for (int i = 0; i < 10; i++) materias.add("%04d".formatted(i));
+        long ignorados = 0;
+        inicio = System.nanoTime();
+        for (int i = 0; i < HILOS * MENSAJES; i++) {
+            final int n = i;
+            log.sendInfo(() -> "Alumno " + n + " materias " + String.join(", ", materias));
+            log.sendInfo("Alumno %d materias %s", n, materias);
+            ignorados += 2;
+        }
+        long desactivado = System.nanoTime() - inicio;
+        Logger.vaciar();
+        try (Stream<String> contenido = Files.lines(archivo)) {
+            lineas = contenido.count() - lineas;
+        }
+        System.out.printf("nivel=WARNING | %,d mensajes INFO ignorados: %.1f ns/mensaje | líneas nuevas: %,d%n",
+                ignorados, desactivado / (double) ignorados, lineas);
+        Files.delete(archivo);
+    }
+}
@@ -0,0 +1,49 @@
+package test.benchmarks;
+
+import com.fiunam.databases.DatabaseAlumnos;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Mide reloadDB con 200 000 alumnos en json: cuando los archivos no cambiaron (solo se
+ * comparan tamaño y fecha) y cuando hay un cambio sin guardar que se debe descartar (se lee
+ * el archivo y se actualizan en su lugar los alumnos que ya estaban en memoria).
+ * java -Xmx4g -cp ".:../lib/*" test.benchmarks.BenchRecarga
+ */
+public class BenchRecarga {
+    private static final int ALUMNOS = 200_000;
+    private static final int REPETICIONES = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        Path directorio = Files.createTempDirectory("bench-recarga");
+        System.setProperty("fiunam.db.dir", directorio.toString());
+        BenchCargaAlumnos.generar(directorio.resolve("alumnos.json"), ALUMNOS);
+
+        DatabaseAlumnos[] db = new DatabaseAlumnos[1];
+        BenchCargaAlumnos.medir("initDB", () -> {
+            db[0] = new DatabaseAlumnos();
+            return db[0].getAlumnos().size();
+        });
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < REPETICIONES; i++) {
+            db[0].reloadDB();
+        }
+        long sinCambios = (System.nanoTime() - inicio) / REPETICIONES;
+
+        db[0].readAlumno(10_000_000).inscribirMateria(1);
+        db[0].marcarModificado(db[0].readAlumno(10_000_000));
+        inicio = System.nanoTime();
+        db[0].reloadDB();
+        long conCambios = System.nanoTime() - inicio;
+
+        System.out.printf("reloadDB sin cambios: %,d µs (%d omitidas) | con un cambio sin guardar: %,d ms%n",
+                sinCambios / 1_000, db[0].getRecargasOmitidas(), conCambios / 1_000_000);
+
+        try (var archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) Files.delete(archivo);
+        }
+        Files.delete(directorio);
+    }
+}
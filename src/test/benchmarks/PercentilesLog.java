@@ -0,0 +1,46 @@
+package test.benchmarks;
+
+import flexjson.JSONDeserializer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Calcula los percentiles de duración de cada evento medido en un log con formato JSON
+ * (ejecutar el programa con -Dfiunam.log.formato=JSON):
+ * java -cp ".:../lib/*" test.benchmarks.PercentilesLog loggerProyecto.log
+ */
+public class PercentilesLog {
+    public static void main(String[] args) throws Exception {
+        Path archivo = Path.of(args.length > 0 ? args[0] : "loggerProyecto.log");
+        JSONDeserializer<Map<String, Object>> deserializer = new JSONDeserializer<>();
+        TreeMap<String, ArrayList<Long>> duraciones = new TreeMap<>();
+
+        for (String linea : Files.readAllLines(archivo)) {
+            if (!linea.startsWith("{")) continue;
+            Map<String, Object> evento = deserializer.deserialize(linea);
+            Object duracion = evento.get("duracion");
+            if (duracion == null) continue;
+
+            String nombre = evento.get("evento") + (evento.containsKey("detalle") ? " (" + evento.get("detalle") + ")" : "");
+            duraciones.computeIfAbsent(nombre, k -> new ArrayList<>()).add(((Number) duracion).longValue());
+        }
+
+        System.out.printf("%-28s %8s %10s %10s %10s %10s%n", "evento", "n", "p50 µs", "p90 µs", "p99 µs", "máx µs");
+        duraciones.forEach((nombre, lista) -> {
+            long[] valores = lista.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(valores);
+            System.out.printf("%-28s %8d %10.1f %10.1f %10.1f %10.1f%n", nombre, valores.length,
+                    percentil(valores, 50), percentil(valores, 90), percentil(valores, 99), valores[valores.length - 1] / 1000.0);
+        });
+    }
+
+    private static double percentil(long[] ordenados, int p) {
+        int i = (int) Math.ceil(p / 100.0 * ordenados.length) - 1;
+        return ordenados[Math.max(i, 0)] / 1000.0;
+    }
+}
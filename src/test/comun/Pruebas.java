@@ -0,0 +1,112 @@
+package test.comun;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.logger.Logger;
+import com.fiunam.materias.Materia;
+import com.fiunam.users.Alumno;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Lo que comparten las pruebas de las bases de datos y de las inscripciones: el directorio
+ * temporal que usan como carpeta de las bases de datos, las comprobaciones de que materias y
+ * alumnos cuadran, y la forma de reportar cada comprobación (una que falla lanza
+ * AssertionError, así la prueba termina con error).
+ * <p>
+ * La carpeta de las bases de datos ("fiunam.db.dir") se lee una sola vez por máquina virtual,
+ * así que cada prueba debe usar un solo directorio.
+ */
+public final class Pruebas {
+    private Pruebas() {
+    }
+
+    /**
+     * Copia los archivos de la carpeta json a un directorio temporal, lo usa como carpeta de
+     * las bases de datos y deja el Logger en WARNING.
+     *
+     * @param prefijo Prefijo del nombre del directorio
+     * @return Directorio, se borra con {@link #borrar(Path)}
+     */
+    public static Path copiaJson(String prefijo) throws IOException {
+        Path directorio = Files.createTempDirectory(prefijo);
+        for (String archivo : new String[]{"alumnos.json", "materias.json", "administradores.json"}) {
+            Files.copy(Path.of("json", archivo), directorio.resolve(archivo));
+        }
+        Pruebas.usar(directorio);
+        return directorio;
+    }
+
+    /**
+     * Igual que {@link #copiaJson(String)}, pero sin alumnos ni materias
+     */
+    public static Path vacio(String prefijo) throws IOException {
+        Path directorio = Files.createTempDirectory(prefijo);
+        Files.writeString(directorio.resolve("alumnos.json"), "[]");
+        Files.writeString(directorio.resolve("materias.json"), "[]");
+        Pruebas.usar(directorio);
+        return directorio;
+    }
+
+    private static void usar(Path directorio) {
+        System.setProperty("fiunam.db.dir", directorio.toString());
+        Logger.setNivelMinimo(Logger.Nivel.WARNING);
+    }
+
+    /**
+     * Borra el directorio temporal y sus archivos
+     */
+    public static void borrar(Path directorio) throws IOException {
+        try (var archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) Files.delete(archivo);
+        }
+        Files.delete(directorio);
+    }
+
+    /**
+     * @return true si cada alumno inscrito en una materia tiene la materia en su lista y al
+     * revés, y ningún alumno está inscrito y en la lista de espera de la misma materia
+     */
+    public static boolean coinciden(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos) {
+        for (Materia materia : dbMaterias.getCopiaMaterias()) {
+            for (int numCuenta : materia.cuentasAlumnos()) {
+                if (!dbAlumnos.readAlumno(numCuenta).estaInscrito(materia.claveMateria())) return false;
+            }
+            for (int numCuenta : materia.cuentasEnEspera()) {
+                if (materia.estaInscrito(numCuenta)) return false;
+            }
+        }
+        for (Alumno alumno : dbAlumnos.getCopiaAlumnos()) {
+            for (int idMateria : alumno.idsMaterias()) {
+                if (!dbMaterias.readMateria(idMateria).estaInscrito(alumno.claveCuenta())) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true si ninguna materia pasa su cupo y solo hay alumnos esperando en las que
+     * están llenas
+     */
+    public static boolean respetanCupo(DatabaseMaterias dbMaterias) {
+        for (Materia materia : dbMaterias.getCopiaMaterias()) {
+            if (materia.totalAlumnos() > materia.getCupo()) return false;
+            if (materia.hayEnEspera() && materia.cupoDisponible() > 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reporta una comprobación que se cumplió, o termina la prueba si no se cumplió
+     *
+     * @param nombre    Qué se comprobó
+     * @param resultado true si se cumplió
+     * @throws AssertionError Si no se cumplió
+     */
+    public static void comprobar(String nombre, boolean resultado) {
+        if (!resultado) throw new AssertionError(nombre);
+        System.out.println("OK: " + nombre);
+    }
+}
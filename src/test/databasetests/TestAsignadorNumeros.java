@@ -0,0 +1,65 @@
+package test.databasetests;
+
+import com.fiunam.databases.AsignadorNumeros;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Registra números desde varios hilos a la vez y comprueba que ninguno se repita.
+ */
+public class TestAsignadorNumeros {
+    private static final int HILOS = 16;
+    private static final int POR_HILO = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        AsignadorNumeros asignador = new AsignadorNumeros(10_000_000, 99_999_999);
+        asignador.registrar(45_901_219);
+
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Callable<int[]>> tareas = new ArrayList<>();
+        for (int h = 0; h < HILOS; h++) {
+            tareas.add(() -> {
+                int[] numeros = new int[POR_HILO];
+                for (int i = 0; i < POR_HILO; i++) numeros[i] = asignador.siguiente();
+                return numeros;
+            });
+        }
+
+        long inicio = System.nanoTime();
+        List<Future<int[]>> resultados = executor.invokeAll(tareas);
+        long tiempo = System.nanoTime() - inicio;
+        executor.shutdown();
+
+        BitSet vistos = new BitSet(100_000_000);
+        vistos.set(45_901_219);
+        int repetidos = 0;
+        for (Future<int[]> resultado : resultados) {
+            for (int numero : resultado.get()) {
+                if (numero < 10_000_000 || numero > 99_999_999) throw new AssertionError("Fuera de rango: " + numero);
+                if (vistos.get(numero)) repetidos++;
+                vistos.set(numero);
+            }
+        }
+
+        System.out.printf("%,d números en %,d ms (%.0f ns/número), repetidos: %d%n", HILOS * POR_HILO,
+                tiempo / 1_000_000, tiempo / (double) (HILOS * POR_HILO), repetidos);
+        if (repetidos > 0) throw new AssertionError("Se asignaron números repetidos");
+
+        AsignadorNumeros lleno = new AsignadorNumeros(1, 3);
+        lleno.siguiente();
+        lleno.siguiente();
+        lleno.siguiente();
+        try {
+            lleno.siguiente();
+            throw new AssertionError("Debió fallar con el rango lleno");
+        } catch (IllegalStateException e) {
+            System.out.println("Rango lleno: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package test.databasetests;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.Persistencia;
+import com.fiunam.logger.Logger;
+import com.fiunam.users.Alumno;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Termina el programa con un guardado pendiente de {@link Persistencia} (con un retraso de
+ * varios minutos, así solo se escribe al cerrar) y con otro gancho de apagado que sigue
+ * enviando mensajes al Logger. Comprueba que el programa termina, que el cambio está en los
+ * archivos y que el lote quedó en el .log, con el Logger síncrono y con el asíncrono. El
+ * programa que termina es otra máquina virtual, que usa una copia de la carpeta json en un
+ * directorio temporal.
+ */
+public class TestCierre {
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("hijo")) {
+            hijo(Path.of(args[1]));
+            return;
+        }
+
+        for (String asincrono : new String[]{"false", "true"}) {
+            Path directorio = Files.createTempDirectory("test-cierre");
+            for (String archivo : new String[]{"alumnos.json", "materias.json", "administradores.json"}) {
+                Files.copy(Path.of("json", archivo), directorio.resolve(archivo));
+            }
+            Path log = directorio.resolve("cierre.log");
+            Process proceso = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    "-Dfiunam.db.retrasoMaximo=600000",
+                    "-Dfiunam.log.archivo=" + log,
+                    "-Dfiunam.log.async=" + asincrono,
+                    TestCierre.class.getName(), "hijo", directorio.toString()).inheritIO().start();
+            if (!proceso.waitFor(30, TimeUnit.SECONDS)) {
+                proceso.destroyForcibly();
+                throw new AssertionError("El programa no terminó (log asíncrono: " + asincrono + ")");
+            }
+
+            // La carpeta de las bases de datos se lee una vez por máquina virtual, así que aquí
+            // se revisan los archivos directamente
+            Path bitacora = directorio.resolve("alumnos.json.bitacora");
+            check(Files.exists(bitacora) && Files.readString(bitacora).contains("\"username\":\"cierre\""),
+                    "El guardado pendiente no llegó al disco");
+            check(Files.readString(log).contains("guardarLote"), "El lote no quedó en el .log");
+            System.out.println("OK: guardado al cerrar (log asíncrono: " + asincrono + ")");
+
+            try (var archivos = Files.list(directorio)) {
+                for (Path archivo : archivos.toList()) Files.delete(archivo);
+            }
+            Files.delete(directorio);
+        }
+    }
+
+    private static void hijo(Path directorio) {
+        System.setProperty("fiunam.db.dir", directorio.toString());
+        Logger log = new Logger(TestCierre.class);
+        // Otro gancho que escribe mientras se cierra el programa
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (int i = 0; i < 50; i++) {
+                log.sendInfo("Mensaje durante el cierre %d", i);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }));
+
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        dbAlumnos.agregarAlumno(new Alumno("cierre", "Alumno Cierre", "clave", 1));
+        Persistencia.guardar(dbAlumnos);
+    }
+
+    private static void check(boolean condicion, String mensaje) {
+        if (!condicion) throw new AssertionError(mensaje);
+    }
+}
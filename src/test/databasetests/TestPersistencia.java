@@ -0,0 +1,77 @@
+package test.databasetests;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.databases.Persistencia;
+import com.fiunam.materias.AdminMateria;
+import com.fiunam.materias.Materia;
+import com.fiunam.users.Alumno;
+import test.comun.Pruebas;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hace altas y bajas mientras {@link Persistencia} guarda en segundo plano, y comprueba que
+ * al volver a leer los archivos (json y bitácora) se obtenga lo mismo que hay en memoria.
+ * Usa una copia de la carpeta json en un directorio temporal.
+ */
+public class TestPersistencia {
+    private static final int OPERACIONES = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        Path directorio = Pruebas.copiaJson("test-persistencia");
+
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        DatabaseMaterias dbMaterias = new DatabaseMaterias();
+        List<Alumno> alumnos = dbAlumnos.getAlumnos();
+        List<Materia> materias = dbMaterias.getCopiaMaterias();
+
+        Random random = new Random(7);
+        Set<CompletableFuture<Void>> lotes = Collections.newSetFromMap(new IdentityHashMap<>());
+        CompletableFuture<Void> ultimo = null;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < OPERACIONES; i++) {
+            int cuenta = alumnos.get(random.nextInt(alumnos.size())).claveCuenta();
+            int materia = materias.get(random.nextInt(materias.size())).claveMateria();
+            if (random.nextBoolean()) {
+                AdminMateria.altaMateria(dbMaterias, dbAlumnos, materia, cuenta);
+            } else {
+                AdminMateria.bajaMateria(dbMaterias, dbAlumnos, materia, cuenta);
+            }
+            ultimo = Persistencia.guardar(dbAlumnos, dbMaterias);
+            lotes.add(ultimo);
+        }
+        long solicitar = System.nanoTime() - inicio;
+        ultimo.join();
+        long total = System.nanoTime() - inicio;
+
+        System.out.printf("%,d solicitudes en %,d lotes; solicitar: %,d ms, hasta el último guardado: %,d ms%n",
+                OPERACIONES, lotes.size(), solicitar / 1_000_000, total / 1_000_000);
+        System.out.printf("Alumnos: %d en json, %d en bitácora | Materias: %d en json, %d en bitácora%n",
+                dbAlumnos.getGuardadosRealizados(), dbAlumnos.getGuardadosEnBitacora(),
+                dbMaterias.getGuardadosRealizados(), dbMaterias.getGuardadosEnBitacora());
+
+        DatabaseAlumnos leidosAlumnos = new DatabaseAlumnos();
+        DatabaseMaterias leidasMaterias = new DatabaseMaterias();
+        int diferencias = 0;
+        for (Alumno alumno : alumnos) {
+            Alumno leido = leidosAlumnos.readAlumno(alumno.claveCuenta());
+            if (!List.copyOf(alumno.getMaterias()).equals(List.copyOf(leido.getMaterias()))) diferencias++;
+        }
+        for (Materia materia : materias) {
+            Materia leida = leidasMaterias.readMateria(materia.claveMateria());
+            if (!List.copyOf(materia.getAlumnos()).equals(List.copyOf(leida.getAlumnos()))) diferencias++;
+        }
+        Pruebas.comprobar("los archivos coinciden con la memoria (" + diferencias + " diferencias)", diferencias == 0);
+        Pruebas.comprobar("materias y alumnos coinciden", Pruebas.coinciden(leidasMaterias, leidosAlumnos));
+
+        Persistencia.vaciar();
+        Pruebas.borrar(directorio);
+    }
+}
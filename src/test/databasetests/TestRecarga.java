@@ -0,0 +1,71 @@
+package test.databasetests;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.materias.AdminMateria;
+import com.fiunam.materias.Materia;
+import com.fiunam.users.Alumno;
+import test.comun.Pruebas;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+/**
+ * Comprueba que reloadDB no lea los archivos si no cambiaron, y que al leerlos actualice en su
+ * lugar los alumnos y materias que ya estaban en memoria (las referencias siguen siendo válidas).
+ * Usa una copia de la carpeta json en un directorio temporal.
+ */
+public class TestRecarga {
+    public static void main(String[] args) throws Exception {
+        Path directorio = Pruebas.copiaJson("test-recarga");
+
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        DatabaseMaterias dbMaterias = new DatabaseMaterias();
+        Alumno alumno = dbAlumnos.getAlumnos().get(0);
+        Materia materia = dbMaterias.getCopiaMaterias().get(0);
+        List<Materia> area = dbMaterias.getMaterias(materia.getArea());
+        List<String> inscritas = List.copyOf(alumno.getMaterias());
+
+        // 1. Sin cambios no se lee nada
+        dbAlumnos.reloadDB();
+        dbMaterias.reloadDB();
+        Pruebas.comprobar("sin cambios se omite", dbAlumnos.getRecargasOmitidas() == 1 && dbMaterias.getRecargasOmitidas() == 1);
+
+        // 2. Un alta sin guardar se descarta en el mismo objeto
+        boolean inscrito = alumno.estaInscrito(materia.claveMateria());
+        if (inscrito) {
+            AdminMateria.bajaMateria(dbMaterias, dbAlumnos, materia.claveMateria(), alumno.claveCuenta());
+        } else {
+            AdminMateria.altaMateria(dbMaterias, dbAlumnos, materia.claveMateria(), alumno.claveCuenta());
+        }
+        dbAlumnos.reloadDB();
+        dbMaterias.reloadDB();
+        Pruebas.comprobar("cambio sin guardar descartado", alumno.estaInscrito(materia.claveMateria()) == inscrito
+                && List.copyOf(alumno.getMaterias()).equals(inscritas)
+                && materia.estaInscrito(alumno.claveCuenta()) == inscrito);
+        Pruebas.comprobar("mismos objetos", dbAlumnos.readAlumno(alumno.claveCuenta()) == alumno
+                && dbMaterias.readMateria(materia.claveMateria()) == materia && area.contains(materia));
+
+        // 3. Un cambio hecho por otro proceso se aplica al mismo objeto y a los índices
+        DatabaseAlumnos otro = new DatabaseAlumnos();
+        Alumno copia = otro.readAlumno(alumno.claveCuenta());
+        copia.setUsername("recargado");
+        copia.setPassword("nueva");
+        otro.marcarModificado(copia);
+        otro.guardarInstantanea();
+        dbAlumnos.reloadDB();
+        Pruebas.comprobar("cambio externo aplicado", "recargado".equals(alumno.getUsername())
+                && dbAlumnos.readAlumno("recargado", "nueva") == alumno && dbAlumnos.getRecargasOmitidas() == 1);
+
+        // 4. Mismo contenido con otra fecha: se compara el hash y se omite
+        Path json = directorio.resolve("materias.json");
+        Files.setLastModifiedTime(json, FileTime.fromMillis(Files.getLastModifiedTime(json).toMillis() + 5_000));
+        dbMaterias.reloadDB();
+        Pruebas.comprobar("otra fecha con el mismo contenido se omite", dbMaterias.getRecargasOmitidas() == 2);
+
+        Pruebas.borrar(directorio);
+    }
+
+}
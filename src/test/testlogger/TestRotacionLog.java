@@ -0,0 +1,148 @@
+package test.testlogger;
+
+import com.fiunam.logger.Logger;
+import test.comun.Pruebas;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Comprueba la rotación del archivo .log con un tamaño máximo de unos cuantos mensajes: los
+ * segmentos tienen números crecientes a partir del último que ya existía, ninguno pasa el
+ * tamaño máximo, se comprimen con gzip, solo se conservan los de la retención y, leídos en
+ * orden junto con el archivo actual, tienen los mensajes en el orden en que se enviaron. Los
+ * mensajes los escribe otra máquina virtual (el Logger lee su configuración una sola vez) en
+ * un directorio temporal.
+ */
+public class TestRotacionLog {
+    private static final int MENSAJES = 400;
+    private static final int TAMANO_MAXIMO = 2_000;
+    private static final Pattern MENSAJE = Pattern.compile("Mensaje (\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && args[0].equals("hijo")) {
+            Logger log = new Logger(TestRotacionLog.class);
+            for (int i = 0; i < MENSAJES; i++) {
+                log.sendInfo("Mensaje %d", i);
+            }
+            return;
+        }
+
+        // 1. Sin comprimir ni borrar: se numeran después del segmento que ya existía
+        Path directorio = Files.createTempDirectory("test-rotacion");
+        String base = "rotacion-" + LocalDate.now() + "-";
+        Files.writeString(directorio.resolve(base + "7.log"), "previo\n");
+        escribir(directorio, false, 0);
+        TreeMap<Integer, Path> segmentos = segmentos(directorio, base);
+        check(segmentos.size() > 3, "No se rotó el archivo: " + segmentos.size() + " segmentos");
+        check(segmentos.firstKey() == 7 && segmentos.lastKey() == 7 + segmentos.size() - 1,
+                "Números de segmento: " + segmentos.keySet());
+        check(Files.readString(segmentos.remove(7)).equals("previo\n"), "Se modificó el segmento que ya existía");
+        for (Path segmento : segmentos.values()) {
+            check(segmento.getFileName().toString().endsWith(".log") && Files.size(segmento) <= TAMANO_MAXIMO,
+                    "Segmento comprimido o muy grande: " + segmento.getFileName());
+        }
+        check(enOrden(segmentos, directorio, 0), "Los mensajes no están todos y en orden");
+        System.out.println("OK: " + segmentos.size() + " segmentos con números crecientes");
+        Pruebas.borrar(directorio);
+
+        // 2. Comprimidos y solo los 3 más recientes
+        directorio = Files.createTempDirectory("test-rotacion");
+        escribir(directorio, true, 3);
+        segmentos = segmentos(directorio, base);
+        int ultimo = segmentos.lastKey();
+        check(ultimo > 3 && segmentos.keySet().equals(Set.of(ultimo - 2, ultimo - 1, ultimo)),
+                "Retención: " + segmentos.keySet());
+        for (Path segmento : segmentos.values()) {
+            check(segmento.getFileName().toString().endsWith(".log.gz") && leer(segmento).length() <= TAMANO_MAXIMO,
+                    "Segmento sin comprimir o muy grande: " + segmento.getFileName());
+        }
+        check(enOrden(segmentos, directorio, -1), "Los mensajes no están en orden");
+        System.out.println("OK: " + ultimo + " rotaciones, se conservan 3 segmentos comprimidos");
+        Pruebas.borrar(directorio);
+    }
+
+    /**
+     * Envía los mensajes desde otra máquina virtual y espera a que termine
+     */
+    private static void escribir(Path directorio, boolean comprimir, int retencion) throws Exception {
+        Process proceso = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "-Dfiunam.log.archivo=" + directorio.resolve("rotacion.log"),
+                "-Dfiunam.log.tamanoMaximo=" + TAMANO_MAXIMO,
+                "-Dfiunam.log.comprimir=" + comprimir,
+                "-Dfiunam.log.retencion=" + retencion,
+                TestRotacionLog.class.getName(), "hijo").inheritIO().start();
+        if (!proceso.waitFor(30, TimeUnit.SECONDS)) {
+            proceso.destroyForcibly();
+            throw new AssertionError("El programa no terminó");
+        }
+    }
+
+    /**
+     * @return Los segmentos del directorio por número
+     */
+    private static TreeMap<Integer, Path> segmentos(Path directorio, String base) throws IOException {
+        TreeMap<Integer, Path> segmentos = new TreeMap<>();
+        try (var archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) {
+                String nombre = archivo.getFileName().toString();
+                if (nombre.startsWith(base)) {
+                    segmentos.put(Integer.parseInt(nombre.substring(base.length(), nombre.indexOf('.'))), archivo);
+                }
+            }
+        }
+        return segmentos;
+    }
+
+    /**
+     * @param primero Primer mensaje que debe aparecer, -1 si los primeros se pudieron borrar
+     * @return true si los segmentos seguidos del archivo actual tienen los mensajes consecutivos
+     * y terminan con el último que se envió
+     */
+    private static boolean enOrden(TreeMap<Integer, Path> segmentos, Path directorio, int primero) throws IOException {
+        List<Integer> mensajes = new ArrayList<>();
+        for (Path segmento : segmentos.values()) {
+            numeros(leer(segmento), mensajes);
+        }
+        numeros(Files.readString(directorio.resolve("rotacion.log")), mensajes);
+        if (mensajes.isEmpty() || (primero >= 0 && mensajes.get(0) != primero)) return false;
+        for (int i = 1; i < mensajes.size(); i++) {
+            if (mensajes.get(i) != mensajes.get(i - 1) + 1) return false;
+        }
+        return mensajes.get(mensajes.size() - 1) == MENSAJES - 1;
+    }
+
+    private static void numeros(String texto, List<Integer> mensajes) {
+        Matcher mensaje = MENSAJE.matcher(texto);
+        while (mensaje.find()) {
+            mensajes.add(Integer.parseInt(mensaje.group(1)));
+        }
+    }
+
+    /**
+     * @return El contenido del segmento, descomprimido si termina en .gz
+     */
+    private static String leer(Path segmento) throws IOException {
+        if (!segmento.getFileName().toString().endsWith(".gz")) return Files.readString(segmento);
+        try (InputStream entrada = new GZIPInputStream(Files.newInputStream(segmento))) {
+            return new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void check(boolean condicion, String mensaje) {
+        if (!condicion) throw new AssertionError(mensaje);
+    }
+}
@@ -0,0 +1,193 @@
+package test.testservidor;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.materias.Materia;
+import com.fiunam.servidor.ServidorInscripciones;
+import com.fiunam.users.Alumno;
+import com.fiunam.util.Hilos;
+import test.comun.Pruebas;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generador de carga para {@link ServidorInscripciones}: miles de alumnos simulados (uno por
+ * hilo) inician sesión al mismo tiempo, consultan el catálogo, piden varias materias juntas,
+ * se forman en la lista de espera de una materia llena, se dan de baja de otra y consultan una
+ * lista de alumnos. Mide las solicitudes por segundo y su latencia, y al final comprueba que
+ * todas se respondieron, que las materias y los alumnos cuadran, que ninguna materia pasa su
+ * cupo y que lo guardado en los archivos es lo mismo que quedó en memoria. Usa un directorio
+ * temporal:
+ * java -cp ".:../lib/*" test.testservidor.TestServidor [alumnos]
+ */
+public class TestServidor {
+    private static final int MATERIAS = 30;
+    private static final int CUPO = 40;
+    private static final Pattern SESION = Pattern.compile("\"sesion\":\"([^\"]+)\"");
+    private static final Pattern RESULTADO = Pattern.compile("\"resultado\":\"([A-Z_]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        int totalAlumnos = args.length > 0 ? Integer.parseInt(args[0]) : 3_000;
+        Path directorio = Pruebas.vacio("test-servidor");
+
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        DatabaseMaterias dbMaterias = new DatabaseMaterias();
+        for (int i = 0; i < totalAlumnos; i++) {
+            dbAlumnos.agregarAlumno(new Alumno("alumno" + i, "Alumno " + i, "pwd" + i, 1 + i % 10));
+        }
+        for (int i = 0; i < MATERIAS; i++) {
+            Materia materia = new Materia("Materia " + i, 1, "Profesor " + i, "Otras asignaturas");
+            materia.setCupo(CUPO);
+            dbMaterias.agregarMateria(materia);
+        }
+        dbAlumnos.saveDB();
+        dbMaterias.saveDB();
+        String[] materias = dbMaterias.getCopiaMaterias().stream().map(Materia::getIdMateria).toArray(String[]::new);
+
+        ServidorInscripciones servidor = new ServidorInscripciones(dbMaterias, dbAlumnos);
+        servidor.iniciar(0);
+        // Si una comprobación falla, el servidor se detiene para que el programa termine
+        try {
+            String base = "http://localhost:" + servidor.getPuerto();
+            HttpClient cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            // 1. Errores de sesión
+            Pruebas.comprobar("contraseña incorrecta", enviar(cliente, base + "/login", "usuario=alumno0&password=x").statusCode() == 401
+                    && enviar(cliente, base + "/alta", "sesion=x&materia=" + materias[0]).statusCode() == 401
+                    && consultar(cliente, base + "/materias/" + materias[0] + "/alumnos").statusCode() == 401);
+
+            // 2. Carga: cada alumno en su hilo
+            ConcurrentHashMap<String, AtomicLong> conteo = new ConcurrentHashMap<>();
+            AtomicLong fallidas = new AtomicLong();
+            long[][] latencias = new long[totalAlumnos][];
+            CountDownLatch salida = new CountDownLatch(1);
+            ExecutorService alumnos = Hilos.porTarea("alumno");
+            List<Future<?>> pendientes = new ArrayList<>();
+            for (int a = 0; a < totalAlumnos; a++) {
+                int alumno = a;
+                pendientes.add(alumnos.submit(() -> {
+                    ThreadLocalRandom azar = ThreadLocalRandom.current();
+                    long[] tiempos = new long[7];
+                    int n = 0;
+                    try {
+                        salida.await();
+                        long inicio = System.nanoTime();
+                        HttpResponse<String> respuesta = enviar(cliente, base + "/login", "usuario=alumno" + alumno + "&password=pwd" + alumno);
+                        tiempos[n++] = System.nanoTime() - inicio;
+                        Matcher sesion = SESION.matcher(respuesta.body());
+                        if (respuesta.statusCode() != 200 || !sesion.find()) {
+                            fallidas.incrementAndGet();
+                            return;
+                        }
+                        String clave = "sesion=" + sesion.group(1);
+
+                        // La mitad pide las mismas 5 materias
+                        String[] pedidas = new String[3];
+                        for (int i = 0; i < pedidas.length; i++) {
+                            pedidas[i] = materias[azar.nextBoolean() ? azar.nextInt(5) : azar.nextInt(materias.length)];
+                        }
+                        String[] solicitudes = {
+                                "GET /materias",
+                                "POST /alta " + clave + "&materia=" + pedidas[0] + "," + pedidas[1],
+                                "POST /alta " + clave + "&espera=true&materia=" + pedidas[2],
+                                "POST /baja " + clave + "&materia=" + pedidas[azar.nextInt(3)],
+                                "GET /materias/" + pedidas[0] + "/alumnos?" + clave,
+                                "POST /logout " + clave
+                        };
+                        for (String solicitud : solicitudes) {
+                            String[] partes = solicitud.split(" ");
+                            inicio = System.nanoTime();
+                            respuesta = partes[0].equals("GET") ? consultar(cliente, base + partes[1])
+                                    : enviar(cliente, base + partes[1], partes[2]);
+                            tiempos[n++] = System.nanoTime() - inicio;
+                            if (respuesta.statusCode() != 200) {
+                                fallidas.incrementAndGet();
+                            }
+                            Matcher resultado = RESULTADO.matcher(respuesta.body());
+                            if (resultado.find()) {
+                                String llave = partes[1] + " " + resultado.group(1);
+                                conteo.computeIfAbsent(llave, k -> new AtomicLong()).incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        if (fallidas.get() < 3) e.printStackTrace();
+                        fallidas.incrementAndGet();
+                    } finally {
+                        latencias[alumno] = Arrays.copyOf(tiempos, n);
+                    }
+                }));
+            }
+            long inicio = System.nanoTime();
+            salida.countDown();
+            for (Future<?> pendiente : pendientes) {
+                pendiente.get();
+            }
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            alumnos.shutdown();
+            alumnos.awaitTermination(10, TimeUnit.SECONDS);
+
+            long[] todas = Arrays.stream(latencias).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("%,d alumnos (%s), %,d solicitudes en %.2f s (%,.0f solicitudes/s)%n", totalAlumnos,
+                    Hilos.hayVirtuales() ? "hilos virtuales" : "hilos del sistema", todas.length, segundos, todas.length / segundos);
+            if (todas.length > 0) {
+                System.out.printf("Latencia: p50 %.1f ms, p99 %.1f ms, máx %.1f ms%n", todas[todas.length / 2] / 1e6,
+                        todas[(int) (todas.length * 0.99)] / 1e6, todas[todas.length - 1] / 1e6);
+            }
+            System.out.println("Resultados: " + new TreeMap<>(conteo));
+            Pruebas.comprobar("todas las solicitudes respondidas", fallidas.get() == 0 && todas.length == totalAlumnos * 7L
+                    && servidor.totalSesiones() == 0);
+            Pruebas.comprobar("materias y alumnos coinciden", Pruebas.coinciden(dbMaterias, dbAlumnos)
+                    && Pruebas.respetanCupo(dbMaterias));
+
+            // 3. La lista de alumnos por HTTP es la que hay en memoria
+            HttpResponse<String> login = enviar(cliente, base + "/login", "usuario=alumno0&password=pwd0");
+            Matcher sesion = SESION.matcher(login.body());
+            boolean lista = sesion.find();
+            if (lista) {
+                String cuerpo = consultar(cliente, base + "/materias/" + materias[0] + "/alumnos?sesion=" + sesion.group(1)).body();
+                for (int numCuenta : dbMaterias.readMateria(materias[0]).cuentasAlumnos()) {
+                    lista &= cuerpo.contains("\"numCuenta\":\"" + numCuenta + "\"");
+                }
+            }
+            Pruebas.comprobar("lista de alumnos", lista);
+        } finally {
+            servidor.detener();
+        }
+
+        // 4. Al detenerse queda todo guardado
+        String alumnosAntes = dbAlumnos.printDB();
+        String materiasAntes = dbMaterias.printDB();
+        Pruebas.comprobar("guardado en los archivos", new DatabaseAlumnos().printDB().equals(alumnosAntes)
+                && new DatabaseMaterias().printDB().equals(materiasAntes));
+
+        Pruebas.borrar(directorio);
+    }
+
+    private static HttpResponse<String> enviar(HttpClient cliente, String url, String formulario) throws Exception {
+        HttpRequest solicitud = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(formulario)).build();
+        return cliente.send(solicitud, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> consultar(HttpClient cliente, String url) throws Exception {
+        return cliente.send(HttpRequest.newBuilder(URI.create(url)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,110 @@
+package test.testsinscripciones;
+
+import com.fiunam.databases.ConvertidorArchivos;
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.materias.Materia;
+import com.fiunam.materias.ServicioInscripciones;
+import com.fiunam.users.Alumno;
+import test.comun.Pruebas;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Comprueba que el cupo de una materia no se rebase aunque muchos hilos pidan los últimos
+ * lugares a la vez, y que el cupo propio de la materia se conserve en la bitácora, en el json
+ * y en el formato binario. Usa una copia de la carpeta json en un directorio temporal.
+ */
+public class TestCupo {
+    private static final int ALUMNOS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        Path directorio = Pruebas.copiaJson("test-cupo");
+
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        DatabaseMaterias dbMaterias = new DatabaseMaterias();
+        for (int i = 0; i < ALUMNOS; i++) {
+            dbAlumnos.agregarAlumno(new Alumno("cupo" + i, "Alumno " + i, "clave", 1));
+        }
+        Materia materia = new Materia("Materia con cupo", 1, "Profesor", "Otras asignaturas");
+        materia.setCupo(5);
+        dbMaterias.agregarMateria(materia);
+        int idMateria = materia.claveMateria();
+        int[] cuentas = dbAlumnos.getCopiaAlumnos().stream().mapToInt(Alumno::claveCuenta).toArray();
+        ServicioInscripciones servicio = new ServicioInscripciones(dbMaterias, dbAlumnos);
+
+        // 1. Todos los alumnos piden uno de los 5 lugares al mismo tiempo
+        int inscritos = carrera(servicio, idMateria, cuentas);
+        Pruebas.comprobar("solo se ocupa el cupo", inscritos == 5 && materia.totalAlumnos() == 5
+                && materia.cupoDisponible() == 0);
+
+        // 2. Al subir el cupo se ocupan solo los lugares nuevos
+        dbMaterias.cambiarCupo(idMateria, 8);
+        inscritos = carrera(servicio, idMateria, cuentas);
+        Pruebas.comprobar("cupo nuevo", inscritos == 3 && materia.totalAlumnos() == 8);
+
+        // 3. Una baja libera un lugar
+        int primero = materia.cuentasAlumnos()[0];
+        int libre = -1;
+        for (int numCuenta : cuentas) {
+            if (!materia.estaInscrito(numCuenta)) libre = numCuenta;
+        }
+        boolean lleno = servicio.alta(idMateria, libre) == ServicioInscripciones.Resultado.SIN_CUPO;
+        servicio.baja(idMateria, primero);
+        Pruebas.comprobar("la baja libera el lugar", lleno
+                && servicio.alta(idMateria, libre) == ServicioInscripciones.Resultado.INSCRITO);
+
+        // 4. El cupo se lee de la bitácora, del json y del formato binario
+        dbAlumnos.saveDB();
+        dbMaterias.saveDB();
+        Pruebas.comprobar("cupo en la bitácora", cupoLeido(idMateria) == 8);
+        dbMaterias.guardarInstantanea();
+        Pruebas.comprobar("cupo en el json", cupoLeido(idMateria) == 8
+                && Files.readString(directorio.resolve("materias.json")).contains("\"cupo\": 8"));
+        ConvertidorArchivos.aBinario(directorio);
+        System.setProperty("fiunam.db.formato.materias", "BINARIO");
+        Pruebas.comprobar("cupo en el binario", cupoLeido(idMateria) == 8);
+        System.clearProperty("fiunam.db.formato.materias");
+
+        Pruebas.borrar(directorio);
+    }
+
+    /**
+     * Un hilo por alumno da de alta la materia, todos empiezan al mismo tiempo
+     * @return Altas que se hicieron
+     */
+    private static int carrera(ServicioInscripciones servicio, int idMateria, int[] cuentas) throws InterruptedException {
+        AtomicInteger inscritos = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Thread> hilos = new ArrayList<>();
+        for (int numCuenta : cuentas) {
+            Thread hilo = new Thread(() -> {
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (servicio.alta(idMateria, numCuenta) == ServicioInscripciones.Resultado.INSCRITO) {
+                    inscritos.incrementAndGet();
+                }
+            });
+            hilos.add(hilo);
+            hilo.start();
+        }
+        salida.countDown();
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        return inscritos.get();
+    }
+
+    private static int cupoLeido(int idMateria) {
+        Materia leida = new DatabaseMaterias().readMateria(idMateria);
+        return leida.totalAlumnos() == 8 ? leida.getCupo() : -1;
+    }
+}
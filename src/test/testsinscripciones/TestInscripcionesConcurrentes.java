@@ -0,0 +1,166 @@
+package test.testsinscripciones;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.materias.Materia;
+import com.fiunam.materias.ServicioInscripciones;
+import com.fiunam.users.Alumno;
+import com.fiunam.util.Claves;
+import test.comun.Pruebas;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Varios hilos dan de alta y de baja materias al azar al mismo tiempo con
+ * {@link ServicioInscripciones}. Al terminar comprueba que el total de inscripciones cuadre con
+ * los resultados, que cada materia y cada alumno tengan las mismas inscripciones, que ninguna
+ * materia pase su cupo, y que al guardar y volver a leer las bases de datos se obtenga lo mismo.
+ * Luego elimina alumnos y materias mientras los hilos siguen inscribiendo y comprueba que no
+ * quede ninguna inscripción ni lugar en espera de los que se eliminaron.
+ * Usa una copia de la carpeta json en un directorio temporal.
+ */
+public class TestInscripcionesConcurrentes {
+    private static final int HILOS = 32;
+    private static final int OPERACIONES_POR_HILO = 20_000;
+    private static final int ALUMNOS_NUEVOS = 2_000;
+    private static final int MATERIAS_NUEVAS = 50;
+
+    public static void main(String[] args) throws Exception {
+        Path directorio = Pruebas.copiaJson("test-inscripciones");
+
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        DatabaseMaterias dbMaterias = new DatabaseMaterias();
+        for (int i = 0; i < ALUMNOS_NUEVOS; i++) {
+            dbAlumnos.agregarAlumno(new Alumno("concurrente" + i, "Alumno " + i, "clave", 1 + i % 10));
+        }
+        for (int i = 0; i < MATERIAS_NUEVAS; i++) {
+            Materia materia = new Materia("Materia " + i, 1 + i % 5, "Profesor " + i, "Otras asignaturas");
+            // Las primeras se llenan, en las demás caben todos
+            materia.setCupo(i < 5 ? 20 : ALUMNOS_NUEVOS);
+            dbMaterias.agregarMateria(materia);
+        }
+        int[] cuentas = dbAlumnos.getCopiaAlumnos().stream().mapToInt(Alumno::claveCuenta).toArray();
+        int[] materias = dbMaterias.getCopiaMaterias().stream().mapToInt(Materia::claveMateria).toArray();
+        long inicial = inscripciones(dbMaterias);
+
+        ServicioInscripciones servicio = new ServicioInscripciones(dbMaterias, dbAlumnos);
+        List<Map<ServicioInscripciones.Resultado, AtomicLong>> conteos = new ArrayList<>();
+        List<Thread> hilos = new ArrayList<>();
+        CountDownLatch salida = new CountDownLatch(1);
+        for (int h = 0; h < HILOS; h++) {
+            Map<ServicioInscripciones.Resultado, AtomicLong> conteo = new EnumMap<>(ServicioInscripciones.Resultado.class);
+            for (ServicioInscripciones.Resultado resultado : ServicioInscripciones.Resultado.values()) {
+                conteo.put(resultado, new AtomicLong());
+            }
+            conteos.add(conteo);
+            Thread hilo = new Thread(() -> {
+                ThreadLocalRandom azar = ThreadLocalRandom.current();
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < OPERACIONES_POR_HILO; i++) {
+                    int idMateria = materias[azar.nextInt(materias.length)];
+                    int numCuenta = cuentas[azar.nextInt(cuentas.length)];
+                    ServicioInscripciones.Resultado resultado = azar.nextInt(3) == 0
+                            ? servicio.baja(idMateria, numCuenta) : servicio.alta(idMateria, numCuenta);
+                    conteo.get(resultado).incrementAndGet();
+                }
+            });
+            hilos.add(hilo);
+            hilo.start();
+        }
+
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        long altas = 0, bajas = 0;
+        for (Map<ServicioInscripciones.Resultado, AtomicLong> conteo : conteos) {
+            altas += conteo.get(ServicioInscripciones.Resultado.INSCRITO).get();
+            bajas += conteo.get(ServicioInscripciones.Resultado.DADO_DE_BAJA).get();
+        }
+        System.out.printf("%d hilos, %d operaciones en %.2f s (%.0f op/s), %d altas y %d bajas%n",
+                HILOS, (long) HILOS * OPERACIONES_POR_HILO, segundos,
+                HILOS * OPERACIONES_POR_HILO / segundos, altas, bajas);
+
+        Pruebas.comprobar("total de inscripciones", inscripciones(dbMaterias) == inicial + altas - bajas);
+        Pruebas.comprobar("materias y alumnos coinciden", Pruebas.coinciden(dbMaterias, dbAlumnos));
+        Pruebas.comprobar("ninguna materia pasa su cupo", Pruebas.respetanCupo(dbMaterias));
+
+        String alumnosAntes = dbAlumnos.printDB();
+        String materiasAntes = dbMaterias.printDB();
+        dbAlumnos.saveDB();
+        dbMaterias.saveDB();
+        DatabaseAlumnos alumnosLeidos = new DatabaseAlumnos();
+        DatabaseMaterias materiasLeidas = new DatabaseMaterias();
+        Pruebas.comprobar("guardado y leído de nuevo", alumnosLeidos.printDB().equals(alumnosAntes)
+                && materiasLeidas.printDB().equals(materiasAntes) && Pruebas.coinciden(materiasLeidas, alumnosLeidos));
+
+        // Se eliminan alumnos y materias mientras los demás hilos siguen inscribiendo
+        List<Thread> conEliminaciones = new ArrayList<>();
+        CountDownLatch otraSalida = new CountDownLatch(1);
+        for (int h = 0; h < HILOS; h++) {
+            Thread hilo = new Thread(() -> {
+                ThreadLocalRandom azar = ThreadLocalRandom.current();
+                try {
+                    otraSalida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < OPERACIONES_POR_HILO / 10; i++) {
+                    int idMateria = materias[azar.nextInt(materias.length)];
+                    int numCuenta = cuentas[azar.nextInt(cuentas.length)];
+                    if (azar.nextInt(3) == 0) servicio.baja(idMateria, numCuenta);
+                    else servicio.altaOEspera(idMateria, numCuenta);
+                }
+            });
+            conEliminaciones.add(hilo);
+            hilo.start();
+        }
+        otraSalida.countDown();
+        for (int i = 0; i < 200; i++) {
+            dbAlumnos.eliminarAlumno(dbMaterias, dbAlumnos.readAlumno(cuentas[i]).getNumCuenta());
+            if (i % 20 == 0) dbMaterias.eliminarMateria(dbAlumnos, dbMaterias.readMateria(materias[i / 20]).getIdMateria());
+        }
+        for (Thread hilo : conEliminaciones) {
+            hilo.join();
+        }
+        Pruebas.comprobar("eliminar mientras se inscribe", Pruebas.coinciden(dbMaterias, dbAlumnos)
+                && Pruebas.respetanCupo(dbMaterias) && esperanExistentes(dbMaterias, dbAlumnos) && dbMaterias.getCopiaMaterias().size() == materias.length - 10
+                && dbAlumnos.getCopiaAlumnos().size() == cuentas.length - 200);
+
+        Pruebas.borrar(directorio);
+    }
+
+    /**
+     * @return true si todos los que esperan en alguna materia siguen existiendo
+     */
+    private static boolean esperanExistentes(DatabaseMaterias dbMaterias, DatabaseAlumnos dbAlumnos) {
+        for (Materia materia : dbMaterias.getCopiaMaterias()) {
+            for (int numCuenta : materia.cuentasEnEspera()) {
+                if (dbAlumnos.readAlumno(numCuenta).claveCuenta() == Claves.SIN_CLAVE) return false;
+            }
+        }
+        return true;
+    }
+
+    private static long inscripciones(DatabaseMaterias dbMaterias) {
+        long total = 0;
+        for (Materia materia : dbMaterias.getCopiaMaterias()) {
+            total += materia.getAlumnos().size();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,139 @@
+package test.testsinscripciones;
+
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.logger.Logger;
+import com.fiunam.materias.Materia;
+import com.fiunam.materias.ServicioInscripciones;
+import com.fiunam.users.Alumno;
+import test.comun.Pruebas;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Comprueba las altas y bajas de varias materias a la vez: se hacen todas o ninguna, dejan
+ * un solo registro en la bitácora de cada base de datos, se leen de nuevo igual (también con
+ * el almacén por registro), y varios hilos mezclando lotes y altas sueltas no se bloquean
+ * mutuamente. Usa una copia de la carpeta json en un directorio temporal.
+ */
+public class TestInscripcionesLote {
+    public static void main(String[] args) throws Exception {
+        Logger.setNivelMinimo(Logger.Nivel.WARNING);
+        for (String formato : new String[]{"JSON", "REGISTROS"}) {
+            probar(formato);
+        }
+    }
+
+    private static void probar(String formato) throws Exception {
+        Path directorio = Pruebas.copiaJson("test-lote");
+        System.setProperty("fiunam.db.formato.alumnos", formato);
+        System.setProperty("fiunam.db.formato.materias", formato);
+        System.out.println("-- " + formato);
+
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        DatabaseMaterias dbMaterias = new DatabaseMaterias();
+        // Se guarda una vez para empezar con el archivo completo y sin bitácora
+        dbAlumnos.guardarInstantanea();
+        dbMaterias.guardarInstantanea();
+        Alumno alumno = new Alumno("lote", "Alumno Lote", "clave", 3);
+        dbAlumnos.agregarAlumno(alumno);
+        Materia llena = new Materia("Llena", 1, "Profesor", "Otras asignaturas");
+        llena.setCupo(0);
+        dbMaterias.agregarMateria(llena);
+        dbAlumnos.saveDB();
+        dbMaterias.saveDB();
+        int numCuenta = alumno.claveCuenta();
+        int[] libres = new int[3];
+        for (int i = 0; i < libres.length; i++) {
+            Materia materia = new Materia("Libre " + i, 1, "Profesor", "Otras asignaturas");
+            dbMaterias.agregarMateria(materia);
+            libres[i] = materia.claveMateria();
+        }
+        ServicioInscripciones servicio = new ServicioInscripciones(dbMaterias, dbAlumnos);
+
+        // 1. Una materia sin cupo o que no existe impide todas las altas
+        ServicioInscripciones.ResultadoLote resultado = servicio.altas(numCuenta,
+                new int[]{libres[0], llena.claveMateria(), libres[1]});
+        boolean sinCupo = resultado.getResultado() == ServicioInscripciones.Resultado.SIN_CUPO
+                && resultado.getMaterias().length == 1 && resultado.getMaterias()[0] == llena.claveMateria();
+        resultado = servicio.altas(numCuenta, new int[]{libres[0], 9_999});
+        boolean noExiste = resultado.getResultado() == ServicioInscripciones.Resultado.NO_EXISTE
+                && resultado.getMaterias()[0] == 9_999;
+        Pruebas.comprobar("todas o ninguna", sinCupo && noExiste && alumno.idsMaterias().length == 0
+                && !dbMaterias.readMateria(libres[0]).estaInscrito(numCuenta));
+
+        // 2. Las altas se hacen juntas, con un registro en cada bitácora
+        dbAlumnos.saveDB();
+        dbMaterias.saveDB();
+        long alumnosAntes = lineasBitacora(directorio, "alumnos");
+        long materiasAntes = lineasBitacora(directorio, "materias");
+        resultado = servicio.altas(numCuenta, new int[]{libres[0], libres[1], libres[2], libres[1]});
+        dbAlumnos.saveDB();
+        dbMaterias.saveDB();
+        boolean unRegistro = formato.equals("REGISTROS") || (lineasBitacora(directorio, "alumnos") == alumnosAntes + 1
+                && lineasBitacora(directorio, "materias") == materiasAntes + 1);
+        Pruebas.comprobar("altas en un registro", resultado.aplicado() && resultado.getMaterias().length == 3
+                && alumno.idsMaterias().length == 3 && unRegistro);
+
+        // 3. Las que ya estaban inscritas se omiten
+        resultado = servicio.altas(numCuenta, new int[]{libres[0], libres[1]});
+        Pruebas.comprobar("ya inscritas", resultado.getResultado() == ServicioInscripciones.Resultado.YA_INSCRITO);
+
+        // 4. Baja de dos y lectura de los archivos
+        resultado = servicio.bajas(numCuenta, new int[]{libres[0], libres[2]});
+        dbAlumnos.saveDB();
+        dbMaterias.saveDB();
+        DatabaseAlumnos alumnosLeidos = new DatabaseAlumnos();
+        DatabaseMaterias materiasLeidas = new DatabaseMaterias();
+        Alumno leido = alumnosLeidos.readAlumno(numCuenta);
+        Pruebas.comprobar("bajas guardadas", resultado.aplicado() && leido.idsMaterias().length == 1
+                && leido.estaInscrito(libres[1]) && materiasLeidas.readMateria(libres[1]).estaInscrito(numCuenta)
+                && !materiasLeidas.readMateria(libres[0]).estaInscrito(numCuenta));
+
+        // 5. Lotes y altas sueltas de varios hilos sobre las mismas materias
+        int[] cuentas = dbAlumnos.getCopiaAlumnos().stream().mapToInt(Alumno::claveCuenta).toArray();
+        int[] materias = dbMaterias.getCopiaMaterias().stream().mapToInt(Materia::claveMateria).toArray();
+        List<Thread> hilos = new ArrayList<>();
+        for (int h = 0; h < 16; h++) {
+            Thread hilo = new Thread(() -> {
+                ThreadLocalRandom azar = ThreadLocalRandom.current();
+                for (int i = 0; i < 5_000; i++) {
+                    int cuenta = cuentas[azar.nextInt(cuentas.length)];
+                    int[] lote = azar.ints(1 + azar.nextInt(4), 0, materias.length).map(j -> materias[j]).toArray();
+                    switch (azar.nextInt(4)) {
+                        case 0 -> servicio.altas(cuenta, lote);
+                        case 1 -> servicio.bajas(cuenta, lote);
+                        case 2 -> servicio.alta(lote[0], cuenta);
+                        default -> servicio.baja(lote[0], cuenta);
+                    }
+                }
+            });
+            hilo.setDaemon(true);
+            hilos.add(hilo);
+            hilo.start();
+        }
+        boolean terminaron = true;
+        for (Thread hilo : hilos) {
+            hilo.join(60_000);
+            terminaron &= !hilo.isAlive();
+        }
+        Pruebas.comprobar("hilos sin bloqueos mutuos", terminaron && Pruebas.coinciden(dbMaterias, dbAlumnos)
+                && Pruebas.respetanCupo(dbMaterias));
+
+        System.clearProperty("fiunam.db.formato.alumnos");
+        System.clearProperty("fiunam.db.formato.materias");
+        Pruebas.borrar(directorio);
+    }
+
+    private static long lineasBitacora(Path directorio, String nombre) throws Exception {
+        Path bitacora = directorio.resolve(nombre + ".json.bitacora");
+        if (!Files.exists(bitacora)) return 0;
+        try (var lineas = Files.lines(bitacora)) {
+            return lineas.count();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package test.testsinscripciones;
+
+import com.fiunam.databases.ConvertidorArchivos;
+import com.fiunam.databases.DatabaseAlumnos;
+import com.fiunam.databases.DatabaseMaterias;
+import com.fiunam.materias.Materia;
+import com.fiunam.materias.ServicioInscripciones;
+import com.fiunam.materias.ServicioInscripciones.Resultado;
+import com.fiunam.users.Alumno;
+import com.fiunam.util.Claves;
+import test.comun.Pruebas;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Comprueba las listas de espera: el orden de llegada, la inscripción automática al darse de
+ * baja otro alumno, al eliminarlo o al subir el cupo, que la lista se conserve en la
+ * bitácora (aunque se aplique dos veces), en el json y en el formato binario, y que al eliminar
+ * una materia llena nadie pase de su lista de espera a ella. Usa una copia de la carpeta json en un
+ * directorio temporal.
+ */
+public class TestListaEspera {
+    public static void main(String[] args) throws Exception {
+        Path directorio = Pruebas.copiaJson("test-espera");
+
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        DatabaseMaterias dbMaterias = new DatabaseMaterias();
+        int[] c = new int[9];
+        for (int i = 0; i < c.length; i++) {
+            Alumno alumno = new Alumno("espera" + i, "Alumno " + i, "clave", 1);
+            dbAlumnos.agregarAlumno(alumno);
+            c[i] = alumno.claveCuenta();
+        }
+        Materia materia = new Materia("Con lista de espera", 1, "Profesor", "Otras asignaturas");
+        materia.setCupo(2);
+        dbMaterias.agregarMateria(materia);
+        int id = materia.claveMateria();
+        ServicioInscripciones servicio = new ServicioInscripciones(dbMaterias, dbAlumnos);
+
+        // 1. Los que no alcanzan lugar esperan en orden de llegada
+        boolean inscritos = servicio.alta(id, c[0]) == Resultado.INSCRITO && servicio.alta(id, c[1]) == Resultado.INSCRITO;
+        boolean esperan = servicio.altaOEspera(id, c[2]) == Resultado.EN_ESPERA
+                && servicio.altaOEspera(id, c[3]) == Resultado.EN_ESPERA
+                && servicio.altaOEspera(id, c[4]) == Resultado.EN_ESPERA
+                && servicio.altaOEspera(id, c[3]) == Resultado.EN_ESPERA;
+        Pruebas.comprobar("lista en orden", inscritos && esperan && servicio.alta(id, c[5]) == Resultado.SIN_CUPO
+                && Arrays.equals(materia.cuentasEnEspera(), new int[]{c[2], c[3], c[4]}) && materia.lugarEnEspera(c[4]) == 3);
+
+        // 2. Una baja inscribe al primero de la lista
+        servicio.baja(id, c[0]);
+        Pruebas.comprobar("baja inscribe al primero", materia.estaInscrito(c[2]) && dbAlumnos.readAlumno(c[2]).estaInscrito(id)
+                && Arrays.equals(materia.cuentasEnEspera(), new int[]{c[3], c[4]}));
+
+        // 3. Eliminar a un alumno inscrito también
+        dbAlumnos.eliminarAlumno(dbMaterias, dbAlumnos.readAlumno(c[1]).getNumCuenta());
+        Pruebas.comprobar("eliminar inscribe al primero", materia.estaInscrito(c[3]) && !materia.estaInscrito(c[1])
+                && Arrays.equals(materia.cuentasEnEspera(), new int[]{c[4]}));
+
+        // 4. Eliminar a uno que espera lo saca de la lista, una baja sin inscripción también
+        servicio.altaOEspera(id, c[5]);
+        servicio.altaOEspera(id, c[6]);
+        dbAlumnos.eliminarAlumno(dbMaterias, dbAlumnos.readAlumno(c[5]).getNumCuenta());
+        boolean salio = servicio.baja(id, c[4]) == Resultado.DADO_DE_BAJA;
+        Pruebas.comprobar("salir de la lista", salio && Arrays.equals(materia.cuentasEnEspera(), new int[]{c[6]}));
+
+        // 5. Al subir el cupo se inscribe a los que esperan, y nadie se adelanta
+        servicio.altaOEspera(id, c[7]);
+        dbMaterias.cambiarCupo(id, 4);
+        boolean adelantado = servicio.alta(id, c[8]) == Resultado.SIN_CUPO;
+        servicio.cambiarCupo(id, 4);
+        Pruebas.comprobar("cupo nuevo para los que esperan", adelantado && materia.estaInscrito(c[6]) && materia.estaInscrito(c[7])
+                && !materia.hayEnEspera() && materia.totalAlumnos() == 4);
+
+        // 6. La lista se lee de la bitácora, del json y del formato binario
+        servicio.altaOEspera(id, c[8]);
+        servicio.altaOEspera(id, c[4]);
+        int[] espera = materia.cuentasEnEspera();
+        dbAlumnos.saveDB();
+        dbMaterias.saveDB();
+        Pruebas.comprobar("lista en la bitácora", Arrays.equals(leida(id), espera));
+        dbAlumnos.guardarInstantanea();
+        dbMaterias.guardarInstantanea();
+        Pruebas.comprobar("lista en el json", Arrays.equals(leida(id), espera));
+        ConvertidorArchivos.aBinario(directorio);
+        System.setProperty("fiunam.db.formato.materias", "BINARIO");
+        Pruebas.comprobar("lista en el binario", Arrays.equals(leida(id), espera));
+        System.clearProperty("fiunam.db.formato.materias");
+
+        // 7. Al eliminar la materia llena nadie pasa de la lista de espera a ella
+        dbMaterias.eliminarMateria(dbAlumnos, materia.getIdMateria());
+        dbAlumnos.saveDB();
+        dbMaterias.saveDB();
+        DatabaseAlumnos leidos = new DatabaseAlumnos();
+        boolean sinMateria = true;
+        for (int numCuenta : c) {
+            sinMateria &= !dbAlumnos.readAlumno(numCuenta).estaInscrito(id) && !leidos.readAlumno(numCuenta).estaInscrito(id);
+        }
+        Pruebas.comprobar("eliminar con lista de espera", sinMateria && !materia.hayEnEspera()
+                && dbMaterias.readMateria(id).claveMateria() == Claves.SIN_CLAVE
+                && Pruebas.coinciden(dbMaterias, dbAlumnos) && Pruebas.coinciden(new DatabaseMaterias(), leidos));
+
+        // 8. La bitácora se puede aplicar de nuevo sobre un json que ya la tiene (el programa se
+        // detuvo después de escribir el json y antes de vaciar la bitácora) sin cambiar el orden
+        Materia repetida = new Materia("Bitácora repetida", 1, "Profesor", "Otras asignaturas");
+        repetida.setCupo(0);
+        dbMaterias.agregarMateria(repetida);
+        int idRepetida = repetida.claveMateria();
+        servicio.altaOEspera(idRepetida, c[0]);
+        dbMaterias.guardarInstantanea();
+        servicio.baja(idRepetida, c[0]);
+        servicio.altaOEspera(idRepetida, c[0]);
+        servicio.altaOEspera(idRepetida, c[2]);
+        dbMaterias.saveDB();
+        Path bitacora = directorio.resolve("materias.json.bitacora");
+        byte[] registros = Files.readAllBytes(bitacora);
+        dbMaterias.guardarInstantanea();
+        Files.write(bitacora, registros);
+        Pruebas.comprobar("bitácora aplicada dos veces", registros.length > 0
+                && Arrays.equals(leida(idRepetida), new int[]{c[0], c[2]}));
+
+        Pruebas.borrar(directorio);
+    }
+
+    private static int[] leida(int idMateria) {
+        return new DatabaseMaterias().readMateria(idMateria).cuentasEnEspera();
+    }
+}
@@ -0,0 +1,26 @@
+package test.testusuarios;
+
+import com.fiunam.databases.DatabaseAdmins;
+import com.fiunam.databases.DatabaseAlumnos;
+
+public class TestLogin {
+    public static void main(String[] args) {
+        DatabaseAlumnos dbAlumnos = new DatabaseAlumnos();
+        DatabaseAdmins dbAdmins = new DatabaseAdmins();
+
+        System.out.println("============== Login por username ================");
+        System.out.println(dbAlumnos.readAlumno("edgarch", "admin"));
+
+        System.out.println("============== Login por nombre ================");
+        System.out.println(dbAlumnos.readAlumno("Edgar Chalico", "admin"));
+
+        System.out.println("============== Contraseña incorrecta ================");
+        System.out.println(dbAlumnos.readAlumno("edgarch", "xxxx").getUsername());
+
+        System.out.println("============== Login de administrador ================");
+        System.out.println(dbAdmins.readAdmins("Rodrigo Admin", "admin"));
+
+        System.out.println("============== Usernames registrados ================");
+        System.out.println(dbAlumnos.existeUsername("jeduardo") + " " + dbAdmins.existeUsername("jeduardo"));
+    }
+}
@@ -0,0 +1,63 @@
+package test.testutil;
+
+import com.fiunam.util.IntMap;
+import com.fiunam.util.IntSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Compara IntMap e IntSet contra HashMap y ArrayList con operaciones aleatorias.
+ */
+public class TestColecciones {
+    public static void main(String[] args) {
+        Random rand = new Random(7);
+
+        IntMap<String> mapa = new IntMap<>();
+        HashMap<Integer, String> esperado = new HashMap<>();
+        for (int i = 0; i < 500_000; i++) {
+            int clave = rand.nextInt(20_000);
+            if (rand.nextInt(3) == 0) {
+                check(String.valueOf(mapa.remove(clave)).equals(String.valueOf(esperado.remove(clave))), "IntMap.remove");
+            } else {
+                check(String.valueOf(mapa.put(clave, "v" + i)).equals(String.valueOf(esperado.put(clave, "v" + i))), "IntMap.put");
+            }
+            int consulta = rand.nextInt(20_000);
+            check(String.valueOf(mapa.get(consulta)).equals(String.valueOf(esperado.get(consulta))), "IntMap.get");
+        }
+        check(mapa.size() == esperado.size(), "IntMap.size");
+        System.out.println("IntMap OK (" + mapa.size() + " elementos)");
+
+        for (int limite : new int[]{6, 30, 400}) {
+            IntSet conjunto = new IntSet();
+            ArrayList<Integer> lista = new ArrayList<>();
+            for (int i = 0; i < 100_000; i++) {
+                int valor = rand.nextInt(limite);
+                if (rand.nextBoolean()) {
+                    check(conjunto.add(valor) == !lista.contains(valor), "IntSet.add");
+                    if (!lista.contains(valor)) lista.add(valor);
+                } else {
+                    // Al eliminar, el último pasa a su lugar
+                    int pos = lista.indexOf(valor);
+                    if (pos >= 0) {
+                        lista.set(pos, lista.get(lista.size() - 1));
+                        lista.remove(lista.size() - 1);
+                    }
+                    check(conjunto.remove(valor) == (pos >= 0), "IntSet.remove");
+                }
+                check(conjunto.size() == lista.size(), "IntSet.size");
+                int consulta = rand.nextInt(limite);
+                check(conjunto.contains(consulta) == lista.contains(consulta), "IntSet.contains");
+            }
+            for (int i = 0; i < lista.size(); i++) {
+                check(conjunto.get(i) == lista.get(i), "IntSet.get (orden de inserción)");
+            }
+            System.out.println("IntSet OK (límite " + limite + ", " + conjunto.size() + " elementos)");
+        }
+    }
+
+    private static void check(boolean condicion, String mensaje) {
+        if (!condicion) throw new AssertionError(mensaje);
+    }
+}